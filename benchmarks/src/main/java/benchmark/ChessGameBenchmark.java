@@ -0,0 +1,166 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import logic.ChessGame;
+import logic.Move;
+import logic.MoveList;
+import logic.MoveValidator;
+import logic.Piece;
+
+/**
+ * Measures the hot paths of ChessGame: square lookups, move execution and
+ * enumeration of all target squares of the team to move.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ChessGameBenchmark {
+	
+	@Param
+	private Positions position;
+	
+	private ChessGame chessGame;
+	private List<Move> moves;
+	private MoveList packedMoves = new MoveList();
+	private MoveList buffer = new MoveList();
+	private int nextMove;
+	
+	@Setup
+	public void setUp() {
+		this.chessGame = this.position.create();
+		this.moves = this.chessGame.generateLegalMoves();
+		this.chessGame.generateLegalMoves( this.packedMoves );
+	}
+	
+	/**
+	 * Looks up the piece on every square of the board.
+	 */
+	@Benchmark
+	public void getNonCapturedPieceAtLocation( Blackhole blackhole ){
+		for( int row = Piece.ROW_1; row <= Piece.ROW_8; row++ ){
+			for( int col = Piece.COL_A; col <= Piece.COL_H; col++ ){
+				blackhole.consume( this.chessGame.getNonCapturedPieceAtLocation( row, col ) );
+			}
+		}
+	}
+	
+	/**
+	 * Checks every square of the board for a piece of the team to move and
+	 * for any piece.
+	 */
+	@Benchmark
+	public int isNonCapturedPieceAtLocation() {
+		Piece.Team team = this.chessGame.getGameState().equals( Piece.Team.WHITE )
+			? Piece.Team.WHITE : Piece.Team.BLACK;
+		int occupiedSquares = 0;
+		for( int row = Piece.ROW_1; row <= Piece.ROW_8; row++ ){
+			for( int col = Piece.COL_A; col <= Piece.COL_H; col++ ){
+				if( this.chessGame.isNonCapturedPieceAtLocation( team, row, col ) ){
+					occupiedSquares++;
+				}
+				if( this.chessGame.isNonCapturedPieceAtLocation( row, col ) ){
+					occupiedSquares++;
+				}
+			}
+		}
+		return occupiedSquares;
+	}
+	
+	/**
+	 * Validates and executes one of the valid moves of the position, cycling
+	 * through all of them, and takes it back.
+	 */
+	@Benchmark
+	public boolean movePiece() {
+		Move move = this.moves.get( this.nextMove );
+		this.nextMove = (this.nextMove + 1) % this.moves.size();
+		boolean result = this.chessGame.movePiece( move );
+		this.chessGame.unmakeMove();
+		return result;
+	}
+	
+	/**
+	 * Executes one of the valid moves of the position without validation,
+	 * cycling through all of them, and takes it back.
+	 */
+	@Benchmark
+	public Piece makeUnmakeMove() {
+		Move move = this.moves.get( this.nextMove );
+		this.nextMove = (this.nextMove + 1) % this.moves.size();
+		Piece capturedPiece = this.chessGame.makeMove( move );
+		this.chessGame.unmakeMove();
+		return capturedPiece;
+	}
+	
+	/**
+	 * Same as makeUnmakeMove with packed moves, which creates no objects.
+	 */
+	@Benchmark
+	public Piece makeUnmakePackedMove() {
+		int move = this.packedMoves.get( this.nextMove );
+		this.nextMove = (this.nextMove + 1) % this.packedMoves.size();
+		Piece capturedPiece = this.chessGame.makeMove( move );
+		this.chessGame.unmakeMove();
+		return capturedPiece;
+	}
+	
+	/**
+	 * Enumerates the valid targets of all pieces of the team to move with the
+	 * move generator.
+	 */
+	@Benchmark
+	public List<Move> generateLegalMoves() {
+		return this.chessGame.generateLegalMoves();
+	}
+	
+	/**
+	 * Same as generateLegalMoves into a reused list of packed moves.
+	 */
+	@Benchmark
+	public int generatePackedMoves() {
+		this.chessGame.generateLegalMoves( this.buffer );
+		return this.buffer.size();
+	}
+	
+	/**
+	 * Enumerates the valid targets of all pieces of the team to move by
+	 * validating every source/target combination, as the GUI used to do.
+	 */
+	@Benchmark
+	public int probeAllTargets() {
+		MoveValidator moveValidator = this.chessGame.getMoveValidator();
+		int validMoves = 0;
+		for( Piece piece : this.chessGame.getPieces() ){
+			if( piece.isCaptured() ){
+				continue;
+			}
+			for( int row = Piece.ROW_1; row <= Piece.ROW_8; row++ ){
+				for( int col = Piece.COL_A; col <= Piece.COL_H; col++ ){
+					if( moveValidator.isMoveValid( piece.getRow(), piece.getCol(), row, col ) ){
+						validMoves++;
+					}
+				}
+			}
+		}
+		return validMoves;
+	}
+	
+}
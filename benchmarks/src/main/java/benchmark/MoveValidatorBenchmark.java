@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.ChessGame;
+import logic.Move;
+import logic.MoveValidator;
+import logic.Piece;
+import logic.Piece.Type;
+
+/**
+ * Measures MoveValidator.isMoveValid per piece type. For every piece of the
+ * given type that belongs to the team to move, all 64 target squares are
+ * probed, which is a mix of valid and invalid moves like the GUI produces.
+ * Positions without such a piece probe nothing.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MoveValidatorBenchmark {
+	
+	@Param
+	private Positions position;
+	
+	@Param
+	private Type pieceType;
+	
+	private MoveValidator moveValidator;
+	private Move[] moves;
+	
+	@Setup
+	public void setUp() {
+		ChessGame chessGame = this.position.create();
+		this.moveValidator = chessGame.getMoveValidator();
+		
+		List<Move> probes = new ArrayList<Move>();
+		for( Piece piece : chessGame.getPieces() ){
+			if( piece.isCaptured()
+					|| piece.getType() != this.pieceType
+					|| ! chessGame.getGameState().equals( piece.getTeam() ) ){
+				continue;
+			}
+			for( int row = Piece.ROW_1; row <= Piece.ROW_8; row++ ){
+				for( int col = Piece.COL_A; col <= Piece.COL_H; col++ ){
+					probes.add( new Move( piece.getRow(), piece.getCol(), row, col ) );
+				}
+			}
+		}
+		this.moves = probes.toArray( new Move[ probes.size() ] );
+	}
+	
+	@Benchmark
+	public int isMoveValid() {
+		int validMoves = 0;
+		for( Move move : this.moves ){
+			if( this.moveValidator.isMoveValid( move ) ){
+				validMoves++;
+			}
+		}
+		return validMoves;
+	}
+	
+}
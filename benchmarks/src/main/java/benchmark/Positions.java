@@ -0,0 +1,34 @@
+package benchmark;
+
+import logic.ChessGame;
+
+/**
+ * Fixed positions the benchmarks run on, given in Forsyth-Edwards Notation.
+ */
+public enum Positions {
+	
+	// Ruy Lopez after 3...a6, white to move.
+	OPENING( "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 0 4" ),
+	
+	// Queen, two rooks, two knights and eight pawns each, no bishops, both
+	// sides may still castle, black to move.
+	MIDDLEGAME( "r3k2r/1ppq1pp1/p2p1n1p/n3p3/4P3/2PPPNNP/PPQ3P1/R3K2R b KQkq - 0 14" ),
+	
+	// Two rooks, a bishop and three pawns against three pawns, white to move.
+	ENDGAME( "8/B4R1p/2k5/3p4/2p5/4K3/PPP4R/8 w - - 0 26" );
+	
+	private final String fen;
+	
+	private Positions( String fen ){
+		this.fen = fen;
+	}
+	
+	/**
+	 * Creates a new game in this position.
+	 * @return game in this position.
+	 */
+	public ChessGame create() {
+		return ChessGame.fromFen( this.fen );
+	}
+	
+}
@@ -0,0 +1,45 @@
+package book;
+
+import logic.PackedMove;
+
+/**
+ * A move of an opening book with its weight.
+ */
+public class BookMove {
+	
+	private final int move;
+	private final int weight;
+	private final int learn;
+	
+	/**
+	 * @param move the packed move (see PackedMove).
+	 * @param weight relative frequency with which the move should be played.
+	 * @param learn learning data of the book entry, 0 if unused.
+	 */
+	public BookMove( int move, int weight, int learn ){
+		this.move = move;
+		this.weight = weight;
+		this.learn = learn;
+	}
+	
+	@Override
+	public String toString() {
+		return PackedMove.toString( this.move ) + " (" + this.weight + ")";
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	/**
+	 * @return the packed move (see PackedMove).
+	 */
+	public int getMove() {
+		return move;
+	}
+	public int getWeight() {
+		return weight;
+	}
+	public int getLearn() {
+		return learn;
+	}
+	
+}
@@ -0,0 +1,243 @@
+package book;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import logic.Bitboard;
+import logic.ChessGame;
+import logic.MoveValidator.Rejection;
+import logic.PackedMove;
+import logic.Piece;
+import logic.Piece.Type;
+
+/**
+ * Opening book in the Polyglot format. The file is mapped into memory and
+ * probed with a binary search on the position key (see PolyglotKeys), so a
+ * lookup costs microseconds.
+ *
+ * A book is a sequence of 16 byte entries sorted by key, all numbers big
+ * endian: long key, unsigned short move, unsigned short weight, int learn.
+ * A move has 3 bits each for target column, target row, source column, source
+ * row and promotion type (0 none, 1 knight, 2 bishop, 3 rook, 4 queen), from
+ * the lowest bit. Castling is written as the king capturing its own rook,
+ * e.g. e1h1.
+ */
+public class PolyglotBook implements Closeable {
+	
+	static final int ENTRY_SIZE = 16;
+	
+	// Polyglot promotion types, indexed by the 3 promotion bits.
+	static final Type[] PROMOTION_TYPES = { null, Type.KNIGHT, Type.BISHOP, Type.ROOK, Type.QUEEN };
+	
+	private static final Comparator<BookMove> BY_WEIGHT = new Comparator<BookMove>() {
+		@Override
+		public int compare( BookMove move1, BookMove move2 ){
+			return move2.getWeight() - move1.getWeight();
+		}
+	};
+	
+	private final File file;
+	private MappedByteBuffer buffer;
+	private final int entryCount;
+	
+	/**
+	 * Opens and maps a book file.
+	 * @param file The book.
+	 * @throws IOException if the file cannot be read or is no Polyglot book.
+	 */
+	public PolyglotBook( File file ) throws IOException {
+		this.file = file;
+		RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			if( size % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE ){
+				throw new IOException( "Not a Polyglot book: " + file );
+			}
+			this.buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+			this.entryCount = (int) (size / ENTRY_SIZE);
+		} finally {
+			// The mapping stays valid after the channel is closed.
+			randomAccessFile.close();
+		}
+	}
+	
+	/**
+	 * Looks up the moves of the current position.
+	 * @param chessGame The position. It is not changed.
+	 * @return the book moves, the highest weight first. Empty if the position
+	 * 		   is not in the book.
+	 */
+	public List<BookMove> getMoves( ChessGame chessGame ){
+		long key = PolyglotKeys.hash( chessGame );
+		List<BookMove> moves = new ArrayList<BookMove>();
+		for( int entry = findFirst( key ); entry < this.entryCount && getKey( entry ) == key; entry++ ){
+			int offset = entry * ENTRY_SIZE;
+			int move = decodeMove( chessGame, this.buffer.getShort( offset + 8 ) & 0xFFFF );
+			// Another position with the same key may have moves that are not
+			// possible here.
+			if( move != PackedMove.NONE
+					&& chessGame.getMoveValidator().validateMove( move ) == Rejection.NONE ){
+				moves.add( new BookMove( move, this.buffer.getShort( offset + 10 ) & 0xFFFF,
+					this.buffer.getInt( offset + 12 ) ) );
+			}
+		}
+		Collections.sort( moves, BY_WEIGHT );
+		return moves;
+	}
+	
+	/**
+	 * Picks a book move at random, in proportion to the weights.
+	 * @param chessGame The position. It is not changed.
+	 * @param random The random source.
+	 * @return the packed move or PackedMove.NONE if the position is not in
+	 * 		   the book.
+	 */
+	public int pickMove( ChessGame chessGame, Random random ){
+		List<BookMove> moves = getMoves( chessGame );
+		int totalWeight = 0;
+		for( BookMove move : moves ){
+			totalWeight += move.getWeight();
+		}
+		if( totalWeight == 0 ){
+			return moves.isEmpty() ? PackedMove.NONE : moves.get( 0 ).getMove();
+		}
+		int value = random.nextInt( totalWeight );
+		for( BookMove move : moves ){
+			value -= move.getWeight();
+			if( value < 0 ){
+				return move.getMove();
+			}
+		}
+		throw new IllegalStateException( "Weights changed" );
+	}
+	
+	/**
+	 * @return index of the first entry with the key or greater.
+	 */
+	private int findFirst( long key ){
+		int low = 0;
+		int high = this.entryCount;
+		while( low < high ){
+			int middle = (low + high) >>> 1;
+			if( Long.compareUnsigned( getKey( middle ), key ) < 0 ){
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	private long getKey( int entry ){
+		return this.buffer.getLong( entry * ENTRY_SIZE );
+	}
+	
+	/**
+	 * @param chessGame The position of the move.
+	 * @param bookMove the 16 bits of a Polyglot move.
+	 * @return the packed move or PackedMove.NONE if there is no piece on the
+	 * 		   source square.
+	 */
+	static int decodeMove( ChessGame chessGame, int bookMove ){
+		int targetCol = bookMove & 7;
+		int targetRow = (bookMove >>> 3) & 7;
+		int sourceCol = (bookMove >>> 6) & 7;
+		int sourceRow = (bookMove >>> 9) & 7;
+		int promotion = (bookMove >>> 12) & 7;
+		if( promotion >= PROMOTION_TYPES.length ){
+			return PackedMove.NONE;
+		}
+		Piece piece = chessGame.getNonCapturedPieceAtLocation( sourceRow, sourceCol );
+		if( piece == null ){
+			return PackedMove.NONE;
+		}
+		if( piece.getType() == Type.KING && sourceCol == Piece.COL_E && sourceRow == targetRow ){
+			// Castling is written as the king capturing its own rook.
+			if( targetCol == Piece.COL_H ){
+				targetCol = Piece.COL_G;
+			} else if( targetCol == Piece.COL_A ){
+				targetCol = Piece.COL_C;
+			}
+		}
+		return chessGame.encodeMove( Bitboard.square( sourceRow, sourceCol ),
+			Bitboard.square( targetRow, targetCol ), PROMOTION_TYPES[ promotion ] );
+	}
+	
+	/**
+	 * @param move A packed move.
+	 * @return the 16 bits of the Polyglot move.
+	 */
+	static int encodeMove( int move ){
+		int source = PackedMove.source( move );
+		int target = PackedMove.target( move );
+		int targetCol = Bitboard.col( target );
+		if( PackedMove.isCastle( move ) ){
+			targetCol = (targetCol == Piece.COL_G ? Piece.COL_H : Piece.COL_A);
+		}
+		int promotion = 0;
+		if( PackedMove.isPromotion( move ) ){
+			for( int i = 1; i < PROMOTION_TYPES.length; i++ ){
+				if( PROMOTION_TYPES[ i ] == PackedMove.promotionType( move ) ){
+					promotion = i;
+				}
+			}
+		}
+		return targetCol | Bitboard.row( target ) << 3 | Bitboard.col( source ) << 6
+			| Bitboard.row( source ) << 9 | promotion << 12;
+	}
+	
+	/**
+	 * Releases the file. The mapping is freed by the garbage collector, as
+	 * Java offers no way to unmap it earlier.
+	 */
+	@Override
+	public void close() {
+		this.buffer = null;
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public File getFile() {
+		return file;
+	}
+	public int getEntryCount() {
+		return entryCount;
+	}
+	
+	/**
+	 * Prints the book moves of a position and the lookup time.
+	 * Usage: PolyglotBook book.bin ["fen"]
+	 */
+	public static void main( String[] args ) throws IOException {
+		if( args.length < 1 ){
+			System.out.println( "usage: PolyglotBook book.bin [\"fen\"]" );
+			return;
+		}
+		PolyglotBook book = new PolyglotBook( new File( args[ 0 ] ) );
+		ChessGame chessGame = (args.length > 1 ? ChessGame.fromFen( args[ 1 ] ) : new ChessGame());
+		
+		int lookups = 100000;
+		List<BookMove> moves = null;
+		long startTime = System.nanoTime();
+		for( int i = 0; i < lookups; i++ ){
+			moves = book.getMoves( chessGame );
+		}
+		long elapsedNanos = System.nanoTime() - startTime;
+		
+		System.out.println( "entries: " + book.getEntryCount() );
+		System.out.println( "moves:   " + moves );
+		System.out.println( "lookup (us): " + elapsedNanos / 1000.0 / lookups );
+		book.close();
+	}
+	
+}
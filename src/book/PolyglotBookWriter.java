@@ -0,0 +1,188 @@
+package book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import database.GameDatabase;
+import database.GameResult;
+import database.GameVisitor;
+import logic.ChessGame;
+
+/**
+ * Creates a Polyglot book (see PolyglotBook) from the openings of the games
+ * of a GameDatabase. The weight of a move is the number of games in which it
+ * was played in the position.
+ */
+public class PolyglotBookWriter {
+	
+	public static final int DEFAULT_PLIES = 24;
+	
+	private int plies = DEFAULT_PLIES;
+	private int minimumGames = 1;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * A position key with a move played in it.
+	 */
+	private static class Entry {
+		final long key;
+		final int move;
+		int weight;
+		
+		Entry( long key, int move ){
+			this.key = key;
+			this.move = move;
+		}
+		
+		@Override
+		public boolean equals( Object object ){
+			if( ! (object instanceof Entry) ){
+				return false;
+			}
+			Entry other = (Entry) object;
+			return this.key == other.key && this.move == other.move;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (int) (this.key ^ (this.key >>> 32)) * 31 + this.move;
+		}
+	}
+	
+	private static final Comparator<Entry> BY_KEY_AND_WEIGHT = new Comparator<Entry>() {
+		@Override
+		public int compare( Entry entry1, Entry entry2 ){
+			int comparison = Long.compareUnsigned( entry1.key, entry2.key );
+			if( comparison == 0 ){
+				comparison = entry2.weight - entry1.weight;
+			}
+			return comparison != 0 ? comparison : entry1.move - entry2.move;
+		}
+	};
+	
+	/**
+	 * Writes a book with the first moves of all games of the database.
+	 * @param database The games.
+	 * @param bookFile The book, overwritten if it exists.
+	 * @return number of entries written.
+	 * @throws IOException if writing fails.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public int write( GameDatabase database, File bookFile ) throws IOException, InterruptedException {
+		final Map<Entry, AtomicInteger> counts = new ConcurrentHashMap<Entry, AtomicInteger>();
+		database.scan( this.threads, new GameVisitor() {
+			@Override
+			public void visitMove( int gameIndex, int ply, ChessGame chessGame, int move, GameResult result ){
+				if( ply >= plies ){
+					return;
+				}
+				Entry entry = new Entry( PolyglotKeys.hash( chessGame ), PolyglotBook.encodeMove( move ) );
+				AtomicInteger count = counts.get( entry );
+				if( count == null ){
+					AtomicInteger newCount = new AtomicInteger();
+					count = counts.putIfAbsent( entry, newCount );
+					if( count == null ){
+						count = newCount;
+					}
+				}
+				count.incrementAndGet();
+			}
+			@Override
+			public void endGame( int gameIndex, ChessGame chessGame, GameResult result ){
+			}
+		} );
+		
+		List<Entry> entries = new ArrayList<Entry>( counts.size() );
+		for( Map.Entry<Entry, AtomicInteger> count : counts.entrySet() ){
+			if( count.getValue().get() >= this.minimumGames ){
+				Entry entry = count.getKey();
+				// The weight has 16 bits.
+				entry.weight = Math.min( 0xFFFF, count.getValue().get() );
+				entries.add( entry );
+			}
+		}
+		Collections.sort( entries, BY_KEY_AND_WEIGHT );
+		
+		DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( bookFile ), 1 << 16 ) );
+		try {
+			for( Entry entry : entries ){
+				output.writeLong( entry.key );
+				output.writeShort( entry.move );
+				output.writeShort( entry.weight );
+				output.writeInt( 0 );
+			}
+		} finally {
+			output.close();
+		}
+		return entries.size();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public int getPlies() {
+		return plies;
+	}
+	/**
+	 * @param plies number of moves per game that go into the book.
+	 */
+	public void setPlies(int plies) {
+		this.plies = plies;
+	}
+	public int getMinimumGames() {
+		return minimumGames;
+	}
+	/**
+	 * @param minimumGames number of games a move must be played in to go
+	 * 		  into the book.
+	 */
+	public void setMinimumGames(int minimumGames) {
+		this.minimumGames = minimumGames;
+	}
+	public int getThreads() {
+		return threads;
+	}
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * Creates a book from a game database.
+	 * Usage: PolyglotBookWriter [-plies n] [-min games] [-threads n] games.jcdb book.bin
+	 */
+	public static void main( String[] args ) throws IOException, InterruptedException {
+		PolyglotBookWriter writer = new PolyglotBookWriter();
+		int argIndex = 0;
+		while( args.length > argIndex + 1 && args[ argIndex ].startsWith( "-" ) ){
+			if( args[ argIndex ].equals( "-plies" ) ){
+				writer.setPlies( Integer.parseInt( args[ argIndex + 1 ] ) );
+			} else if( args[ argIndex ].equals( "-min" ) ){
+				writer.setMinimumGames( Integer.parseInt( args[ argIndex + 1 ] ) );
+			} else if( args[ argIndex ].equals( "-threads" ) ){
+				writer.setThreads( Integer.parseInt( args[ argIndex + 1 ] ) );
+			}
+			argIndex += 2;
+		}
+		if( args.length < argIndex + 2 ){
+			System.out.println( "usage: PolyglotBookWriter [-plies n] [-min games] [-threads n] games.jcdb book.bin" );
+			return;
+		}
+		GameDatabase database = new GameDatabase( new File( args[ argIndex ] ) );
+		try {
+			int entries = writer.write( database, new File( args[ argIndex + 1 ] ) );
+			System.out.println( "entries: " + entries );
+		} finally {
+			database.close();
+		}
+	}
+	
+}
@@ -0,0 +1,187 @@
+package book;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import logic.Bitboard;
+import logic.ChessGame;
+import logic.ChessGame.GameState;
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Position hash of the Polyglot opening book format. It is computed like the
+ * Zobrist hash of ChessGame, but with the 781 "Random64" keys of the Polyglot
+ * specification, so that books made by other programs can be probed.
+ *
+ * The keys are not part of this source tree. They are read from the file named
+ * by the system property "polyglot.keys" or else from the class path resource
+ * "/book/polyglot-random64.txt". The file may be any text that contains the
+ * 781 keys as 16 digit hex numbers in order, e.g. the random.c file of the
+ * Polyglot sources or the table of the format description.
+ */
+public final class PolyglotKeys {
+	
+	public static final String KEYS_PROPERTY = "polyglot.keys";
+	public static final String KEYS_RESOURCE = "/book/polyglot-random64.txt";
+	public static final int KEY_COUNT = 781;
+	
+	// Offsets into the keys, see the format description.
+	private static final int CASTLING_OFFSET = 768;
+	private static final int EN_PASSANT_OFFSET = 772;
+	private static final int TURN_OFFSET = 780;
+	
+	private static final Team[] TEAMS = Team.values();
+	private static final Type[] TYPES = Type.values();
+	
+	private static final Pattern HEX_KEY = Pattern.compile( "(?:0[xX])?([0-9A-Fa-f]{16})(?![0-9A-Fa-f])" );
+	
+	private static long[] keys;
+	
+	private PolyglotKeys() {
+	}
+	
+	/**
+	 * @return the 781 keys.
+	 * @throws IllegalStateException if the keys cannot be found or read.
+	 */
+	private static synchronized long[] getKeys() {
+		if( keys == null ){
+			try {
+				keys = loadKeys();
+			} catch( IOException e ){
+				throw new IllegalStateException( "Cannot read the Polyglot keys: " + e.getMessage(), e );
+			}
+		}
+		return keys;
+	}
+	
+	private static long[] loadKeys() throws IOException {
+		String fileName = System.getProperty( KEYS_PROPERTY );
+		InputStream input;
+		if( fileName != null ){
+			input = new FileInputStream( new File( fileName ) );
+		} else {
+			input = PolyglotKeys.class.getResourceAsStream( KEYS_RESOURCE );
+			if( input == null ){
+				throw new IOException( "neither the system property " + KEYS_PROPERTY
+					+ " nor the resource " + KEYS_RESOURCE + " is set" );
+			}
+		}
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[ 8192 ];
+			int length;
+			while( (length = input.read( buffer )) > 0 ){
+				content.write( buffer, 0, length );
+			}
+		} finally {
+			input.close();
+		}
+		return parseKeys( new String( content.toByteArray(), StandardCharsets.UTF_8 ) );
+	}
+	
+	/**
+	 * @param text text with the keys as 16 digit hex numbers.
+	 * @return the keys.
+	 * @throws IOException if the text does not contain exactly 781 keys.
+	 */
+	static long[] parseKeys( String text ) throws IOException {
+		long[] result = new long[ KEY_COUNT ];
+		int count = 0;
+		Matcher matcher = HEX_KEY.matcher( text );
+		while( matcher.find() ){
+			if( count == KEY_COUNT ){
+				throw new IOException( "more than " + KEY_COUNT + " keys" );
+			}
+			result[ count++ ] = Long.parseUnsignedLong( matcher.group( 1 ), 16 );
+		}
+		if( count != KEY_COUNT ){
+			throw new IOException( count + " keys instead of " + KEY_COUNT );
+		}
+		return result;
+	}
+	
+	/**
+	 * Computes the Polyglot key of the current position.
+	 * @param chessGame The position.
+	 * @return the key, as stored in Polyglot books.
+	 */
+	public static long hash( ChessGame chessGame ){
+		long[] keys = getKeys();
+		long hash = 0L;
+		Bitboard bitboard = chessGame.getBitboard();
+		for( Team team : TEAMS ){
+			for( Type type : TYPES ){
+				int offset = 64 * pieceKind( team, type );
+				long pieces = bitboard.getPieces( team, type );
+				while( pieces != 0 ){
+					// Bitboard squares are numbered like Polyglot's: 8 * row + col.
+					hash ^= keys[ offset + Long.numberOfTrailingZeros( pieces ) ];
+					pieces &= pieces - 1;
+				}
+			}
+		}
+		int castlingRights = chessGame.getCastlingRights();
+		if( (castlingRights & ChessGame.CASTLING_WHITE_KINGSIDE) != 0 ){
+			hash ^= keys[ CASTLING_OFFSET ];
+		}
+		if( (castlingRights & ChessGame.CASTLING_WHITE_QUEENSIDE) != 0 ){
+			hash ^= keys[ CASTLING_OFFSET + 1 ];
+		}
+		if( (castlingRights & ChessGame.CASTLING_BLACK_KINGSIDE) != 0 ){
+			hash ^= keys[ CASTLING_OFFSET + 2 ];
+		}
+		if( (castlingRights & ChessGame.CASTLING_BLACK_QUEENSIDE) != 0 ){
+			hash ^= keys[ CASTLING_OFFSET + 3 ];
+		}
+		// Like Polyglot, ChessGame only sets the en passant square if a pawn
+		// can capture on it.
+		int enPassantSquare = chessGame.getEnPassantSquare();
+		if( enPassantSquare != ChessGame.NO_SQUARE ){
+			hash ^= keys[ EN_PASSANT_OFFSET + Bitboard.col( enPassantSquare ) ];
+		}
+		if( chessGame.getGameState() == GameState.WHITE ){
+			hash ^= keys[ TURN_OFFSET ];
+		}
+		return hash;
+	}
+	
+	/**
+	 * @return the Polyglot piece kind: black pawn 0, white pawn 1, black
+	 * 		   knight 2, .., white king 11.
+	 */
+	private static int pieceKind( Team team, Type type ){
+		int kind;
+		switch( type ){
+		case PAWN:
+			kind = 0;
+			break;
+		case KNIGHT:
+			kind = 2;
+			break;
+		case BISHOP:
+			kind = 4;
+			break;
+		case ROOK:
+			kind = 6;
+			break;
+		case QUEEN:
+			kind = 8;
+			break;
+		case KING:
+			kind = 10;
+			break;
+		default:
+			throw new IllegalArgumentException( "Unknown piece type: " + type );
+		}
+		return team == Team.WHITE ? kind + 1 : kind;
+	}
+	
+}
@@ -0,0 +1,368 @@
+package database;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import logic.ChessGame;
+import logic.PackedMove;
+import logic.Piece.Type;
+
+/**
+ * Read access to a binary game database file, written by GameDatabaseWriter.
+ * The file is mapped into memory with FileChannel.map, so games are read
+ * straight from the page cache without copying, and several threads can
+ * replay games at once (see scan).
+ *
+ * File layout, all numbers big endian:
+ * <pre>
+ * header: int magic "JCDB", int version, long game count, long index offset
+ * games:  one record per game, see below
+ * index:  long offset of each game record
+ * </pre>
+ * Game record:
+ * <pre>
+ * unsigned short ply count, byte result (GameResult.ordinal()), byte flags,
+ * unsigned short tag bytes, tag pairs (name and value, each an unsigned short
+ * length followed by UTF-8 bytes), one unsigned short per move
+ * </pre>
+ * A move takes 16 bits: 6 bits source square, 6 bits target square and 3 bits
+ * promotion type (Type.ordinal() + 1, 0 if none). The flags of the packed move
+ * are restored from the position when the game is replayed.
+ */
+public class GameDatabase implements Closeable {
+	
+	static final int MAGIC = 0x4A434442;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	static final int GAME_COUNT_OFFSET = 8;
+	static final int INDEX_OFFSET_OFFSET = 16;
+	
+	// Game record header: ply count, result, flags and tag bytes.
+	static final int RECORD_HEADER_SIZE = 6;
+	static final int FLAG_FEN = 1;
+	static final int MAX_PLIES = 0xFFFF;
+	static final int MAX_TAG_BYTES = 0xFFFF;
+	
+	private static final int TARGET_SHIFT = 6;
+	private static final int PROMOTION_SHIFT = 12;
+	private static final int SQUARE_MASK = 0x3F;
+	private static final Type[] TYPES = Type.values();
+	
+	// Record header, tags and moves, so a record can be read from a single
+	// segment of the mapped file.
+	private static final long MAX_RECORD_SIZE = RECORD_HEADER_SIZE + MAX_TAG_BYTES + 2L * MAX_PLIES;
+	
+	// Games that a worker thread of scan takes at once.
+	private static final int SCAN_CHUNK_SIZE = 256;
+	
+	private final File file;
+	private final MappedFile mappedFile;
+	private final int gameCount;
+	private final long indexOffset;
+	
+	/**
+	 * Opens and maps a database file.
+	 * @param file The database file.
+	 * @throws IOException if the file cannot be read or is no game database.
+	 */
+	public GameDatabase( File file ) throws IOException {
+		this.file = file;
+		this.mappedFile = new MappedFile( file, MAX_RECORD_SIZE );
+		if( this.mappedFile.size() < HEADER_SIZE ){
+			throw new IOException( "Not a game database: " + file );
+		}
+		if( this.mappedFile.getInt( 0 ) != MAGIC ){
+			throw new IOException( "Not a game database: " + file );
+		}
+		int version = this.mappedFile.getInt( 4 );
+		if( version != VERSION ){
+			throw new IOException( "Unsupported game database version " + version + ": " + file );
+		}
+		long count = this.mappedFile.getLong( GAME_COUNT_OFFSET );
+		if( count > Integer.MAX_VALUE ){
+			throw new IOException( "Too many games: " + count );
+		}
+		this.gameCount = (int) count;
+		this.indexOffset = this.mappedFile.getLong( INDEX_OFFSET_OFFSET );
+	}
+	
+	/**
+	 * Packs a move into the 16 bits stored per move.
+	 * @param move A packed move (see PackedMove).
+	 * @return the stored move.
+	 */
+	static int encodeMove( int move ){
+		int stored = PackedMove.source( move ) | PackedMove.target( move ) << TARGET_SHIFT;
+		if( PackedMove.isPromotion( move ) ){
+			stored |= (PackedMove.promotionType( move ).ordinal() + 1) << PROMOTION_SHIFT;
+		}
+		return stored;
+	}
+	
+	/**
+	 * Restores a stored move for the position it is played in.
+	 * @param chessGame position before the move.
+	 * @param stored the 16 bits of the move.
+	 * @return the packed move (see PackedMove).
+	 */
+	public static int decodeMove( ChessGame chessGame, int stored ){
+		int promotion = stored >>> PROMOTION_SHIFT;
+		return chessGame.encodeMove( stored & SQUARE_MASK, (stored >>> TARGET_SHIFT) & SQUARE_MASK,
+			promotion == 0 ? null : TYPES[ promotion - 1 ] );
+	}
+	
+	/**
+	 * @param gameIndex index between 0 and getGameCount() - 1.
+	 * @return offset of the game record in the file.
+	 */
+	public long getGameOffset( int gameIndex ){
+		if( gameIndex < 0 || gameIndex >= this.gameCount ){
+			throw new IndexOutOfBoundsException( "Game: " + gameIndex + ", games: " + this.gameCount );
+		}
+		return this.mappedFile.getLong( this.indexOffset + 8L * gameIndex );
+	}
+	
+	public int getPlyCount( int gameIndex ){
+		return this.mappedFile.getUnsignedShort( getGameOffset( gameIndex ) );
+	}
+	
+	public GameResult getResult( int gameIndex ){
+		return GameResult.fromOrdinal( this.mappedFile.get( getGameOffset( gameIndex ) + 2 ) );
+	}
+	
+	/**
+	 * @param gameIndex index between 0 and getGameCount() - 1.
+	 * @param ply index of the move, between 0 and getPlyCount() - 1.
+	 * @return the 16 bits of the move, see decodeMove.
+	 */
+	public int getMove( int gameIndex, int ply ){
+		long offset = getGameOffset( gameIndex );
+		ByteBuffer segment = this.mappedFile.segment( offset );
+		int position = MappedFile.segmentOffset( offset );
+		int plyCount = segment.getShort( position ) & 0xFFFF;
+		if( ply < 0 || ply >= plyCount ){
+			throw new IndexOutOfBoundsException( "Ply: " + ply + ", plies: " + plyCount );
+		}
+		int tagBytes = segment.getShort( position + 4 ) & 0xFFFF;
+		return segment.getShort( position + RECORD_HEADER_SIZE + tagBytes + 2 * ply ) & 0xFFFF;
+	}
+	
+	/**
+	 * Decodes the tag pairs of a game. Creates objects, so scans that only
+	 * need the moves should avoid it.
+	 * @param gameIndex index between 0 and getGameCount() - 1.
+	 * @return the tags in the order they were written.
+	 */
+	public Map<String, String> getTags( int gameIndex ){
+		long offset = getGameOffset( gameIndex );
+		ByteBuffer segment = this.mappedFile.segment( offset );
+		int position = MappedFile.segmentOffset( offset ) + 4;
+		int end = position + 2 + (segment.getShort( position ) & 0xFFFF);
+		position += 2;
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		while( position < end ){
+			String name = readString( segment, position );
+			position += 2 + (segment.getShort( position ) & 0xFFFF);
+			String value = readString( segment, position );
+			position += 2 + (segment.getShort( position ) & 0xFFFF);
+			tags.put( name, value );
+		}
+		return tags;
+	}
+	
+	public String getTag( int gameIndex, String name ){
+		return getTags( gameIndex ).get( name );
+	}
+	
+	private static String readString( ByteBuffer segment, int position ){
+		byte[] bytes = new byte[ segment.getShort( position ) & 0xFFFF ];
+		for( int i = 0; i < bytes.length; i++ ){
+			bytes[ i ] = segment.get( position + 2 + i );
+		}
+		return new String( bytes, StandardCharsets.UTF_8 );
+	}
+	
+	/**
+	 * @param gameIndex index between 0 and getGameCount() - 1.
+	 * @return the start position of the game, from its FEN tag if it has one.
+	 */
+	public ChessGame createStartPosition( int gameIndex ){
+		if( (this.mappedFile.get( getGameOffset( gameIndex ) + 3 ) & FLAG_FEN) != 0 ){
+			return ChessGame.fromFen( getTag( gameIndex, "FEN" ) );
+		}
+		return new ChessGame();
+	}
+	
+	/**
+	 * Replays the first moves of a game.
+	 * @param gameIndex index between 0 and getGameCount() - 1.
+	 * @param plies number of moves to play, at most getPlyCount().
+	 * @return the position after the moves.
+	 */
+	public ChessGame replay( int gameIndex, int plies ){
+		ChessGame chessGame = createStartPosition( gameIndex );
+		for( int ply = 0; ply < plies; ply++ ){
+			chessGame.makeMove( decodeMove( chessGame, getMove( gameIndex, ply ) ) );
+		}
+		return chessGame;
+	}
+	
+	/**
+	 * Replays every game and passes its positions to the visitor. The games
+	 * are taken in chunks by the worker threads, so the visitor sees them out
+	 * of order.
+	 * @param threads number of worker threads, at least 1.
+	 * @param visitor The visitor, called from all worker threads.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 * @throws RuntimeException the first exception thrown while replaying a
+	 * 		   game or by the visitor; the remaining games are not scanned.
+	 */
+	public void scan( int threads, GameVisitor visitor ) throws InterruptedException {
+		scan( threads, 0, this.gameCount, visitor );
+	}
+	
+	/**
+	 * Replays a range of games, see scan(int, GameVisitor).
+	 * @param threads number of worker threads, at least 1.
+	 * @param fromGame index of the first game.
+	 * @param toGame index after the last game.
+	 * @param visitor The visitor, called from all worker threads.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 * @throws RuntimeException the first exception thrown while replaying a
+	 * 		   game or by the visitor; the remaining games are not scanned.
+	 */
+	public void scan( int threads, int fromGame, final int toGame, final GameVisitor visitor ) throws InterruptedException {
+		if( fromGame < 0 || toGame > this.gameCount || fromGame > toGame ){
+			throw new IndexOutOfBoundsException( "Games: " + fromGame + " to " + toGame + ", games: " + this.gameCount );
+		}
+		final AtomicInteger nextChunk = new AtomicInteger( fromGame );
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] workers = new Thread[ threads ];
+		for( int i = 0; i < threads; i++ ){
+			workers[ i ] = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					try {
+						scanChunks( nextChunk, toGame, visitor );
+					} catch( Throwable e ){
+						// Keeps the first failure and lets the other workers
+						// stop at their next chunk.
+						failure.compareAndSet( null, e );
+						nextChunk.set( toGame );
+					}
+				}
+			}, "game-database-scan-" + i );
+			workers[ i ].setDaemon( true );
+			workers[ i ].start();
+		}
+		for( Thread worker : workers ){
+			worker.join();
+		}
+		Throwable e = failure.get();
+		if( e instanceof RuntimeException ){
+			throw (RuntimeException) e;
+		} else if( e instanceof Error ){
+			throw (Error) e;
+		} else if( e != null ){
+			throw new IllegalStateException( "Scanning the games failed: " + e.getMessage(), e );
+		}
+	}
+	
+	private void scanChunks( AtomicInteger nextChunk, int toGame, GameVisitor visitor ){
+		// Games from the start position are taken back move by move instead
+		// of creating a new ChessGame for each.
+		ChessGame startPosition = new ChessGame();
+		int start;
+		while( (start = nextChunk.getAndAdd( SCAN_CHUNK_SIZE )) < toGame ){
+			int end = Math.min( toGame, start + SCAN_CHUNK_SIZE );
+			for( int gameIndex = start; gameIndex < end; gameIndex++ ){
+				long offset = getGameOffset( gameIndex );
+				ByteBuffer segment = this.mappedFile.segment( offset );
+				int position = MappedFile.segmentOffset( offset );
+				int plyCount = segment.getShort( position ) & 0xFFFF;
+				GameResult result = GameResult.fromOrdinal( segment.get( position + 2 ) );
+				boolean hasFen = (segment.get( position + 3 ) & FLAG_FEN) != 0;
+				int movePosition = position + RECORD_HEADER_SIZE + (segment.getShort( position + 4 ) & 0xFFFF);
+				
+				ChessGame chessGame = (hasFen ? createStartPosition( gameIndex ) : startPosition);
+				for( int ply = 0; ply < plyCount; ply++ ){
+					int move = decodeMove( chessGame, segment.getShort( movePosition + 2 * ply ) & 0xFFFF );
+					visitor.visitMove( gameIndex, ply, chessGame, move, result );
+					chessGame.makeMove( move );
+				}
+				visitor.endGame( gameIndex, chessGame, result );
+				if( ! hasFen ){
+					for( int ply = 0; ply < plyCount; ply++ ){
+						chessGame.unmakeMove();
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Releases the file. The mapping is freed by the garbage collector, as
+	 * Java offers no way to unmap it earlier.
+	 */
+	@Override
+	public void close() {
+		this.mappedFile.close();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public File getFile() {
+		return file;
+	}
+	public int getGameCount() {
+		return gameCount;
+	}
+	
+	/**
+	 * Replays all games of a database and prints the throughput.
+	 * Usage: GameDatabase [-threads n] games.jcdb
+	 */
+	public static void main( String[] args ) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int argIndex = 0;
+		if( args.length > 1 && args[ 0 ].equals( "-threads" ) ){
+			threads = Integer.parseInt( args[ 1 ] );
+			argIndex = 2;
+		}
+		if( args.length <= argIndex ){
+			System.out.println( "usage: GameDatabase [-threads n] games.jcdb" );
+			return;
+		}
+		
+		GameDatabase database = new GameDatabase( new File( args[ argIndex ] ) );
+		final LongAdder moves = new LongAdder();
+		long startTime = System.nanoTime();
+		database.scan( threads, new GameVisitor() {
+			@Override
+			public void visitMove( int gameIndex, int ply, ChessGame chessGame, int move, GameResult result ){
+				moves.increment();
+			}
+			@Override
+			public void endGame( int gameIndex, ChessGame chessGame, GameResult result ){
+			}
+		} );
+		long elapsedNanos = Math.max( 1, System.nanoTime() - startTime );
+		database.close();
+		
+		System.out.println( "threads:   " + threads );
+		System.out.println( "games:     " + database.getGameCount() );
+		System.out.println( "moves:     " + moves.sum() );
+		System.out.println( "time (ms): " + elapsedNanos / 1000000 );
+		System.out.println( "games/sec: " + (long)( database.getGameCount() * 1e9 / elapsedNanos ) );
+		System.out.println( "moves/sec: " + (long)( moves.sum() * 1e9 / elapsedNanos ) );
+	}
+	
+}
@@ -0,0 +1,250 @@
+package database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import logic.ChessGame;
+import logic.MoveList;
+import logic.San;
+import pgn.PgnGame;
+import pgn.PgnReader;
+
+/**
+ * Writes a binary game database file (see GameDatabase for the layout). Games
+ * are streamed to the file as they are added; the index and the header are
+ * written by close. The file is not readable until then.
+ */
+public class GameDatabaseWriter implements Closeable {
+	
+	private final File file;
+	private final DataOutputStream output;
+	private long position;
+	private long[] gameOffsets;
+	private int gameCount;
+	
+	// Used by addGame(PgnGame).
+	private final MoveList moveList = new MoveList();
+	private final MoveList sanBuffer = new MoveList();
+	
+	/**
+	 * @param file The database file.
+	 * @param append True, to add games to an existing database. Its index is
+	 * 		  cut off and written again on close. False, to overwrite the file.
+	 * @throws IOException if the file cannot be written or, when appending,
+	 * 		   is no game database.
+	 */
+	public GameDatabaseWriter( File file, boolean append ) throws IOException {
+		this.file = file;
+		this.gameOffsets = new long[ 1024 ];
+		boolean isAppending = append && file.exists();
+		if( isAppending ){
+			readIndex();
+		} else {
+			this.position = GameDatabase.HEADER_SIZE;
+		}
+		this.output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, isAppending ), 1 << 16 ) );
+		if( ! isAppending ){
+			// Header with no games, completed by close.
+			this.output.writeInt( GameDatabase.MAGIC );
+			this.output.writeInt( GameDatabase.VERSION );
+			this.output.writeLong( 0 );
+			this.output.writeLong( 0 );
+		}
+	}
+	
+	/**
+	 * Reads the index of an existing database and cuts it off the file, so
+	 * that new games are written in its place.
+	 * @throws IOException if the file is no game database or its header
+	 * 		   does not describe a complete index; the file is left unchanged.
+	 */
+	private void readIndex() throws IOException {
+		// Read without mapping, as a mapped file cannot be truncated on all
+		// platforms.
+		RandomAccessFile randomAccessFile = new RandomAccessFile( this.file, "rw" );
+		try {
+			if( randomAccessFile.length() < GameDatabase.HEADER_SIZE
+					|| randomAccessFile.readInt() != GameDatabase.MAGIC ){
+				throw new IOException( "Not a game database: " + this.file );
+			}
+			if( randomAccessFile.readInt() != GameDatabase.VERSION ){
+				throw new IOException( "Unsupported game database version: " + this.file );
+			}
+			long gameCount = randomAccessFile.readLong();
+			long indexOffset = randomAccessFile.readLong();
+			// A writer that never reached close() leaves a header with no
+			// index; cutting the file there would lose every game.
+			if( gameCount < 0 || gameCount > Integer.MAX_VALUE || indexOffset < GameDatabase.HEADER_SIZE
+					|| indexOffset + 8L * gameCount != randomAccessFile.length() ){
+				throw new IOException( "Game database was not closed: " + this.file );
+			}
+			this.gameCount = (int) gameCount;
+			this.position = indexOffset;
+			this.gameOffsets = Arrays.copyOf( this.gameOffsets, Math.max( this.gameOffsets.length, this.gameCount * 2 ) );
+			DataInputStream index = new DataInputStream( new BufferedInputStream(
+				Channels.newInputStream( randomAccessFile.getChannel().position( this.position ) ), 1 << 16 ) );
+			for( int i = 0; i < this.gameCount; i++ ){
+				this.gameOffsets[ i ] = index.readLong();
+			}
+			randomAccessFile.setLength( this.position );
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	/**
+	 * Adds a game. A "FEN" tag sets the start position of the moves.
+	 * @param tags tag pairs of the game, e.g. "White"; written as given.
+	 * @param result The result.
+	 * @param moves the packed moves (see PackedMove) in the order played.
+	 * @return index of the game in the database.
+	 * @throws IOException if writing fails.
+	 */
+	public int addGame( Map<String, String> tags, GameResult result, MoveList moves ) throws IOException {
+		if( moves.size() > GameDatabase.MAX_PLIES ){
+			throw new IllegalArgumentException( "Too many moves: " + moves.size() );
+		}
+		byte[][] tagBytes = new byte[ 2 * tags.size() ][];
+		int tagLength = 0;
+		int i = 0;
+		for( Map.Entry<String, String> tag : tags.entrySet() ){
+			tagBytes[ i ] = tag.getKey().getBytes( StandardCharsets.UTF_8 );
+			tagBytes[ i + 1 ] = tag.getValue().getBytes( StandardCharsets.UTF_8 );
+			tagLength += 4 + tagBytes[ i ].length + tagBytes[ i + 1 ].length;
+			i += 2;
+		}
+		if( tagLength > GameDatabase.MAX_TAG_BYTES ){
+			throw new IllegalArgumentException( "Tags too long: " + tagLength + " bytes" );
+		}
+		
+		if( this.gameCount == this.gameOffsets.length ){
+			this.gameOffsets = Arrays.copyOf( this.gameOffsets, this.gameCount * 2 );
+		}
+		this.gameOffsets[ this.gameCount ] = this.position;
+		
+		this.output.writeShort( moves.size() );
+		this.output.writeByte( result.ordinal() );
+		this.output.writeByte( tags.containsKey( "FEN" ) ? GameDatabase.FLAG_FEN : 0 );
+		this.output.writeShort( tagLength );
+		for( byte[] bytes : tagBytes ){
+			this.output.writeShort( bytes.length );
+			this.output.write( bytes );
+		}
+		for( i = 0; i < moves.size(); i++ ){
+			this.output.writeShort( GameDatabase.encodeMove( moves.get( i ) ) );
+		}
+		this.position += GameDatabase.RECORD_HEADER_SIZE + tagLength + 2L * moves.size();
+		return this.gameCount++;
+	}
+	
+	/**
+	 * Adds a game read from a PGN file. Its SAN moves are decoded on a
+	 * ChessGame.
+	 * @param game The game.
+	 * @return index of the game in the database.
+	 * @throws IOException if writing fails.
+	 * @throws IllegalArgumentException if a move cannot be decoded.
+	 */
+	public int addGame( PgnGame game ) throws IOException {
+		String fen = game.getTag( "FEN" );
+		ChessGame chessGame = (fen == null ? new ChessGame() : ChessGame.fromFen( fen ));
+		this.moveList.clear();
+		for( String san : game.getMoves() ){
+			int move = San.parse( chessGame, san, this.sanBuffer );
+			this.moveList.add( move );
+			chessGame.makeMove( move );
+		}
+		return addGame( game.getTags(), GameResult.fromPgn( game.getResult() ), this.moveList );
+	}
+	
+	/**
+	 * Writes the index and completes the header.
+	 */
+	@Override
+	public void close() throws IOException {
+		long indexOffset = this.position;
+		for( int i = 0; i < this.gameCount; i++ ){
+			this.output.writeLong( this.gameOffsets[ i ] );
+		}
+		this.output.close();
+		
+		RandomAccessFile randomAccessFile = new RandomAccessFile( this.file, "rw" );
+		try {
+			randomAccessFile.seek( GameDatabase.GAME_COUNT_OFFSET );
+			randomAccessFile.writeLong( this.gameCount );
+			randomAccessFile.writeLong( indexOffset );
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public File getFile() {
+		return file;
+	}
+	public int getGameCount() {
+		return gameCount;
+	}
+	
+	/**
+	 * Imports PGN files into a database. Games with moves that cannot be
+	 * decoded are skipped.
+	 * Usage: GameDatabaseWriter [-append] games.jcdb games.pgn [games.pgn ...]
+	 */
+	public static void main( String[] args ) throws IOException {
+		boolean append = false;
+		int argIndex = 0;
+		if( args.length > 0 && args[ 0 ].equals( "-append" ) ){
+			append = true;
+			argIndex = 1;
+		}
+		if( args.length < argIndex + 2 ){
+			System.out.println( "usage: GameDatabaseWriter [-append] games.jcdb games.pgn [games.pgn ...]" );
+			return;
+		}
+		
+		long startTime = System.nanoTime();
+		int skipped = 0;
+		GameDatabaseWriter writer = new GameDatabaseWriter( new File( args[ argIndex++ ] ), append );
+		try {
+			for( ; argIndex < args.length; argIndex++ ){
+				PgnReader reader = new PgnReader( new InputStreamReader(
+					new FileInputStream( args[ argIndex ] ), StandardCharsets.UTF_8 ) );
+				try {
+					PgnGame game;
+					while( (game = reader.next()) != null ){
+						try {
+							writer.addGame( game );
+						} catch( IllegalArgumentException e ){
+							System.out.println( "game " + game.getGameNumber() + " skipped: " + e.getMessage() );
+							skipped++;
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			}
+		} finally {
+			writer.close();
+		}
+		System.out.println( "games:     " + writer.getGameCount() );
+		System.out.println( "skipped:   " + skipped );
+		System.out.println( "bytes:     " + writer.getFile().length() );
+		System.out.println( "time (ms): " + (System.nanoTime() - startTime) / 1000000 );
+	}
+	
+}
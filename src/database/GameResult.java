@@ -0,0 +1,40 @@
+package database;
+
+/**
+ * Result of a stored game, as written in PGN.
+ */
+public enum GameResult {
+	UNKNOWN( "*" ), WHITE_WINS( "1-0" ), BLACK_WINS( "0-1" ), DRAW( "1/2-1/2" );
+	
+	private static final GameResult[] VALUES = values();
+	
+	private final String pgn;
+	
+	private GameResult( String pgn ){
+		this.pgn = pgn;
+	}
+	
+	/**
+	 * @param pgn result token, e.g. "1-0"
+	 * @return the result, UNKNOWN for any other token.
+	 */
+	public static GameResult fromPgn( String pgn ){
+		for( GameResult result : VALUES ){
+			if( result.pgn.equals( pgn ) ){
+				return result;
+			}
+		}
+		return UNKNOWN;
+	}
+	
+	static GameResult fromOrdinal( int ordinal ){
+		return VALUES[ ordinal ];
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public String getPgn() {
+		return pgn;
+	}
+	
+}
@@ -0,0 +1,29 @@
+package database;
+
+import logic.ChessGame;
+
+/**
+ * Receives the positions of replayed games, see GameDatabase.scan. The methods
+ * are called from several worker threads at once.
+ */
+public interface GameVisitor {
+	
+	/**
+	 * Called before each move of a game.
+	 * @param gameIndex index of the game in the database.
+	 * @param ply index of the move in the game, starting at 0.
+	 * @param chessGame position before the move. Must not be changed.
+	 * @param move the packed move (see PackedMove) played next.
+	 * @param result result of the game.
+	 */
+	void visitMove( int gameIndex, int ply, ChessGame chessGame, int move, GameResult result );
+	
+	/**
+	 * Called after the last move of a game.
+	 * @param gameIndex index of the game in the database.
+	 * @param chessGame final position. Must not be changed.
+	 * @param result result of the game.
+	 */
+	void endGame( int gameIndex, ChessGame chessGame, GameResult result );
+	
+}
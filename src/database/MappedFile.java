@@ -0,0 +1,89 @@
+package database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file mapped read-only into memory. A mapped buffer holds at most 2 GB, so
+ * the file is mapped in segments. They overlap, so that a record smaller than
+ * the overlap lies entirely within the segment its start falls into and can
+ * be read from that segment alone.
+ */
+class MappedFile {
+	
+	private static final long SEGMENT_SIZE = 1L << 30;
+	
+	private final MappedByteBuffer[] segments;
+	private final long size;
+	
+	/**
+	 * @param file The file.
+	 * @param overlap size of the largest record read from a single segment.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	MappedFile( File file, long overlap ) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			this.size = channel.size();
+			int segmentCount = (int) (Math.max( 0, this.size - 1 ) / SEGMENT_SIZE) + 1;
+			this.segments = new MappedByteBuffer[ segmentCount ];
+			for( int i = 0; i < segmentCount; i++ ){
+				long start = i * SEGMENT_SIZE;
+				long length = Math.min( this.size - start, SEGMENT_SIZE + overlap );
+				this.segments[ i ] = channel.map( FileChannel.MapMode.READ_ONLY, start, length );
+			}
+		} finally {
+			// The mappings stay valid after the channel is closed.
+			randomAccessFile.close();
+		}
+	}
+	
+	/**
+	 * @param position offset in the file.
+	 * @return the segment that contains the position, see segmentOffset.
+	 */
+	ByteBuffer segment( long position ){
+		return this.segments[ (int) (position / SEGMENT_SIZE) ];
+	}
+	
+	/**
+	 * @param position offset in the file.
+	 * @return offset of the position in its segment.
+	 */
+	static int segmentOffset( long position ){
+		return (int) (position % SEGMENT_SIZE);
+	}
+	
+	byte get( long position ){
+		return segment( position ).get( segmentOffset( position ) );
+	}
+	int getUnsignedShort( long position ){
+		return segment( position ).getShort( segmentOffset( position ) ) & 0xFFFF;
+	}
+	int getInt( long position ){
+		return segment( position ).getInt( segmentOffset( position ) );
+	}
+	long getLong( long position ){
+		return segment( position ).getLong( segmentOffset( position ) );
+	}
+	
+	long size() {
+		return this.size;
+	}
+	
+	/**
+	 * Drops the mappings. They are freed by the garbage collector, as Java
+	 * offers no way to unmap them earlier.
+	 */
+	void close() {
+		for( int i = 0; i < this.segments.length; i++ ){
+			this.segments[ i ] = null;
+		}
+	}
+	
+}
@@ -0,0 +1,65 @@
+package database;
+
+import logic.PackedMove;
+
+/**
+ * How often a move was played in a position of the index, and the results of
+ * those games.
+ */
+public class MoveStatistics {
+	
+	private final int move;
+	private final int count;
+	private final int whiteWins;
+	private final int draws;
+	private final int blackWins;
+	
+	/**
+	 * @param move the packed move (see PackedMove).
+	 * @param count number of times the move was played.
+	 * @param whiteWins games of those won by white.
+	 * @param draws games of those drawn.
+	 * @param blackWins games of those won by black.
+	 */
+	public MoveStatistics( int move, int count, int whiteWins, int draws, int blackWins ){
+		this.move = move;
+		this.count = count;
+		this.whiteWins = whiteWins;
+		this.draws = draws;
+		this.blackWins = blackWins;
+	}
+	
+	@Override
+	public String toString() {
+		return PackedMove.toString( this.move ) + ": " + this.count + " (+" + this.whiteWins
+			+ " =" + this.draws + " -" + this.blackWins + ")";
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	/**
+	 * @return the packed move (see PackedMove).
+	 */
+	public int getMove() {
+		return move;
+	}
+	public int getCount() {
+		return count;
+	}
+	public int getWhiteWins() {
+		return whiteWins;
+	}
+	public int getDraws() {
+		return draws;
+	}
+	public int getBlackWins() {
+		return blackWins;
+	}
+	/**
+	 * @return games with the move that have no known result.
+	 */
+	public int getUnknownResults() {
+		return count - whiteWins - draws - blackWins;
+	}
+	
+}
@@ -0,0 +1,209 @@
+package database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import logic.ChessGame;
+
+/**
+ * Index from positions to the games of a GameDatabase that reached them and
+ * the moves played next, written by PositionIndexBuilder. The file is mapped
+ * into memory and a lookup is a binary search over the position table, so it
+ * touches only a few pages of the file.
+ *
+ * File layout, all numbers big endian:
+ * <pre>
+ * header:     int magic "JCIX", int version, long indexed games, long
+ *             positions, long move entries, long game references
+ * positions:  sorted by hash (unsigned): long hash, long first move entry,
+ *             long first game reference, int move entries, int game references
+ * moves:      int stored move (see GameDatabase), int count, int white wins,
+ *             int draws, int black wins; the most frequent move first
+ * references: int game index, ascending per position
+ * </pre>
+ * Positions are identified by ChessGame.positionHash().
+ */
+public class PositionIndex {
+	
+	static final int MAGIC = 0x4A434958;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 40;
+	static final int POSITION_SIZE = 32;
+	static final int MOVE_SIZE = 20;
+	static final int REFERENCE_SIZE = 4;
+	
+	private final File file;
+	private final MappedFile mappedFile;
+	private final int gameCount;
+	private final long positionCount;
+	private final long moveEntryCount;
+	private final long gameReferenceCount;
+	private final long movesOffset;
+	private final long referencesOffset;
+	
+	/**
+	 * Opens and maps an index file.
+	 * @param file The index file.
+	 * @throws IOException if the file cannot be read or is no position index.
+	 */
+	public PositionIndex( File file ) throws IOException {
+		this.file = file;
+		this.mappedFile = new MappedFile( file, POSITION_SIZE );
+		if( this.mappedFile.size() < HEADER_SIZE || this.mappedFile.getInt( 0 ) != MAGIC ){
+			throw new IOException( "Not a position index: " + file );
+		}
+		int version = this.mappedFile.getInt( 4 );
+		if( version != VERSION ){
+			throw new IOException( "Unsupported position index version " + version + ": " + file );
+		}
+		this.gameCount = (int) this.mappedFile.getLong( 8 );
+		this.positionCount = this.mappedFile.getLong( 16 );
+		this.moveEntryCount = this.mappedFile.getLong( 24 );
+		this.gameReferenceCount = this.mappedFile.getLong( 32 );
+		this.movesOffset = HEADER_SIZE + POSITION_SIZE * this.positionCount;
+		this.referencesOffset = this.movesOffset + MOVE_SIZE * this.moveEntryCount;
+	}
+	
+	/**
+	 * Looks up the current position of a game.
+	 * @param chessGame The position. It is not changed.
+	 * @return the moves and games of the position or null if no indexed game
+	 * 		   reached it.
+	 */
+	public PositionStatistics lookup( ChessGame chessGame ){
+		long hash = chessGame.positionHash();
+		long position = find( hash );
+		if( position < 0 ){
+			return null;
+		}
+		long firstMove = getFirstMoveEntry( position );
+		int moveEntries = getMoveEntryCount( position );
+		List<MoveStatistics> moves = new ArrayList<MoveStatistics>( moveEntries );
+		for( long entry = firstMove; entry < firstMove + moveEntries; entry++ ){
+			long offset = this.movesOffset + MOVE_SIZE * entry;
+			moves.add( new MoveStatistics(
+				GameDatabase.decodeMove( chessGame, this.mappedFile.getInt( offset ) ),
+				this.mappedFile.getInt( offset + 4 ),
+				this.mappedFile.getInt( offset + 8 ),
+				this.mappedFile.getInt( offset + 12 ),
+				this.mappedFile.getInt( offset + 16 ) ) );
+		}
+		return new PositionStatistics( this, hash, moves,
+			getFirstGameReference( position ), getGameReferenceCount( position ) );
+	}
+	
+	/**
+	 * @param hash a position hash.
+	 * @return index of the position in the position table or -1.
+	 */
+	long find( long hash ){
+		long low = 0;
+		long high = this.positionCount - 1;
+		while( low <= high ){
+			long middle = (low + high) >>> 1;
+			int comparison = Long.compareUnsigned( getHash( middle ), hash );
+			if( comparison < 0 ){
+				low = middle + 1;
+			} else if( comparison > 0 ){
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+	
+	// :: RAW ACCESS, USED FOR MERGING ::
+	
+	long getHash( long position ){
+		return this.mappedFile.getLong( HEADER_SIZE + POSITION_SIZE * position );
+	}
+	long getFirstMoveEntry( long position ){
+		return this.mappedFile.getLong( HEADER_SIZE + POSITION_SIZE * position + 8 );
+	}
+	long getFirstGameReference( long position ){
+		return this.mappedFile.getLong( HEADER_SIZE + POSITION_SIZE * position + 16 );
+	}
+	int getMoveEntryCount( long position ){
+		return this.mappedFile.getInt( HEADER_SIZE + POSITION_SIZE * position + 24 );
+	}
+	int getGameReferenceCount( long position ){
+		return this.mappedFile.getInt( HEADER_SIZE + POSITION_SIZE * position + 28 );
+	}
+	/**
+	 * @param entry index of the move entry.
+	 * @param field 0 for the stored move, 1 count, 2 white wins, 3 draws,
+	 * 		  4 black wins.
+	 */
+	int getMoveEntryField( long entry, int field ){
+		return this.mappedFile.getInt( this.movesOffset + MOVE_SIZE * entry + 4 * field );
+	}
+	int getGameReference( long reference ){
+		return this.mappedFile.getInt( this.referencesOffset + REFERENCE_SIZE * reference );
+	}
+	
+	/**
+	 * Releases the file. The mapping is freed by the garbage collector, as
+	 * Java offers no way to unmap it earlier.
+	 */
+	public void close() {
+		this.mappedFile.close();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public File getFile() {
+		return file;
+	}
+	/**
+	 * @return number of games of the database that are indexed. They are the
+	 * 		   first games of the database.
+	 */
+	public int getGameCount() {
+		return gameCount;
+	}
+	public long getPositionCount() {
+		return positionCount;
+	}
+	
+	/**
+	 * Prints the moves and games of a position and the lookup time.
+	 * Usage: PositionIndex games.jcix ["fen"]
+	 */
+	public static void main( String[] args ) throws IOException {
+		if( args.length < 1 ){
+			System.out.println( "usage: PositionIndex games.jcix [\"fen\"]" );
+			return;
+		}
+		PositionIndex index = new PositionIndex( new File( args[ 0 ] ) );
+		ChessGame chessGame = (args.length > 1 ? ChessGame.fromFen( args[ 1 ] ) : new ChessGame());
+		
+		int lookups = 100000;
+		PositionStatistics statistics = null;
+		long startTime = System.nanoTime();
+		for( int i = 0; i < lookups; i++ ){
+			statistics = index.lookup( chessGame );
+		}
+		long elapsedNanos = System.nanoTime() - startTime;
+		
+		System.out.println( "indexed games: " + index.getGameCount() + ", positions: " + index.getPositionCount() );
+		if( statistics == null ){
+			System.out.println( "position not found" );
+		} else {
+			System.out.println( "games: " + statistics.getGameCount() );
+			for( MoveStatistics move : statistics.getMoves() ){
+				System.out.println( "  " + move );
+			}
+			StringBuilder games = new StringBuilder( "first games:" );
+			for( int i = 0; i < Math.min( 10, statistics.getGameCount() ); i++ ){
+				games.append( ' ' ).append( statistics.getGame( i ) );
+			}
+			System.out.println( games );
+		}
+		System.out.println( "lookup (us): " + elapsedNanos / 1000.0 / lookups );
+		index.close();
+	}
+	
+}
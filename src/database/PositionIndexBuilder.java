@@ -0,0 +1,431 @@
+package database;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import logic.ChessGame;
+
+/**
+ * Builds and extends the PositionIndex of a GameDatabase. The games are
+ * replayed through ChessGame on several threads (see GameDatabase.scan) in
+ * batches. The positions of a batch are sorted by hash and merged with the
+ * existing index into a new file, which then replaces the old one. Adding
+ * games to the database and running the builder again indexes only the new
+ * games.
+ */
+public class PositionIndexBuilder {
+	
+	public static final int DEFAULT_BATCH_SIZE = 50000;
+	
+	// Stored move of the last position of a game, which has no next move.
+	// Source and target a1 is never a valid move.
+	private static final int NO_MOVE = 0;
+	
+	private final GameDatabase database;
+	private final File indexFile;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	
+	/**
+	 * @param database The games.
+	 * @param indexFile The index, created if it does not exist.
+	 */
+	public PositionIndexBuilder( GameDatabase database, File indexFile ){
+		this.database = database;
+		this.indexFile = indexFile;
+	}
+	
+	/**
+	 * Indexes the games of the database that the index does not contain yet.
+	 * @return number of games added to the index.
+	 * @throws IOException if reading or writing fails or the index belongs to
+	 * 		   another database.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 * @throws RuntimeException if a game of a batch cannot be replayed (see
+	 * 		   GameDatabase.scan); that batch is not merged into the index.
+	 */
+	public int update() throws IOException, InterruptedException {
+		int indexedGames = 0;
+		if( this.indexFile.exists() ){
+			PositionIndex index = new PositionIndex( this.indexFile );
+			indexedGames = index.getGameCount();
+			index.close();
+		}
+		if( indexedGames > this.database.getGameCount() ){
+			throw new IOException( "The index has more games (" + indexedGames + ") than the database ("
+				+ this.database.getGameCount() + "): " + this.indexFile );
+		}
+		int firstGame = indexedGames;
+		while( indexedGames < this.database.getGameCount() ){
+			int toGame = (int) Math.min( this.database.getGameCount(), (long) indexedGames + this.batchSize );
+			merge( collect( indexedGames, toGame ), toGame );
+			indexedGames = toGame;
+		}
+		return indexedGames - firstGame;
+	}
+	
+	/**
+	 * Positions of a batch of games, sorted by hash. The payload holds the
+	 * game index (upper 32 bits), the result (bits 16 to 23) and the stored
+	 * move played in the position (lower 16 bits).
+	 */
+	private static class Batch {
+		long[] hashes;
+		long[] payloads;
+	}
+	
+	/**
+	 * Replays the games of a batch and sorts their positions.
+	 */
+	private Batch collect( final int fromGame, int toGame ) throws InterruptedException {
+		// Each game writes its positions to its own range of the arrays, so
+		// the worker threads need no synchronization.
+		final int[] firstRecords = new int[ toGame - fromGame + 1 ];
+		long records = 0;
+		for( int gameIndex = fromGame; gameIndex < toGame; gameIndex++ ){
+			firstRecords[ gameIndex - fromGame ] = (int) records;
+			records += this.database.getPlyCount( gameIndex ) + 1;
+			if( records > Integer.MAX_VALUE - 8 ){
+				throw new IllegalStateException( "Batch too large, reduce the batch size: " + this.batchSize );
+			}
+		}
+		firstRecords[ toGame - fromGame ] = (int) records;
+		
+		final Batch batch = new Batch();
+		batch.hashes = new long[ (int) records ];
+		batch.payloads = new long[ (int) records ];
+		this.database.scan( this.threads, fromGame, toGame, new GameVisitor() {
+			@Override
+			public void visitMove( int gameIndex, int ply, ChessGame chessGame, int move, GameResult result ){
+				int record = firstRecords[ gameIndex - fromGame ] + ply;
+				batch.hashes[ record ] = chessGame.positionHash();
+				batch.payloads[ record ] = payload( gameIndex, result, GameDatabase.encodeMove( move ) );
+			}
+			@Override
+			public void endGame( int gameIndex, ChessGame chessGame, GameResult result ){
+				int record = firstRecords[ gameIndex - fromGame + 1 ] - 1;
+				batch.hashes[ record ] = chessGame.positionHash();
+				batch.payloads[ record ] = payload( gameIndex, result, NO_MOVE );
+			}
+		} );
+		sort( batch );
+		return batch;
+	}
+	
+	private static long payload( int gameIndex, GameResult result, int storedMove ){
+		return (long) gameIndex << 32 | result.ordinal() << 16 | storedMove;
+	}
+	
+	/**
+	 * Sorts the positions by hash in unsigned order with a radix sort. It is
+	 * stable, so the records of a hash stay in game order.
+	 */
+	private static void sort( Batch batch ){
+		int size = batch.hashes.length;
+		long[] hashes = batch.hashes;
+		long[] payloads = batch.payloads;
+		long[] hashBuffer = new long[ size ];
+		long[] payloadBuffer = new long[ size ];
+		int[] offsets = new int[ 257 ];
+		for( int shift = 0; shift < 64 && size > 0; shift += 8 ){
+			Arrays.fill( offsets, 0 );
+			for( int i = 0; i < size; i++ ){
+				offsets[ (int) (hashes[ i ] >>> shift & 0xFF) + 1 ]++;
+			}
+			if( offsets[ (int) (hashes[ 0 ] >>> shift & 0xFF) + 1 ] == size ){
+				// All hashes have the same byte here.
+				continue;
+			}
+			for( int digit = 1; digit <= 256; digit++ ){
+				offsets[ digit ] += offsets[ digit - 1 ];
+			}
+			for( int i = 0; i < size; i++ ){
+				int target = offsets[ (int) (hashes[ i ] >>> shift & 0xFF) ]++;
+				hashBuffer[ target ] = hashes[ i ];
+				payloadBuffer[ target ] = payloads[ i ];
+			}
+			long[] swap = hashes;
+			hashes = hashBuffer;
+			hashBuffer = swap;
+			swap = payloads;
+			payloads = payloadBuffer;
+			payloadBuffer = swap;
+		}
+		batch.hashes = hashes;
+		batch.payloads = payloads;
+	}
+	
+	/**
+	 * Writes a new index with the positions of the old index and the batch
+	 * and replaces the old index with it.
+	 */
+	private void merge( Batch batch, int indexedGames ) throws IOException {
+		File directory = this.indexFile.getAbsoluteFile().getParentFile();
+		File positionsFile = File.createTempFile( "positions", ".tmp", directory );
+		File movesFile = File.createTempFile( "moves", ".tmp", directory );
+		File referencesFile = File.createTempFile( "references", ".tmp", directory );
+		PositionIndex oldIndex = (this.indexFile.exists() ? new PositionIndex( this.indexFile ) : null);
+		long positionCount = 0;
+		long moveEntryCount = 0;
+		long referenceCount = 0;
+		try {
+			DataOutputStream positions = open( positionsFile );
+			DataOutputStream moves = open( movesFile );
+			DataOutputStream references = open( referencesFile );
+			try {
+				// Header, completed below.
+				positions.write( new byte[ PositionIndex.HEADER_SIZE ] );
+				
+				long oldPositionCount = (oldIndex == null ? 0 : oldIndex.getPositionCount());
+				long oldPosition = 0;
+				int record = 0;
+				int recordCount = batch.hashes.length;
+				MoveAccumulator accumulator = new MoveAccumulator();
+				while( oldPosition < oldPositionCount || record < recordCount ){
+					long hash;
+					if( oldPosition == oldPositionCount ){
+						hash = batch.hashes[ record ];
+					} else if( record == recordCount ){
+						hash = oldIndex.getHash( oldPosition );
+					} else {
+						long oldHash = oldIndex.getHash( oldPosition );
+						hash = (Long.compareUnsigned( oldHash, batch.hashes[ record ] ) <= 0
+							? oldHash : batch.hashes[ record ]);
+					}
+					accumulator.clear();
+					long firstReference = referenceCount;
+					
+					if( oldPosition < oldPositionCount && oldIndex.getHash( oldPosition ) == hash ){
+						long firstEntry = oldIndex.getFirstMoveEntry( oldPosition );
+						for( long entry = firstEntry; entry < firstEntry + oldIndex.getMoveEntryCount( oldPosition ); entry++ ){
+							accumulator.add( oldIndex.getMoveEntryField( entry, 0 ), oldIndex.getMoveEntryField( entry, 1 ),
+								oldIndex.getMoveEntryField( entry, 2 ), oldIndex.getMoveEntryField( entry, 3 ),
+								oldIndex.getMoveEntryField( entry, 4 ) );
+						}
+						long oldFirstReference = oldIndex.getFirstGameReference( oldPosition );
+						int oldReferences = oldIndex.getGameReferenceCount( oldPosition );
+						for( long reference = oldFirstReference; reference < oldFirstReference + oldReferences; reference++ ){
+							references.writeInt( oldIndex.getGameReference( reference ) );
+						}
+						referenceCount += oldReferences;
+						oldPosition++;
+					}
+					
+					int lastGame = -1;
+					while( record < recordCount && batch.hashes[ record ] == hash ){
+						long payload = batch.payloads[ record++ ];
+						int gameIndex = (int) (payload >>> 32);
+						int result = (int) (payload >>> 16) & 0xFF;
+						int storedMove = (int) payload & 0xFFFF;
+						if( storedMove != NO_MOVE ){
+							accumulator.add( storedMove, 1,
+								result == GameResult.WHITE_WINS.ordinal() ? 1 : 0,
+								result == GameResult.DRAW.ordinal() ? 1 : 0,
+								result == GameResult.BLACK_WINS.ordinal() ? 1 : 0 );
+						}
+						// A game can reach the same position more than once.
+						if( gameIndex != lastGame ){
+							references.writeInt( gameIndex );
+							referenceCount++;
+							lastGame = gameIndex;
+						}
+					}
+					
+					positions.writeLong( hash );
+					positions.writeLong( moveEntryCount );
+					positions.writeLong( firstReference );
+					positions.writeInt( accumulator.size );
+					positions.writeInt( (int) (referenceCount - firstReference) );
+					moveEntryCount += accumulator.write( moves );
+					positionCount++;
+				}
+			} finally {
+				positions.close();
+				moves.close();
+				references.close();
+			}
+			
+			append( positionsFile, movesFile );
+			append( positionsFile, referencesFile );
+			RandomAccessFile header = new RandomAccessFile( positionsFile, "rw" );
+			try {
+				header.writeInt( PositionIndex.MAGIC );
+				header.writeInt( PositionIndex.VERSION );
+				header.writeLong( indexedGames );
+				header.writeLong( positionCount );
+				header.writeLong( moveEntryCount );
+				header.writeLong( referenceCount );
+			} finally {
+				header.close();
+			}
+			if( oldIndex != null ){
+				oldIndex.close();
+				oldIndex = null;
+			}
+			Files.move( positionsFile.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		} finally {
+			if( oldIndex != null ){
+				oldIndex.close();
+			}
+			positionsFile.delete();
+			movesFile.delete();
+			referencesFile.delete();
+		}
+	}
+	
+	private static DataOutputStream open( File file ) throws IOException {
+		return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), 1 << 16 ) );
+	}
+	
+	/**
+	 * Copies the content of a file to the end of another file.
+	 */
+	private static void append( File file, File otherFile ) throws IOException {
+		FileChannel target = new FileOutputStream( file, true ).getChannel();
+		FileChannel source = new FileInputStream( otherFile ).getChannel();
+		try {
+			long position = 0;
+			long size = source.size();
+			while( position < size ){
+				position += source.transferTo( position, size - position, target );
+			}
+		} finally {
+			source.close();
+			target.close();
+		}
+	}
+	
+	/**
+	 * Sums up the moves played in one position.
+	 */
+	private static class MoveAccumulator {
+		int size = 0;
+		int[] moves = new int[ 32 ];
+		// Count, white wins, draws and black wins per move.
+		int[][] statistics = new int[ 32 ][ 4 ];
+		
+		void clear() {
+			this.size = 0;
+		}
+		
+		void add( int storedMove, int count, int whiteWins, int draws, int blackWins ){
+			int i = 0;
+			while( i < this.size && this.moves[ i ] != storedMove ){
+				i++;
+			}
+			if( i == this.size ){
+				if( this.size == this.moves.length ){
+					this.moves = Arrays.copyOf( this.moves, this.size * 2 );
+					this.statistics = Arrays.copyOf( this.statistics, this.size * 2 );
+					for( int j = this.size; j < this.statistics.length; j++ ){
+						this.statistics[ j ] = new int[ 4 ];
+					}
+				}
+				this.moves[ i ] = storedMove;
+				Arrays.fill( this.statistics[ i ], 0 );
+				this.size++;
+			}
+			int[] moveStatistics = this.statistics[ i ];
+			moveStatistics[ 0 ] += count;
+			moveStatistics[ 1 ] += whiteWins;
+			moveStatistics[ 2 ] += draws;
+			moveStatistics[ 3 ] += blackWins;
+		}
+		
+		/**
+		 * Writes the moves, the most frequent first. Ties are ordered by the
+		 * stored move, so the file does not depend on the batch size.
+		 * @return number of moves written.
+		 */
+		int write( DataOutputStream output ) throws IOException {
+			// Insertion sort, as a position has only a few different moves.
+			for( int i = 1; i < this.size; i++ ){
+				int move = this.moves[ i ];
+				int[] moveStatistics = this.statistics[ i ];
+				int j = i - 1;
+				while( j >= 0 && (this.statistics[ j ][ 0 ] < moveStatistics[ 0 ]
+						|| this.statistics[ j ][ 0 ] == moveStatistics[ 0 ] && this.moves[ j ] > move) ){
+					this.moves[ j + 1 ] = this.moves[ j ];
+					this.statistics[ j + 1 ] = this.statistics[ j ];
+					j--;
+				}
+				this.moves[ j + 1 ] = move;
+				this.statistics[ j + 1 ] = moveStatistics;
+			}
+			for( int i = 0; i < this.size; i++ ){
+				output.writeInt( this.moves[ i ] );
+				for( int value : this.statistics[ i ] ){
+					output.writeInt( value );
+				}
+			}
+			return this.size;
+		}
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public int getThreads() {
+		return threads;
+	}
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	public int getBatchSize() {
+		return batchSize;
+	}
+	/**
+	 * @param batchSize games replayed and sorted in memory at once. Each of
+	 * 		  their positions takes 32 bytes while sorting.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Builds or updates the position index of a game database.
+	 * Usage: PositionIndexBuilder [-threads n] [-batch n] games.jcdb games.jcix
+	 */
+	public static void main( String[] args ) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int batchSize = DEFAULT_BATCH_SIZE;
+		int argIndex = 0;
+		while( args.length > argIndex + 1 && args[ argIndex ].startsWith( "-" ) ){
+			if( args[ argIndex ].equals( "-threads" ) ){
+				threads = Integer.parseInt( args[ argIndex + 1 ] );
+			} else if( args[ argIndex ].equals( "-batch" ) ){
+				batchSize = Integer.parseInt( args[ argIndex + 1 ] );
+			}
+			argIndex += 2;
+		}
+		if( args.length < argIndex + 2 ){
+			System.out.println( "usage: PositionIndexBuilder [-threads n] [-batch n] games.jcdb games.jcix" );
+			return;
+		}
+		
+		GameDatabase database = new GameDatabase( new File( args[ argIndex ] ) );
+		PositionIndexBuilder builder = new PositionIndexBuilder( database, new File( args[ argIndex + 1 ] ) );
+		builder.setThreads( threads );
+		builder.setBatchSize( batchSize );
+		long startTime = System.nanoTime();
+		int addedGames = builder.update();
+		long elapsedNanos = System.nanoTime() - startTime;
+		database.close();
+		
+		PositionIndex index = new PositionIndex( new File( args[ argIndex + 1 ] ) );
+		System.out.println( "added games:   " + addedGames );
+		System.out.println( "indexed games: " + index.getGameCount() );
+		System.out.println( "positions:     " + index.getPositionCount() );
+		System.out.println( "time (ms):     " + elapsedNanos / 1000000 );
+		index.close();
+	}
+	
+}
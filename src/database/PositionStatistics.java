@@ -0,0 +1,57 @@
+package database;
+
+import java.util.List;
+
+/**
+ * Result of a PositionIndex lookup: the moves played in a position and the
+ * games that reached it. The games are read from the index on demand, as
+ * common positions are reached by most games of the database.
+ */
+public class PositionStatistics {
+	
+	private final PositionIndex index;
+	private final long hash;
+	private final List<MoveStatistics> moves;
+	private final long firstGame;
+	private final int gameCount;
+	
+	PositionStatistics( PositionIndex index, long hash, List<MoveStatistics> moves, long firstGame, int gameCount ){
+		this.index = index;
+		this.hash = hash;
+		this.moves = moves;
+		this.firstGame = firstGame;
+		this.gameCount = gameCount;
+	}
+	
+	/**
+	 * @param i index between 0 and getGameCount() - 1.
+	 * @return index of the game in the GameDatabase. Games are in ascending
+	 * 		   order.
+	 */
+	public int getGame( int i ){
+		if( i < 0 || i >= this.gameCount ){
+			throw new IndexOutOfBoundsException( "Index: " + i + ", games: " + this.gameCount );
+		}
+		return this.index.getGameReference( this.firstGame + i );
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public long getHash() {
+		return hash;
+	}
+	/**
+	 * @return the moves played next, the most frequent first. Games that
+	 * 		   ended in the position add no move.
+	 */
+	public List<MoveStatistics> getMoves() {
+		return moves;
+	}
+	/**
+	 * @return number of games that reached the position.
+	 */
+	public int getGameCount() {
+		return gameCount;
+	}
+	
+}
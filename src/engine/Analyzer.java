@@ -0,0 +1,74 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import book.BookMove;
+import book.PolyglotBook;
+import logic.ChessGame;
+import logic.Move;
+import logic.PackedMove;
+
+/**
+ * Command line position analyser. Searches a position reached by the given
+ * moves from the start position, or from the FEN position if given, and
+ * prints every completed iteration. With an opening book, positions that are
+ * in the book are answered from it without searching.
+ * 
+ * Usage: Analyzer [-depth n] [-nodes n] [-time ms] [-hash mb] [-book file] [-fen "fen"] [move ...]
+ */
+public class Analyzer {
+	
+	private static final int DEFAULT_HASH_MEGABYTES = 64;
+	private static final int DEFAULT_DEPTH = 6;
+	
+	public static void main( String[] args ) throws IOException {
+		SearchLimits limits = new SearchLimits();
+		int hashMegabytes = DEFAULT_HASH_MEGABYTES;
+		ChessGame chessGame = new ChessGame();
+		String bookFileName = null;
+		
+		for( int i = 0; i < args.length; i++ ){
+			if( args[ i ].equals( "-depth" ) ){
+				limits.setDepth( Integer.parseInt( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-nodes" ) ){
+				limits.setNodes( Long.parseLong( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-time" ) ){
+				limits.setTimeMillis( Long.parseLong( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-hash" ) ){
+				hashMegabytes = Integer.parseInt( args[ ++i ] );
+			} else if( args[ i ].equals( "-book" ) ){
+				bookFileName = args[ ++i ];
+			} else if( args[ i ].equals( "-fen" ) ){
+				chessGame = ChessGame.fromFen( args[ ++i ] );
+			} else if( ! chessGame.movePiece( Move.parse( args[ i ] ) ) ){
+				throw new IllegalArgumentException( "invalid move: " + args[ i ] );
+			}
+		}
+		if( bookFileName != null ){
+			PolyglotBook book = new PolyglotBook( new File( bookFileName ) );
+			List<BookMove> bookMoves = book.getMoves( chessGame );
+			book.close();
+			if( ! bookMoves.isEmpty() ){
+				System.out.println( "book " + bookMoves );
+				System.out.println( "bestmove " + PackedMove.toMove( bookMoves.get( 0 ).getMove() ) );
+				return;
+			}
+		}
+		if( limits.getDepth() == 0 && limits.getNodes() == 0 && limits.getTimeMillis() == 0 ){
+			limits.setDepth( DEFAULT_DEPTH );
+		}
+		
+		Search search = new Search( chessGame, new TranspositionTable( hashMegabytes ) );
+		search.setListener( new SearchListener() {
+			@Override
+			public void iterationFinished( SearchResult result ){
+				System.out.println( result );
+			}
+		} );
+		SearchResult result = search.search( limits );
+		System.out.println( "bestmove " + result.getBestMove() );
+	}
+	
+}
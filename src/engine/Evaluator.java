@@ -0,0 +1,36 @@
+package engine;
+
+import logic.ChessGame;
+import logic.PieceSquareTables;
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Static evaluation of a position by material and piece-square tables,
+ * tapered between midgame and endgame. ChessGame keeps the score up to date
+ * with every move, so evaluating costs no scan of the board.
+ */
+public class Evaluator {
+	
+	private static final Type[] TYPES = Type.values();
+	
+	// Piece values in centipawns, indexed by Type.ordinal().
+	static final int[] PIECE_VALUES = new int[ TYPES.length ];
+	
+	static {
+		for( Type type : TYPES ){
+			PIECE_VALUES[ type.ordinal() ] = PieceSquareTables.pieceValue( type );
+		}
+	}
+	
+	/**
+	 * @param chessGame The position.
+	 * @param team The team to evaluate for.
+	 * @return score in centipawns, positive if the team is better.
+	 */
+	public int evaluate( ChessGame chessGame, Team team ){
+		int score = chessGame.getScore();
+		return team == Team.WHITE ? score : -score;
+	}
+	
+}
@@ -0,0 +1,132 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logic.ChessGame;
+
+/**
+ * Lazy SMP search: several threads search the same root position at the same
+ * time and share their results through a common transposition table. Every
+ * thread runs its own Search on its own copy of the position. Half of the
+ * helper threads start their iterative deepening one ply deeper than the
+ * main thread, so the threads spread over different depths and fill the
+ * table with results the others can cut off with.
+ *
+ * The main thread applies the limits. When it is done, the helpers are
+ * stopped and the main thread's result is returned with the nodes of all
+ * threads.
+ */
+public class ParallelSearch {
+	
+	private final ChessGame chessGame;
+	private final TranspositionTable transpositionTable;
+	private final int threadCount;
+	private SearchListener listener;
+	
+	private volatile Search mainSearch;
+	private volatile boolean stopped;
+	
+	/**
+	 * @param chessGame The position to search. Every thread works on a copy.
+	 * @param transpositionTable The table shared by all threads.
+	 * @param threadCount Number of search threads, at least 1.
+	 */
+	public ParallelSearch( ChessGame chessGame, TranspositionTable transpositionTable, int threadCount ){
+		if( threadCount < 1 ){
+			throw new IllegalArgumentException( "At least one thread is needed." );
+		}
+		this.chessGame = chessGame;
+		this.transpositionTable = transpositionTable;
+		this.threadCount = threadCount;
+	}
+	
+	/**
+	 * Searches the position with all threads until one of the limits is
+	 * reached or stop is called. The calling thread is the main thread.
+	 * @param limits The limits of the search.
+	 * @return result of the main thread with the nodes of all threads.
+	 */
+	public SearchResult search( SearchLimits limits ){
+		this.stopped = false;
+		this.transpositionTable.newSearch();
+		
+		final List<Search> helpers = new ArrayList<Search>();
+		List<Thread> helperThreads = new ArrayList<Thread>();
+		for( int i = 1; i < this.threadCount; i++ ){
+			final Search helper = new Search( this.chessGame, this.transpositionTable );
+			helper.setDepthOffset( i % 2 );
+			helpers.add( helper );
+			Thread thread = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					helper.run( new SearchLimits() );
+				}
+			}, "search-helper-" + i );
+			thread.setDaemon( true );
+			helperThreads.add( thread );
+		}
+		
+		final Search main = new Search( this.chessGame, this.transpositionTable );
+		if( this.listener != null ){
+			main.setListener( new SearchListener() {
+				@Override
+				public void iterationFinished( SearchResult result ){
+					listener.iterationFinished( withTotalNodes( result, main, helpers ) );
+				}
+			} );
+		}
+		this.mainSearch = main;
+		if( this.stopped ){
+			main.stop();
+		}
+		
+		for( Thread thread : helperThreads ){
+			thread.start();
+		}
+		SearchResult result = main.run( limits );
+		
+		for( Search helper : helpers ){
+			helper.stop();
+		}
+		for( Thread thread : helperThreads ){
+			try {
+				thread.join();
+			} catch( InterruptedException e ){
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.mainSearch = null;
+		return withTotalNodes( result, main, helpers );
+	}
+	
+	/**
+	 * Stops a running search. Can be called from any thread.
+	 */
+	public void stop() {
+		this.stopped = true;
+		Search main = this.mainSearch;
+		if( main != null ){
+			main.stop();
+		}
+	}
+	
+	private static SearchResult withTotalNodes( SearchResult result, Search main, List<Search> helpers ){
+		long nodes = Math.max( result.getNodes(), main.getNodes() );
+		for( Search helper : helpers ){
+			nodes += helper.getNodes();
+		}
+		return new SearchResult( result.getBestMove(), result.getScore(), result.getDepth(), nodes,
+			result.getTimeMillis(), result.getPrincipalVariation() );
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public int getThreadCount() {
+		return threadCount;
+	}
+	public void setListener(SearchListener listener) {
+		this.listener = listener;
+	}
+	
+}
@@ -0,0 +1,394 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logic.Bitboard;
+import logic.ChessGame;
+import logic.ChessGame.EndCondition;
+import logic.ChessGame.GameState;
+import logic.Move;
+import logic.MoveList;
+import logic.PackedMove;
+import logic.Piece;
+import logic.Piece.Team;
+
+/**
+ * Searches the best move of a position with a negamax alpha-beta search and
+ * iterative deepening. Leaf positions are resolved with a quiescence search
+ * over captures. Results are shared through a transposition table.
+ *
+ * The search works on its own copy of the game and explores the tree by
+ * making and unmaking packed moves (see PackedMove) with one reused move
+ * list per ply, so the search creates no objects per node. The original
+ * game is never changed. A
+ * search object must only be used by one thread at a time, but stop can be
+ * called from any thread.
+ *
+ * The game ends by checkmate or stalemate as soon as the move leading there
+ * is made, so such positions are scored without generating moves. Mate
+ * scores count the plies from the root to the mate.
+ */
+public class Search {
+	
+	public static final int MATE_SCORE = 30000;
+	public static final int MAX_PLY = 128;
+	private static final int INFINITY = 32000;
+	
+	// The limits are checked each time this many nodes have been searched.
+	private static final int NODES_BETWEEN_LIMIT_CHECKS = 1024;
+	
+	private final ChessGame chessGame;
+	private final TranspositionTable transpositionTable;
+	private final Evaluator evaluator = new Evaluator();
+	private SearchListener listener;
+	private int depthOffset = 0;
+	
+	private volatile boolean stopped;
+	private boolean aborted;
+	private long nodes;
+	// Copy of nodes for other threads, updated at every limit check.
+	private volatile long publishedNodes;
+	private long nodeLimit;
+	private long deadline;
+	private long startTime;
+	
+	// Triangular principal variation table: pvTable[ply] holds the best line
+	// found from that ply on, up to pvLength[ply].
+	private final int[][] pvTable = new int[ MAX_PLY ][ MAX_PLY ];
+	private final int[] pvLength = new int[ MAX_PLY ];
+	
+	// Moves and their ordering scores, one list per ply.
+	private final MoveList[] moveLists = new MoveList[ MAX_PLY ];
+	private final int[][] moveScores = new int[ MAX_PLY ][ MoveList.DEFAULT_CAPACITY ];
+	
+	/**
+	 * @param chessGame The position to search. The search works on a copy.
+	 * @param transpositionTable The table to share results through.
+	 */
+	public Search( ChessGame chessGame, TranspositionTable transpositionTable ){
+		this.chessGame = new ChessGame( chessGame );
+		this.transpositionTable = transpositionTable;
+		for( int ply = 0; ply < MAX_PLY; ply++ ){
+			this.moveLists[ ply ] = new MoveList();
+		}
+	}
+	
+	/**
+	 * Searches the position until one of the limits is reached or stop is
+	 * called.
+	 * @param limits The limits of the search.
+	 * @return result of the deepest completed iteration.
+	 */
+	public SearchResult search( SearchLimits limits ){
+		this.stopped = false;
+		this.transpositionTable.newSearch();
+		return run( limits );
+	}
+	
+	/**
+	 * Runs the iterative deepening without starting a new search in the
+	 * transposition table and without resetting a stop request. Used when
+	 * several searches share one table.
+	 */
+	SearchResult run( SearchLimits limits ){
+		this.aborted = false;
+		this.nodes = 0;
+		this.publishedNodes = 0;
+		this.startTime = System.nanoTime();
+		this.nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+		this.deadline = limits.getTimeMillis() > 0
+			? this.startTime + limits.getTimeMillis() * 1000000L : Long.MAX_VALUE;
+		int maxDepth = limits.getDepth() > 0 ? Math.min( limits.getDepth(), MAX_PLY - 1 ) : MAX_PLY - 1;
+		
+		MoveList rootMoves = new MoveList();
+		this.chessGame.generateLegalMoves( rootMoves );
+		SearchResult result = new SearchResult( rootMoves.isEmpty() ? null : PackedMove.toMove( rootMoves.get( 0 ) ),
+			0, 0, 0, 0, new ArrayList<Move>() );
+		
+		for( int depth = 1 + this.depthOffset; depth <= maxDepth && ! rootMoves.isEmpty(); depth++ ){
+			int score = negamax( depth, -INFINITY, INFINITY, 0 );
+			this.publishedNodes = this.nodes;
+			if( this.aborted ){
+				break;
+			}
+			List<Move> principalVariation = new ArrayList<Move>();
+			for( int i = 0; i < this.pvLength[ 0 ]; i++ ){
+				principalVariation.add( PackedMove.toMove( this.pvTable[ 0 ][ i ] ) );
+			}
+			result = new SearchResult( principalVariation.get( 0 ), score, depth, this.nodes,
+				getElapsedMillis(), principalVariation );
+			if( this.listener != null ){
+				this.listener.iterationFinished( result );
+			}
+			if( this.stopped || System.nanoTime() >= this.deadline ){
+				break;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Stops a running search. Can be called from any thread.
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+	
+	private int negamax( int depth, int alpha, int beta, int ply ){
+		this.pvLength[ ply ] = ply;
+		
+		if( this.chessGame.getGameState() == GameState.END ){
+			return getEndScore( ply );
+		}
+		if( depth <= 0 || ply >= MAX_PLY - 1 ){
+			return quiesce( alpha, beta, ply );
+		}
+		if( isLimitReached() ){
+			return 0;
+		}
+		
+		long key = this.chessGame.positionHash();
+		long entry = this.transpositionTable.probe( key );
+		int hashMove = 0;
+		if( entry != 0 ){
+			hashMove = TranspositionTable.move( entry );
+			if( ply > 0 && TranspositionTable.depth( entry ) >= depth ){
+				int score = scoreFromTable( TranspositionTable.score( entry ), ply );
+				int bound = TranspositionTable.bound( entry );
+				if( bound == TranspositionTable.BOUND_EXACT
+						|| bound == TranspositionTable.BOUND_LOWER && score >= beta
+						|| bound == TranspositionTable.BOUND_UPPER && score <= alpha ){
+					return score;
+				}
+			}
+		}
+		
+		MoveList moves = this.moveLists[ ply ];
+		this.chessGame.generateLegalMoves( moves );
+		if( moves.isEmpty() ){
+			return 0;
+		}
+		scoreMoves( ply, hashMove, false );
+		
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		int bestMove = PackedMove.NONE;
+		for( int i = 0; i < moves.size(); i++ ){
+			int move = nextMove( ply, i );
+			this.chessGame.makeMove( move );
+			int score = -negamax( depth - 1, -beta, -alpha, ply + 1 );
+			this.chessGame.unmakeMove();
+			if( this.aborted ){
+				return 0;
+			}
+			
+			if( score > bestScore ){
+				bestScore = score;
+				bestMove = move;
+				if( score > alpha ){
+					alpha = score;
+					updatePrincipalVariation( ply, move );
+					if( score >= beta ){
+						break;
+					}
+				}
+			}
+		}
+		
+		int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+			: bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT
+			: TranspositionTable.BOUND_UPPER;
+		this.transpositionTable.store( key, bestMove, scoreToTable( bestScore, ply ),
+			depth, bound );
+		return bestScore;
+	}
+	
+	/**
+	 * Searches captures only, until the position is quiet.
+	 */
+	private int quiesce( int alpha, int beta, int ply ){
+		this.pvLength[ ply ] = ply;
+		
+		if( this.chessGame.getGameState() == GameState.END ){
+			return getEndScore( ply );
+		}
+		if( isLimitReached() ){
+			return 0;
+		}
+		
+		int standPat = this.evaluator.evaluate( this.chessGame, getTeamToMove() );
+		if( standPat >= beta || ply >= MAX_PLY - 1 ){
+			return standPat;
+		}
+		if( standPat > alpha ){
+			alpha = standPat;
+		}
+		
+		MoveList moves = this.moveLists[ ply ];
+		this.chessGame.generateLegalMoves( moves );
+		int captures = scoreMoves( ply, PackedMove.NONE, true );
+		for( int i = 0; i < captures; i++ ){
+			int move = nextMove( ply, i );
+			this.chessGame.makeMove( move );
+			int score = -quiesce( -beta, -alpha, ply + 1 );
+			this.chessGame.unmakeMove();
+			if( this.aborted ){
+				return 0;
+			}
+			if( score > alpha ){
+				alpha = score;
+				updatePrincipalVariation( ply, move );
+				if( score >= beta ){
+					break;
+				}
+			}
+		}
+		return alpha;
+	}
+	
+	/**
+	 * @return score of an ended game for the team to move: a draw after
+	 * 		   stalemate, otherwise the team has been mated (or its king
+	 * 		   captured).
+	 */
+	private int getEndScore( int ply ){
+		return this.chessGame.getEndCondition() == EndCondition.STALEMATE ? 0 : -MATE_SCORE + ply;
+	}
+	
+	/**
+	 * Counts the node and checks the limits every few nodes.
+	 * @return True, if the search has to be aborted.
+	 */
+	private boolean isLimitReached() {
+		this.nodes++;
+		if( this.stopped || this.nodes >= this.nodeLimit ){
+			this.aborted = true;
+		} else if( (this.nodes % NODES_BETWEEN_LIMIT_CHECKS) == 0 ){
+			this.publishedNodes = this.nodes;
+			this.aborted = System.nanoTime() >= this.deadline;
+		}
+		return this.aborted;
+	}
+	
+	private void updatePrincipalVariation( int ply, int move ){
+		this.pvTable[ ply ][ ply ] = move;
+		for( int i = ply + 1; i < this.pvLength[ ply + 1 ]; i++ ){
+			this.pvTable[ ply ][ i ] = this.pvTable[ ply + 1 ][ i ];
+		}
+		this.pvLength[ ply ] = Math.max( this.pvLength[ ply + 1 ], ply + 1 );
+	}
+	
+	/**
+	 * Scores the moves of a ply for ordering: the move from the
+	 * transposition table first, then captures with the most valuable victim
+	 * and least valuable attacker first, then the remaining moves.
+	 * @param capturesOnly If true, non capturing moves are moved behind the
+	 * 		  captures and not counted.
+	 * @return number of moves to search.
+	 */
+	private int scoreMoves( int ply, int hashMove, boolean capturesOnly ){
+		Bitboard bitboard = this.chessGame.getBitboard();
+		MoveList moves = this.moveLists[ ply ];
+		int[] scores = this.moveScores[ ply ];
+		int count = 0;
+		for( int i = 0; i < moves.size(); i++ ){
+			int move = moves.get( i );
+			int score = 0;
+			if( hashMove != PackedMove.NONE && move == hashMove ){
+				score = Integer.MAX_VALUE;
+			} else if( PackedMove.isCapture( move ) ){
+				Piece attacker = bitboard.getPiece( PackedMove.source( move ) );
+				Piece victim = bitboard.getPiece( PackedMove.target( move ) );
+				// The pawn captured en passant is not on the target square.
+				int victimValue = victim == null ? Evaluator.PIECE_VALUES[ Piece.Type.PAWN.ordinal() ] : victimValue( victim );
+				score = 1000000 + 10 * victimValue - Evaluator.PIECE_VALUES[ attacker.getType().ordinal() ] / 10;
+			} else if( capturesOnly ){
+				score = Integer.MIN_VALUE;
+			}
+			if( score != Integer.MIN_VALUE ){
+				count++;
+			}
+			scores[ i ] = score;
+		}
+		return count;
+	}
+	
+	/**
+	 * Selects the best scored of the remaining moves of a ply and swaps it to
+	 * the index. Sorting lazily saves work when a cutoff happens early.
+	 * @return the move now at the index.
+	 */
+	private int nextMove( int ply, int index ){
+		MoveList moves = this.moveLists[ ply ];
+		int[] scores = this.moveScores[ ply ];
+		int best = index;
+		for( int i = index + 1; i < moves.size(); i++ ){
+			if( scores[ i ] > scores[ best ] ){
+				best = i;
+			}
+		}
+		if( best != index ){
+			moves.swap( index, best );
+			int score = scores[ index ];
+			scores[ index ] = scores[ best ];
+			scores[ best ] = score;
+		}
+		return moves.get( index );
+	}
+	
+	private static int victimValue( Piece victim ){
+		// Capturing the king ends the game, so it is tried first.
+		return victim.getType() == Piece.Type.KING ? 100000 : Evaluator.PIECE_VALUES[ victim.getType().ordinal() ];
+	}
+	
+	private Team getTeamToMove() {
+		return this.chessGame.getGameState() == GameState.BLACK ? Team.BLACK : Team.WHITE;
+	}
+	
+	private long getElapsedMillis() {
+		return (System.nanoTime() - this.startTime) / 1000000;
+	}
+	
+	/**
+	 * Mate scores are stored relative to the position instead of the root.
+	 */
+	private static int scoreToTable( int score, int ply ){
+		if( score >= MATE_SCORE - MAX_PLY ){
+			return score + ply;
+		} else if( score <= -MATE_SCORE + MAX_PLY ){
+			return score - ply;
+		}
+		return score;
+	}
+	
+	private static int scoreFromTable( int score, int ply ){
+		if( score >= MATE_SCORE - MAX_PLY ){
+			return score - ply;
+		} else if( score <= -MATE_SCORE + MAX_PLY ){
+			return score + ply;
+		}
+		return score;
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	/**
+	 * @return number of nodes searched so far. While the search is running,
+	 * 		   the value is updated every few nodes.
+	 */
+	public long getNodes() {
+		return publishedNodes;
+	}
+	public void setListener(SearchListener listener) {
+		this.listener = listener;
+	}
+	/**
+	 * Makes the iterative deepening start at a higher depth, so that helper
+	 * searches of a parallel search work on other depths than the main one.
+	 */
+	void setDepthOffset(int depthOffset) {
+		this.depthOffset = depthOffset;
+	}
+	
+}
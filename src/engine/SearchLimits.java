@@ -0,0 +1,56 @@
+package engine;
+
+/**
+ * Limits of a search. A search stops as soon as any of the set limits is
+ * reached; limits set to 0 are not applied. Without any limit the search
+ * runs until it is stopped.
+ */
+public class SearchLimits {
+	
+	private int depth;
+	private long nodes;
+	private long timeMillis;
+	
+	public SearchLimits() {
+	}
+	
+	public SearchLimits( int depth, long nodes, long timeMillis ){
+		this.depth = depth;
+		this.nodes = nodes;
+		this.timeMillis = timeMillis;
+	}
+	
+	public static SearchLimits depth( int depth ){
+		return new SearchLimits( depth, 0, 0 );
+	}
+	
+	public static SearchLimits nodes( long nodes ){
+		return new SearchLimits( 0, nodes, 0 );
+	}
+	
+	public static SearchLimits timeMillis( long timeMillis ){
+		return new SearchLimits( 0, 0, timeMillis );
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public int getDepth() {
+		return depth;
+	}
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+	public long getNodes() {
+		return nodes;
+	}
+	public void setNodes(long nodes) {
+		this.nodes = nodes;
+	}
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+	public void setTimeMillis(long timeMillis) {
+		this.timeMillis = timeMillis;
+	}
+	
+}
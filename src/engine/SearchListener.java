@@ -0,0 +1,14 @@
+package engine;
+
+/**
+ * Receives the results of a running search.
+ */
+public interface SearchListener {
+	
+	/**
+	 * Called after every completed iteration of the iterative deepening.
+	 * @param result The result of the iteration.
+	 */
+	void iterationFinished( SearchResult result );
+	
+}
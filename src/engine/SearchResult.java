@@ -0,0 +1,91 @@
+package engine;
+
+import java.util.List;
+
+import logic.Move;
+
+/**
+ * Result of a (completed iteration of a) search.
+ */
+public class SearchResult {
+	
+	private Move bestMove;
+	private int score;
+	private int depth;
+	private long nodes;
+	private long timeMillis;
+	private List<Move> principalVariation;
+	
+	public SearchResult( Move bestMove, int score, int depth, long nodes, long timeMillis,
+			List<Move> principalVariation ){
+		this.bestMove = bestMove;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.timeMillis = timeMillis;
+		this.principalVariation = principalVariation;
+	}
+	
+	/**
+	 * @return True, if the score means that one side mates.
+	 */
+	public boolean isMateScore() {
+		return Math.abs( this.score ) >= Search.MATE_SCORE - Search.MAX_PLY;
+	}
+	
+	/**
+	 * @return number of moves until mate, negative if the team to move gets
+	 * 		   mated. Only meaningful if isMateScore is true.
+	 */
+	public int getMateInMoves() {
+		int plies = Search.MATE_SCORE - Math.abs( this.score );
+		int moves = (plies + 1) / 2;
+		return this.score > 0 ? moves : -moves;
+	}
+	
+	public long getNodesPerSecond() {
+		return this.timeMillis == 0 ? this.nodes * 1000 : this.nodes * 1000 / this.timeMillis;
+	}
+	
+	// ::: GETTERS :::
+	
+	/**
+	 * @return best move, null if the team to move has no move.
+	 */
+	public Move getBestMove() {
+		return bestMove;
+	}
+	/**
+	 * @return score in centipawns from the view of the team to move.
+	 */
+	public int getScore() {
+		return score;
+	}
+	/**
+	 * @return depth of the last completed iteration.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	public long getNodes() {
+		return nodes;
+	}
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+	public List<Move> getPrincipalVariation() {
+		return principalVariation;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder pv = new StringBuilder();
+		for( Move move : this.principalVariation ){
+			pv.append( ' ' ).append( move );
+		}
+		String strScore = isMateScore() ? "mate " + getMateInMoves() : "cp " + this.score;
+		return "depth " + this.depth + " score " + strScore + " nodes " + this.nodes
+			+ " nps " + getNodesPerSecond() + " time " + this.timeMillis + " pv" + pv;
+	}
+	
+}
@@ -0,0 +1,79 @@
+package engine;
+
+import logic.ChessGame;
+
+/**
+ * Measures the speedup of the parallel search. Every position is searched to
+ * a fixed depth with an increasing number of threads, each run with a fresh
+ * transposition table. The speedup is the time to reach the depth with one
+ * thread divided by the time with n threads. All positions are searched
+ * once before measuring to warm up the JIT compiler.
+ * 
+ * Usage: SmpBenchmark [-depth n] [-hash mb] [-threads 1,2,4,8,16]
+ */
+public class SmpBenchmark {
+	
+	// Ruy Lopez, closed Italian game and Queen's Gambit Declined.
+	private static final String[] POSITIONS = {
+		"r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 0 4",
+		"r3k2r/1ppq1pp1/p2p1n1p/n3p3/4P3/2PPPNNP/PPQ3P1/R3K2R b KQkq - 0 14",
+		"r1bqk2r/1p1nbppp/p1p1pn2/3p2B1/2PP4/2N1PN2/PP3PPP/2RQKB1R w Kkq - 0 8"
+	};
+	
+	public static void main( String[] args ){
+		int depth = 7;
+		int hashMegabytes = 64;
+		String threadCounts = "1,2,4,8,16";
+		for( int i = 0; i < args.length; i++ ){
+			if( args[ i ].equals( "-depth" ) ){
+				depth = Integer.parseInt( args[ ++i ] );
+			} else if( args[ i ].equals( "-hash" ) ){
+				hashMegabytes = Integer.parseInt( args[ ++i ] );
+			} else if( args[ i ].equals( "-threads" ) ){
+				threadCounts = args[ ++i ];
+			} else {
+				System.out.println( "usage: SmpBenchmark [-depth n] [-hash mb] [-threads 1,2,4,8,16]" );
+				return;
+			}
+		}
+		
+		String[] strThreads = threadCounts.split( "," );
+		long[] totalMillis = new long[ strThreads.length ];
+		long[] totalNodes = new long[ strThreads.length ];
+		
+		System.out.println( "depth " + depth + ", " + Runtime.getRuntime().availableProcessors()
+			+ " available processors" );
+		
+		// Warms up the JIT compiler, so the first measured runs are not slower.
+		for( String position : POSITIONS ){
+			new Search( ChessGame.fromFen( position ), new TranspositionTable( hashMegabytes ) )
+				.search( SearchLimits.depth( depth ) );
+		}
+		
+		for( String position : POSITIONS ){
+			ChessGame chessGame = ChessGame.fromFen( position );
+			for( int i = 0; i < strThreads.length; i++ ){
+				int threads = Integer.parseInt( strThreads[ i ].trim() );
+				ParallelSearch search = new ParallelSearch(
+					chessGame, new TranspositionTable( hashMegabytes ), threads );
+				long startTime = System.nanoTime();
+				SearchResult result = search.search( SearchLimits.depth( depth ) );
+				long millis = Math.max( 1, (System.nanoTime() - startTime) / 1000000 );
+				totalMillis[ i ] += millis;
+				totalNodes[ i ] += result.getNodes();
+				System.out.println( "threads " + threads + ": " + millis + " ms, "
+					+ result.getNodes() + " nodes, best " + result.getBestMove()
+					+ ", score " + result.getScore() );
+			}
+		}
+		
+		System.out.println();
+		System.out.println( "threads  time (ms)  nodes/sec  speedup" );
+		for( int i = 0; i < strThreads.length; i++ ){
+			System.out.println( String.format( "%7s  %9d  %9d  %7.2f",
+				strThreads[ i ].trim(), totalMillis[ i ], totalNodes[ i ] * 1000 / totalMillis[ i ],
+				(double) totalMillis[ 0 ] / totalMillis[ i ] ) );
+		}
+	}
+	
+}
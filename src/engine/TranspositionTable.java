@@ -0,0 +1,215 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size hash table of search results, keyed by the Zobrist hash of the
+ * position (see ChessGame.positionHash). Any number of threads can read and
+ * write the table at the same time without locks.
+ *
+ * Every entry consists of two longs: the data and the key XOR the data. A
+ * reader only accepts an entry if XORing both words gives back the key it
+ * is looking for, so an entry that was half written by another thread is
+ * simply seen as a miss.
+ *
+ * Entries are grouped into buckets of four, which fill one cache line. When
+ * storing into a full bucket, the entry with the lowest depth replaces
+ * first, and entries written during earlier searches (older age) are
+ * preferred over entries of the current search.
+ *
+ * Data layout (from the lowest bit):
+ * 32 bits move, 16 bits score, 8 bits depth, 2 bits bound, 6 bits age.
+ */
+public class TranspositionTable {
+	
+	public static final int BOUND_EXACT = 1;
+	public static final int BOUND_LOWER = 2;
+	public static final int BOUND_UPPER = 3;
+	
+	private static final int ENTRIES_PER_BUCKET = 4;
+	private static final int LONGS_PER_ENTRY = 2;
+	private static final int BYTES_PER_ENTRY = LONGS_PER_ENTRY * 8;
+	private static final int AGE_BITS = 6;
+	private static final int AGE_MASK = (1 << AGE_BITS) - 1;
+	
+	// Number of buckets looked at to estimate how full the table is.
+	private static final int FILL_SAMPLE_BUCKETS = 1000;
+	
+	private final long[] table;
+	private final int bucketMask;
+	private volatile int age = 0;
+	
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	
+	/**
+	 * Creates a table of the specified size. The number of entries is rounded
+	 * down to a power of two.
+	 * @param megabytes memory used by the table, at least 1.
+	 */
+	public TranspositionTable( int megabytes ){
+		if( megabytes < 1 ){
+			throw new IllegalArgumentException( "Size must be at least 1 MB." );
+		}
+		long buckets = (long) megabytes * 1024 * 1024 / (BYTES_PER_ENTRY * ENTRIES_PER_BUCKET);
+		buckets = Long.highestOneBit( buckets );
+		long longs = buckets * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+		if( longs > Integer.MAX_VALUE - 8 ){
+			buckets >>= 1;
+			longs >>= 1;
+		}
+		this.table = new long[ (int) longs ];
+		this.bucketMask = (int) buckets - 1;
+	}
+	
+	/**
+	 * Looks up a position.
+	 * @param key Zobrist hash of the position.
+	 * @return the entry data (see move, score, depth and bound) or 0 if the
+	 * 		   position is not in the table.
+	 */
+	public long probe( long key ){
+		this.probes.increment();
+		int index = bucketIndex( key );
+		for( int i = 0; i < ENTRIES_PER_BUCKET; i++, index += LONGS_PER_ENTRY ){
+			long data = this.table[ index ];
+			long checkedKey = this.table[ index + 1 ] ^ data;
+			if( checkedKey == key && data != 0 ){
+				this.hits.increment();
+				return data;
+			}
+		}
+		return 0L;
+	}
+	
+	/**
+	 * Stores a search result.
+	 * @param key Zobrist hash of the position.
+	 * @param move best move found, 0 if none.
+	 * @param score score of the position, must fit into 16 bits.
+	 * @param depth remaining search depth, between 0 and 255.
+	 * @param bound BOUND_EXACT, BOUND_LOWER or BOUND_UPPER.
+	 */
+	public void store( long key, int move, int score, int depth, int bound ){
+		int currentAge = this.age;
+		int index = bucketIndex( key );
+		int replaceIndex = index;
+		int replaceValue = Integer.MAX_VALUE;
+		
+		for( int i = 0; i < ENTRIES_PER_BUCKET; i++, index += LONGS_PER_ENTRY ){
+			long data = this.table[ index ];
+			if( data == 0 || (this.table[ index + 1 ] ^ data) == key ){
+				// Keeps the best move of a previous search of this position.
+				if( move == 0 && data != 0 ){
+					move = move( data );
+				}
+				replaceIndex = index;
+				break;
+			}
+			// Older entries lose 8 plies of depth per search they are behind.
+			int ageDifference = (currentAge - age( data )) & AGE_MASK;
+			int value = depth( data ) - 8 * ageDifference;
+			if( value < replaceValue ){
+				replaceValue = value;
+				replaceIndex = index;
+			}
+		}
+		
+		long data = (move & 0xFFFFFFFFL)
+			| (long) (score & 0xFFFF) << 32
+			| (long) (depth & 0xFF) << 48
+			| (long) (bound & 0x3) << 56
+			| (long) (currentAge & AGE_MASK) << 58;
+		this.table[ replaceIndex ] = data;
+		this.table[ replaceIndex + 1 ] = key ^ data;
+		this.stores.increment();
+	}
+	
+	private int bucketIndex( long key ){
+		return ((int) (key ^ (key >>> 32)) & this.bucketMask) * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+	}
+	
+	/**
+	 * Marks the start of a new search. Entries of earlier searches are
+	 * replaced first from now on.
+	 */
+	public void newSearch() {
+		this.age = (this.age + 1) & AGE_MASK;
+	}
+	
+	/**
+	 * Removes all entries and resets the statistics.
+	 */
+	public void clear() {
+		Arrays.fill( this.table, 0L );
+		this.probes.reset();
+		this.hits.reset();
+		this.stores.reset();
+	}
+	
+	// ::: ENTRY DATA :::
+	
+	public static int move( long data ){
+		return (int) data;
+	}
+	public static int score( long data ){
+		return (short) (data >>> 32);
+	}
+	public static int depth( long data ){
+		return (int) (data >>> 48) & 0xFF;
+	}
+	public static int bound( long data ){
+		return (int) (data >>> 56) & 0x3;
+	}
+	private static int age( long data ){
+		return (int) (data >>> 58) & AGE_MASK;
+	}
+	
+	// ::: STATISTICS :::
+	
+	public long getProbes() {
+		return this.probes.sum();
+	}
+	public long getHits() {
+		return this.hits.sum();
+	}
+	public long getStores() {
+		return this.stores.sum();
+	}
+	
+	/**
+	 * @return share of probes that found their position, between 0 and 1.
+	 */
+	public double getHitRate() {
+		long probes = getProbes();
+		return probes == 0 ? 0.0 : (double) getHits() / probes;
+	}
+	
+	/**
+	 * Estimates how full the table is by sampling its first buckets. Only
+	 * entries of the current search count.
+	 * @return fill rate in permill (0 to 1000).
+	 */
+	public int getFillPermill() {
+		int buckets = Math.min( FILL_SAMPLE_BUCKETS, this.bucketMask + 1 );
+		int currentAge = this.age;
+		int used = 0;
+		for( int index = 0; index < buckets * ENTRIES_PER_BUCKET * LONGS_PER_ENTRY; index += LONGS_PER_ENTRY ){
+			long data = this.table[ index ];
+			if( data != 0 && age( data ) == currentAge ){
+				used++;
+			}
+		}
+		return used * 1000 / (buckets * ENTRIES_PER_BUCKET);
+	}
+	
+	/**
+	 * @return number of entries the table can hold.
+	 */
+	public int getCapacity() {
+		return this.table.length / LONGS_PER_ENTRY;
+	}
+	
+}
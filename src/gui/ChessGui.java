@@ -15,9 +15,9 @@ import javax.swing.JPanel;
 import javax.swing.SwingConstants;
 
 import logic.ChessGame;
+import logic.ChessGame.EndCondition;
 import logic.ChessGame.GameState;
 import logic.Move;
-import logic.MoveValidator;
 import logic.Piece;
 import logic.Piece.Team;
 import logic.Piece.Type;
@@ -180,35 +180,25 @@ public final class ChessGui extends JPanel {
 		
 		// Draw valid target locations, if user is dragging a game piece.
 		if( isUserDraggingPiece() ){
-			MoveValidator moveValidator = this.chessGame.getMoveValidator();
-			
-			// Iterate the complete board to check if target locations are valid.
-			for( int col = Piece.COL_A; col <= Piece.COL_H; col++ ){
-				for( int row = Piece.ROW_1; row <= Piece.ROW_8; row++ ){
-					int sourceRow = dragPiece.getPiece().getRow();
-					int sourceCol = dragPiece.getPiece().getCol();
-					
-					Move move = new Move( sourceRow, sourceCol, row, col );
-					
-					// Checks if target location is valid.
-					if( moveValidator.isMoveValid(move) ){
-						int highlightX = convertColToX( col );
-						int highlightY = convertRowToY( row );
-						
-						// Draw a black drop shadow by drawing a black rectangle with an offset of 1 pixel.
-						graphics.setColor( Color.BLACK );
-						graphics.drawRoundRect( highlightX+5, highlightY+5, SQUARE_WIDTH-8, SQUARE_HEIGHT-8, 10, 10);
-						// Draw the highlight
-						graphics.setColor( Color.GREEN );
-						graphics.drawRoundRect( highlightX+4, highlightY+4, SQUARE_WIDTH-8, SQUARE_HEIGHT-8, 10, 10 );
-					}
-				}
+			for( Move move : this.chessGame.generateLegalMoves( dragPiece.getPiece() ) ){
+				int highlightX = convertColToX( move.targetCol );
+				int highlightY = convertRowToY( move.targetRow );
+				
+				// Draw a black drop shadow by drawing a black rectangle with an offset of 1 pixel.
+				graphics.setColor( Color.BLACK );
+				graphics.drawRoundRect( highlightX+5, highlightY+5, SQUARE_WIDTH-8, SQUARE_HEIGHT-8, 10, 10);
+				// Draw the highlight
+				graphics.setColor( Color.GREEN );
+				graphics.drawRoundRect( highlightX+4, highlightY+4, SQUARE_WIDTH-8, SQUARE_HEIGHT-8, 10, 10 );
 			}
 		}
 		
 		// Draw game state label.
 		if( chessGame.getGameState() != GameState.END ){
-			this.lblGameState.setText( chessGame.getGameState().toString() + "'S TURN" );
+			this.lblGameState.setText( chessGame.getGameState().toString() + "'S TURN"
+				+ (chessGame.isInCheck() ? ", CHECK!" : "") );
+		} else if( chessGame.getEndCondition() == EndCondition.STALEMATE ){
+			this.lblGameState.setText( "STALEMATE, DRAW!" );
 		} else if( chessGame.getGameState() == GameState.END ){
 			this.lblGameState.setText( chessGame.getLastGameState() + "'S VICTORY!" );
 		}
@@ -287,7 +277,7 @@ public final class ChessGui extends JPanel {
 			dragPiece.resetToUnderlyingPiecePosition();
 		}else{
 			// Changes model and updates GUI piece afterwards.
-			System.out.println( "Moving piece to " + targetRow + "/" + targetCol );
+			Type typeBeforeMove = dragPiece.getPiece().getType();
 			move = new Move( sourceRow, sourceCol, targetRow, targetCol );
 			wasMoveSuccessful = chessGame.movePiece( move );
 			
@@ -295,6 +285,16 @@ public final class ChessGui extends JPanel {
 			// highlighting it in the UI.
 			if( wasMoveSuccessful == true ){
 				this.lastMove = move;
+				
+				// A pawn reaching the last row has turned into a queen.
+				Piece piece = dragPiece.getPiece();
+				if( piece.getType() != typeBeforeMove ){
+					dragPiece.setImage( this.getImageForPiece( piece.getTeam(), piece.getType() ) );
+				}
+				// Castling has moved a rook as well.
+				for( GuiPiece guiPiece : this.guiPieces ){
+					guiPiece.resetToUnderlyingPiecePosition();
+				}
 			}
 			
 			dragPiece.resetToUnderlyingPiecePosition();
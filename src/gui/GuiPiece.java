@@ -35,6 +35,9 @@ public class GuiPiece {
 	public Image getImage() {
 		return image;
 	}
+	public void setImage(Image image) {
+		this.image = image.getScaledInstance( 40, 40, Image.SCALE_DEFAULT );
+	}
 	public int getX() {
 		return x;
 	}
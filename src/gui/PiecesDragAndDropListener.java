@@ -85,11 +85,6 @@ public class PiecesDragAndDropListener implements MouseListener, MouseMotionList
 			int x = evt.getPoint().x - this.dragOffsetX;
 			int y = evt.getPoint().y - this.dragOffsetY;
 			
-			System.out.println(
-				"row:" + ChessGui.convertYToRow( y )
-		        + " col:" + ChessGui.convertXToCol( x )
-			);
-			
 			GuiPiece dragPiece = chessGui.getDragPiece();
 			dragPiece.setX( x );
 			dragPiece.setY( y );
@@ -4,15 +4,23 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 
 import logic.ChessGame;
+import logic.ChessGame.EndCondition;
+import logic.ChessGame.GameState;
 import logic.Move;
+import logic.MoveList;
+import logic.MoveValidator.Rejection;
+import logic.PackedMove;
 import logic.Piece;
 import logic.Piece.Team;
+import logic.San;
 
 public class ConsoleGui {
 	
 	private ChessGame chessGame;
 	private Move move;
 	private Move lastMove;
+	// Buffer for decoding SAN input.
+	private final MoveList moveList = new MoveList();
 	
 	public ConsoleGui() {
 		// Creates a new chess game.
@@ -34,7 +42,7 @@ public class ConsoleGui {
 		while( true ) {
 			// Prints game state and ask for user input
 			this.printCurrentGameState();
-			System.out.println("your move (e.g. e2-e4): ");
+			System.out.println("your move (e.g. e2-e4 or Nf3): ");
 			try {
 				// Reads user input.
 				input = inputReader.readLine();
@@ -53,22 +61,44 @@ public class ConsoleGui {
 	
 	/**
 	 * Moves piece to the specified location.
-	 * @param input A valid move string (e.g. "e7-e5" ).
+	 * @param input A valid move string, either coordinates (e.g. "e7-e5") or
+	 * 		  SAN (e.g. "e5", "Nf6", "O-O").
 	 */
 	private void handleMove( String input ){
-		String strSourceCol = input.substring( 0, 1 );
-		String strSourceRow = input.substring( 1, 2 );
-		String strTargetCol = input.substring( 3, 4 );
-		String strTargetRow = input.substring( 4, 5 );
-		
-		this.move = new Move(
-			convertColStrToColInt( strSourceCol ),
-			convertRowStrToRowInt( strSourceRow ),
-			convertColStrToColInt( strTargetCol ),
-			convertRowStrToRowInt( strTargetRow )
-		 );
+		if( input.length() == 5 && input.charAt( 2 ) == '-' ){
+			String strSourceCol = input.substring( 0, 1 );
+			String strSourceRow = input.substring( 1, 2 );
+			String strTargetCol = input.substring( 3, 4 );
+			String strTargetRow = input.substring( 4, 5 );
+			
+			this.move = new Move(
+				convertRowStrToRowInt( strSourceRow ),
+				convertColStrToColInt( strSourceCol ),
+				convertRowStrToRowInt( strTargetRow ),
+				convertColStrToColInt( strTargetCol )
+			 );
+		} else {
+			this.move = PackedMove.toMove( San.parse( this.chessGame, input.trim(), this.moveList ) );
+		}
 		
-		this.chessGame.movePiece( this.move );
+		// The game logic does not print anything, so reports the outcome here.
+		Rejection rejection = this.chessGame.getMoveValidator().validateMove( this.move );
+		if( rejection != Rejection.NONE ){
+			System.out.println( "invalid move: " + rejection.getDescription() );
+			return;
+		}
+		Piece piece = this.chessGame.getNonCapturedPieceAtLocation( this.move.sourceRow, this.move.sourceCol );
+		Piece opponentPiece = this.chessGame.makeMove( this.move );
+		if( opponentPiece != null ){
+			System.out.println( piece + " captured " + opponentPiece );
+		}
+		if( this.chessGame.getEndCondition() == EndCondition.STALEMATE ){
+			System.out.println( "STALEMATE, DRAW!" );
+		} else if( this.chessGame.getGameState() == GameState.END ){
+			System.out.println( piece.getTeam() + " WINS!" );
+		} else if( this.chessGame.isInCheck() ){
+			System.out.println( "CHECK!" );
+		}
 	}
 	
 	/**
@@ -0,0 +1,141 @@
+package logic;
+
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Squares attacked by each team, kept up to date by ChessGame with every move.
+ * "Is this square attacked?" and "is the king in check?" are then answered
+ * with a single lookup instead of looking for attackers.
+ *
+ * The attacks of every piece are cached per square. After a move only the
+ * pieces on the changed squares and the sliding pieces whose attacks reached
+ * one of them are recomputed: a rook, bishop or queen can only see further or
+ * less far than before if a square on its old attack rays changed.
+ *
+ * The maps contain the attacked squares, not the legal moves: squares of the
+ * own pieces (defended pieces) are included, and a king blocks the rays of
+ * the pieces attacking it, so the square behind a checked king is not marked.
+ */
+public class AttackMaps {
+
+	// Squares attacked by the piece on each square, 0 for empty squares.
+	private final long[] pieceAttacks = new long[ Bitboard.NUMBER_OF_SQUARES ];
+	// Squares attacked by all pieces of a team, indexed by Team.ordinal().
+	private final long[] teamAttacks = new long[ Team.values().length ];
+
+	// ::: UPDATES (called by ChessGame) :::
+
+	/**
+	 * Recomputes the maps from scratch.
+	 * @param bitboard The board.
+	 */
+	void reset( Bitboard bitboard ){
+		long occupied = bitboard.getOccupied();
+		for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+			Piece piece = bitboard.getPiece( square );
+			this.pieceAttacks[ square ] = (piece == null ? 0L
+				: attacks( piece.getTeam(), piece.getType(), square, occupied ));
+		}
+		updateTeamAttacks( bitboard );
+	}
+
+	/**
+	 * Updates the maps after pieces were placed on or removed from squares.
+	 * Making and unmaking a move both call this with the same squares.
+	 * @param bitboard The board, already changed.
+	 * @param changedSquares bitboard of the squares whose piece changed
+	 */
+	void update( Bitboard bitboard, long changedSquares ){
+		long occupied = bitboard.getOccupied();
+		long stale = changedSquares;
+		long sliders = 0L;
+		for( Team team : Team.values() ){
+			sliders |= bitboard.getPieces( team, Type.ROOK ) | bitboard.getPieces( team, Type.BISHOP )
+				| bitboard.getPieces( team, Type.QUEEN );
+		}
+		sliders &= ~changedSquares;
+		while( sliders != 0 ){
+			int square = Long.numberOfTrailingZeros( sliders );
+			sliders &= sliders - 1;
+			if( (this.pieceAttacks[ square ] & changedSquares) != 0 ){
+				stale |= 1L << square;
+			}
+		}
+		while( stale != 0 ){
+			int square = Long.numberOfTrailingZeros( stale );
+			stale &= stale - 1;
+			Piece piece = bitboard.getPiece( square );
+			this.pieceAttacks[ square ] = (piece == null ? 0L
+				: attacks( piece.getTeam(), piece.getType(), square, occupied ));
+		}
+		updateTeamAttacks( bitboard );
+	}
+
+	private void updateTeamAttacks( Bitboard bitboard ){
+		for( Team team : Team.values() ){
+			long attacked = 0L;
+			long pieces = bitboard.getPieces( team );
+			while( pieces != 0 ){
+				attacked |= this.pieceAttacks[ Long.numberOfTrailingZeros( pieces ) ];
+				pieces &= pieces - 1;
+			}
+			this.teamAttacks[ team.ordinal() ] = attacked;
+		}
+	}
+
+	/**
+	 * @param team of Piece.Team
+	 * @param type of Piece.Type
+	 * @param square index between 0 and 63
+	 * @param occupied bitboard of all pieces on the board
+	 * @return squares the piece attacks from the square
+	 */
+	static long attacks( Team team, Type type, int square, long occupied ){
+		switch( type ){
+		case BISHOP:
+			return Attacks.bishopAttacks( square, occupied );
+		case KING:
+			return Attacks.kingAttacks( square );
+		case KNIGHT:
+			return Attacks.knightAttacks( square );
+		case PAWN:
+			return Attacks.pawnAttacks( team, square );
+		case QUEEN:
+			return Attacks.queenAttacks( square, occupied );
+		case ROOK:
+			return Attacks.rookAttacks( square, occupied );
+		default:
+			throw new IllegalStateException( "Unknown piece type: " + type );
+		}
+	}
+
+	// ::: QUERIES :::
+
+	/**
+	 * @param team of Piece.Team
+	 * @return bitboard of the squares attacked by at least one piece of the team
+	 */
+	public long getAttacks( Team team ){
+		return this.teamAttacks[ team.ordinal() ];
+	}
+
+	/**
+	 * @param square index between 0 and 63
+	 * @return bitboard of the squares attacked by the piece on the square, 0
+	 * 		   if the square is empty
+	 */
+	public long getAttacksFrom( int square ){
+		return this.pieceAttacks[ square ];
+	}
+
+	/**
+	 * @param attacker of Piece.Team
+	 * @param square index between 0 and 63
+	 * @return True, if a piece of the team attacks the square.
+	 */
+	public boolean isAttacked( Team attacker, int square ){
+		return (this.teamAttacks[ attacker.ordinal() ] & (1L << square)) != 0;
+	}
+
+}
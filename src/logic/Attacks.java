@@ -0,0 +1,322 @@
+package logic;
+
+import logic.Piece.Team;
+
+/**
+ * Precomputed attack tables. All methods return a bitboard (see Bitboard) of
+ * the squares a piece standing on the given square attacks. Leaper attacks
+ * (knight, king, pawn) are looked up directly.
+ *
+ * Sliding attacks use magic bitboards: only the pieces on the squares a rook
+ * or bishop could be blocked by matter (its rays without the last square), and
+ * multiplying them by a magic number of the square moves a unique index for
+ * every such blocker pattern into the highest bits. The attacks of every
+ * pattern are stored at that index, so a rook, bishop or queen lookup costs a
+ * multiplication and a few array reads. The tables are filled when the class
+ * is loaded; getTableInfo() reports the time and memory this takes.
+ *
+ * The between and line tables answer "which squares lie between two squares"
+ * and "which line runs through two squares" with one lookup.
+ */
+public final class Attacks {
+
+	// Row and column offsets of the knight's "L"-shaped moves.
+	private static final int[][] KNIGHT_OFFSETS = {
+		{ +2, +1 }, { +1, +2 }, { -1, +2 }, { -2, +1 },
+		{ -2, -1 }, { -1, -2 }, { +1, -2 }, { +2, -1 }
+	};
+
+	// Row and column offsets of the king's one square moves.
+	private static final int[][] KING_OFFSETS = {
+		{ +1, 0 }, { +1, +1 }, { 0, +1 }, { -1, +1 },
+		{ -1, 0 }, { -1, -1 }, { 0, -1 }, { +1, -1 }
+	};
+
+	// Ray directions. The first four are straight, the last four diagonal.
+	// Directions with an even index point to higher square indices.
+	private static final int[][] RAY_DIRECTIONS = {
+		{ +1, 0 }, { -1, 0 }, { 0, +1 }, { 0, -1 },
+		{ +1, +1 }, { -1, -1 }, { +1, -1 }, { -1, +1 }
+	};
+
+	private static final long[] KNIGHT_ATTACKS = new long[ Bitboard.NUMBER_OF_SQUARES ];
+	private static final long[] KING_ATTACKS = new long[ Bitboard.NUMBER_OF_SQUARES ];
+	// Indexed by [Team.ordinal()][square].
+	private static final long[][] PAWN_ATTACKS = new long[ 2 ][ Bitboard.NUMBER_OF_SQUARES ];
+	// Indexed by [direction][square]. The ray does not include the square itself.
+	private static final long[][] RAYS = new long[ RAY_DIRECTIONS.length ][ Bitboard.NUMBER_OF_SQUARES ];
+	// Indexed by [square][square]: the squares strictly between two squares
+	// on a common rank, file or diagonal, 0 otherwise.
+	private static final long[][] BETWEEN = new long[ Bitboard.NUMBER_OF_SQUARES ][ Bitboard.NUMBER_OF_SQUARES ];
+	// Indexed by [square][square]: the whole rank, file or diagonal through
+	// two squares, including both; 0 if they are not on a common line.
+	private static final long[][] LINES = new long[ Bitboard.NUMBER_OF_SQUARES ][ Bitboard.NUMBER_OF_SQUARES ];
+
+	// :: MAGIC BITBOARDS :: indexed by square
+	// The magics were found by trying random numbers with few bits set
+	// (xorshift64*, seeded per row) until one mapped all patterns correctly.
+	private static final long[] ROOK_MAGICS = {
+		0x0A80004000801220L, 0x8040004010002008L, 0x2080200010008008L, 0x1100100008210004L,
+		0xC200209084020008L, 0x2100010004000208L, 0x0400081000822421L, 0x0200010422048844L,
+		0x0800800080400024L, 0x0001402000401000L, 0x3000801000802001L, 0x4400800800100083L,
+		0x0904802402480080L, 0x4040800400020080L, 0x0018808042000100L, 0x4040800080004100L,
+		0x0040048001458024L, 0x00A0004000205000L, 0x3100808010002000L, 0x4825010010000820L,
+		0x5004808008000401L, 0x2024818004000A00L, 0x0005808002000100L, 0x2100060004806104L,
+		0x0080400880008421L, 0x4062220600410280L, 0x010A004A00108022L, 0x0000100080080080L,
+		0x0021000500080010L, 0x0044000202001008L, 0x0000100400080102L, 0xC020128200040545L,
+		0x0080002000400040L, 0x0000804000802004L, 0x0000120022004080L, 0x010A386103001001L,
+		0x9010080080800400L, 0x8440020080800400L, 0x0004228824001001L, 0x000000490A000084L,
+		0x0080002000504000L, 0x200020005000C000L, 0x0012088020420010L, 0x0010010080080800L,
+		0x0085001008010004L, 0x0002000204008080L, 0x0040413002040008L, 0x0000304081020004L,
+		0x0080204000800080L, 0x3008804000290100L, 0x1010100080200080L, 0x2008100208028080L,
+		0x5000850800910100L, 0x8402019004680200L, 0x0120911028020400L, 0x0000008044010200L,
+		0x0020850200244012L, 0x0020850200244012L, 0x0000102001040841L, 0x140900040A100021L,
+		0x000200282410A102L, 0x000200282410A102L, 0x000200282410A102L, 0x4048240043802106L
+	};
+	private static final long[] BISHOP_MAGICS = {
+		0x40106000A1160020L, 0x0020010250810120L, 0x2010010220280081L, 0x002806004050C040L,
+		0x0002021018000000L, 0x2001112010000400L, 0x0881010120218080L, 0x1030820110010500L,
+		0x0000120222042400L, 0x2000020404040044L, 0x8000480094208000L, 0x0003422A02000001L,
+		0x000A220210100040L, 0x8004820202226000L, 0x0018234854100800L, 0x0100004042101040L,
+		0x0004001004082820L, 0x0010000810010048L, 0x1014004208081300L, 0x2080818802044202L,
+		0x0040880C00A00100L, 0x0080400200522010L, 0x0001000188180B04L, 0x0080249202020204L,
+		0x1004400004100410L, 0x00013100A0022206L, 0x2148500001040080L, 0x4241080011004300L,
+		0x4020848004002000L, 0x10101380D1004100L, 0x0008004422020284L, 0x01010A1041008080L,
+		0x0808080400082121L, 0x0808080400082121L, 0x0091128200100C00L, 0x0202200802010104L,
+		0x8C0A020200440085L, 0x01A0008080B10040L, 0x0889520080122800L, 0x100902022202010AL,
+		0x04081A0816002000L, 0x0000681208005000L, 0x8170840041008802L, 0x0A00004200810805L,
+		0x0830404408210100L, 0x2602208106006102L, 0x1048300680802628L, 0x2602208106006102L,
+		0x0602010120110040L, 0x0941010801043000L, 0x000040440A210428L, 0x0008240020880021L,
+		0x0400002012048200L, 0x00AC102001210220L, 0x0220021002009900L, 0x84440C080A013080L,
+		0x0001008044200440L, 0x0004C04410841000L, 0x2000500104011130L, 0x1A0C010011C20229L,
+		0x0044800112202200L, 0x0434804908100424L, 0x0300404822C08200L, 0x48081010008A2A80L
+	};
+	private static final long[] ROOK_MASKS = new long[ Bitboard.NUMBER_OF_SQUARES ];
+	private static final int[] ROOK_SHIFTS = new int[ Bitboard.NUMBER_OF_SQUARES ];
+	private static final int[] ROOK_OFFSETS = new int[ Bitboard.NUMBER_OF_SQUARES ];
+	private static final long[] BISHOP_MASKS = new long[ Bitboard.NUMBER_OF_SQUARES ];
+	private static final int[] BISHOP_SHIFTS = new int[ Bitboard.NUMBER_OF_SQUARES ];
+	private static final int[] BISHOP_OFFSETS = new int[ Bitboard.NUMBER_OF_SQUARES ];
+	// Attacks of all rooks and bishops for every blocker pattern, one block
+	// per square starting at its offset.
+	private static final long[] SLIDER_ATTACKS;
+
+	private static final long INIT_NANOS;
+	private static final long TABLE_BYTES;
+
+	static {
+		long startTime = System.nanoTime();
+		for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+			int row = Bitboard.row( square );
+			int col = Bitboard.col( square );
+
+			KNIGHT_ATTACKS[ square ] = offsetsToBitboard( row, col, KNIGHT_OFFSETS );
+			KING_ATTACKS[ square ] = offsetsToBitboard( row, col, KING_OFFSETS );
+			PAWN_ATTACKS[ Team.WHITE.ordinal() ][ square ] =
+				offsetsToBitboard( row, col, new int[][]{ { +1, -1 }, { +1, +1 } } );
+			PAWN_ATTACKS[ Team.BLACK.ordinal() ][ square ] =
+				offsetsToBitboard( row, col, new int[][]{ { -1, -1 }, { -1, +1 } } );
+
+			for( int direction = 0; direction < RAY_DIRECTIONS.length; direction++ ){
+				long ray = 0L;
+				int currentRow = row + RAY_DIRECTIONS[ direction ][ 0 ];
+				int currentCol = col + RAY_DIRECTIONS[ direction ][ 1 ];
+				while( Bitboard.isOnBoard( currentRow, currentCol ) ){
+					ray |= 1L << Bitboard.square( currentRow, currentCol );
+					currentRow += RAY_DIRECTIONS[ direction ][ 0 ];
+					currentCol += RAY_DIRECTIONS[ direction ][ 1 ];
+				}
+				RAYS[ direction ][ square ] = ray;
+			}
+		}
+
+		for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+			for( int direction = 0; direction < RAY_DIRECTIONS.length; direction++ ){
+				long ray = RAYS[ direction ][ square ];
+				// Both directions of a line have the indices 2n and 2n + 1.
+				long line = ray | RAYS[ direction ^ 1 ][ square ] | (1L << square);
+				while( ray != 0 ){
+					int other = Long.numberOfTrailingZeros( ray );
+					ray &= ray - 1;
+					BETWEEN[ square ][ other ] = RAYS[ direction ][ square ] & RAYS[ direction ^ 1 ][ other ];
+					LINES[ square ][ other ] = line;
+				}
+			}
+		}
+
+		int size = 0;
+		for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+			ROOK_MASKS[ square ] = relevantSquares( square, 0 );
+			BISHOP_MASKS[ square ] = relevantSquares( square, 4 );
+			ROOK_OFFSETS[ square ] = size;
+			size += 1 << Long.bitCount( ROOK_MASKS[ square ] );
+			BISHOP_OFFSETS[ square ] = size;
+			size += 1 << Long.bitCount( BISHOP_MASKS[ square ] );
+		}
+		SLIDER_ATTACKS = new long[ size ];
+		for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+			ROOK_SHIFTS[ square ] = 64 - Long.bitCount( ROOK_MASKS[ square ] );
+			fillMagicTable( square, 0, ROOK_MASKS[ square ], ROOK_MAGICS[ square ],
+				ROOK_SHIFTS[ square ], ROOK_OFFSETS[ square ] );
+			BISHOP_SHIFTS[ square ] = 64 - Long.bitCount( BISHOP_MASKS[ square ] );
+			fillMagicTable( square, 4, BISHOP_MASKS[ square ], BISHOP_MAGICS[ square ],
+				BISHOP_SHIFTS[ square ], BISHOP_OFFSETS[ square ] );
+		}
+
+		TABLE_BYTES = 8L * (KNIGHT_ATTACKS.length + KING_ATTACKS.length + 2 * Bitboard.NUMBER_OF_SQUARES
+				+ RAY_DIRECTIONS.length * Bitboard.NUMBER_OF_SQUARES + 2 * Bitboard.NUMBER_OF_SQUARES * Bitboard.NUMBER_OF_SQUARES
+				+ 4 * Bitboard.NUMBER_OF_SQUARES + SLIDER_ATTACKS.length)
+			+ 4L * 4 * Bitboard.NUMBER_OF_SQUARES;
+		INIT_NANOS = System.nanoTime() - startTime;
+	}
+
+	private Attacks() {
+	}
+
+	private static long offsetsToBitboard( int row, int col, int[][] offsets ){
+		long result = 0L;
+		for( int[] offset : offsets ){
+			int targetRow = row + offset[ 0 ];
+			int targetCol = col + offset[ 1 ];
+			if( Bitboard.isOnBoard( targetRow, targetCol ) ){
+				result |= 1L << Bitboard.square( targetRow, targetCol );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param firstDirection 0 for the straight rays, 4 for the diagonals
+	 * @return squares whose pieces can block the four rays from the square,
+	 * 		   i.e. the rays without their last square.
+	 */
+	private static long relevantSquares( int square, int firstDirection ){
+		long mask = 0L;
+		for( int direction = firstDirection; direction < firstDirection + 4; direction++ ){
+			long ray = RAYS[ direction ][ square ];
+			if( ray != 0 ){
+				int last = (direction & 1) == 0
+					? 63 - Long.numberOfLeadingZeros( ray )
+					: Long.numberOfTrailingZeros( ray );
+				mask |= ray & ~(1L << last);
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Stores the attacks for every blocker pattern of the mask at the index
+	 * the magic number maps the pattern to.
+	 * @param firstDirection 0 for rooks, 4 for bishops
+	 * @throws IllegalStateException if the magic maps two patterns with
+	 * 		   different attacks to the same index.
+	 */
+	private static void fillMagicTable( int square, int firstDirection, long mask, long magic, int shift, int offset ){
+		boolean[] isUsed = new boolean[ 1 << (64 - shift) ];
+		// Enumerates all subsets of the mask (Carry-Rippler trick).
+		long pattern = 0L;
+		do {
+			long attacks = 0L;
+			for( int direction = firstDirection; direction < firstDirection + 4; direction++ ){
+				attacks |= rayAttacks( direction, square, pattern );
+			}
+			int index = (int) ((pattern * magic) >>> shift);
+			if( isUsed[ index ] && SLIDER_ATTACKS[ offset + index ] != attacks ){
+				throw new IllegalStateException( "Wrong magic number for square " + square );
+			}
+			isUsed[ index ] = true;
+			SLIDER_ATTACKS[ offset + index ] = attacks;
+			pattern = (pattern - mask) & mask;
+		} while( pattern != 0 );
+	}
+
+	/**
+	 * Returns the squares reachable along one ray, up to and including the
+	 * first occupied square. Only used to fill the magic tables.
+	 */
+	private static long rayAttacks( int direction, int square, long occupied ){
+		long attacks = RAYS[ direction ][ square ];
+		long blockers = attacks & occupied;
+		if( blockers != 0 ){
+			int blocker = (direction & 1) == 0
+				? Long.numberOfTrailingZeros( blockers )
+				: 63 - Long.numberOfLeadingZeros( blockers );
+			attacks ^= RAYS[ direction ][ blocker ];
+		}
+		return attacks;
+	}
+
+	public static long knightAttacks( int square ){
+		return KNIGHT_ATTACKS[ square ];
+	}
+
+	public static long kingAttacks( int square ){
+		return KING_ATTACKS[ square ];
+	}
+
+	/**
+	 * @param team of the pawn
+	 * @param square of the pawn
+	 * @return the two (or one, on the border) squares diagonally in front of
+	 * 		   the pawn.
+	 */
+	public static long pawnAttacks( Team team, int square ){
+		return PAWN_ATTACKS[ team.ordinal() ][ square ];
+	}
+
+	/**
+	 * @param square of the rook
+	 * @param occupied bitboard of all pieces on the board
+	 * @return squares along ranks and files up to the first piece in each
+	 * 		   direction, including the square of that piece.
+	 */
+	public static long rookAttacks( int square, long occupied ){
+		return SLIDER_ATTACKS[ ROOK_OFFSETS[ square ]
+			+ (int) (((occupied & ROOK_MASKS[ square ]) * ROOK_MAGICS[ square ]) >>> ROOK_SHIFTS[ square ]) ];
+	}
+
+	/**
+	 * @param square of the bishop
+	 * @param occupied bitboard of all pieces on the board
+	 * @return squares along diagonals up to the first piece in each
+	 * 		   direction, including the square of that piece.
+	 */
+	public static long bishopAttacks( int square, long occupied ){
+		return SLIDER_ATTACKS[ BISHOP_OFFSETS[ square ]
+			+ (int) (((occupied & BISHOP_MASKS[ square ]) * BISHOP_MAGICS[ square ]) >>> BISHOP_SHIFTS[ square ]) ];
+	}
+
+	public static long queenAttacks( int square, long occupied ){
+		return rookAttacks( square, occupied ) | bishopAttacks( square, occupied );
+	}
+
+	/**
+	 * @param square1 index between 0 and 63
+	 * @param square2 index between 0 and 63
+	 * @return the squares strictly between the two squares if they share a
+	 * 		   rank, file or diagonal, otherwise 0.
+	 */
+	public static long between( int square1, int square2 ){
+		return BETWEEN[ square1 ][ square2 ];
+	}
+
+	/**
+	 * @param square1 index between 0 and 63
+	 * @param square2 index between 0 and 63, different from square1
+	 * @return the whole rank, file or diagonal through both squares, or 0 if
+	 * 		   they share none.
+	 */
+	public static long line( int square1, int square2 ){
+		return LINES[ square1 ][ square2 ];
+	}
+
+	/**
+	 * @return e.g. "attack tables: 883 KB, initialized in 12 ms", for the
+	 * 		   startup output of the programs.
+	 */
+	public static String getTableInfo() {
+		return "attack tables: " + (TABLE_BYTES + 1023) / 1024 + " KB, initialized in "
+			+ INIT_NANOS / 1000000 + " ms";
+	}
+
+}
@@ -0,0 +1,185 @@
+package logic;
+
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Bitboard representation of the pieces on the board. Every piece type of
+ * every team is stored as a 64 bit mask where bit n is set if such a piece
+ * stands on square n. Squares are numbered row by row starting at a1
+ * (square = row * 8 + col), so Piece.ROW_.. and Piece.COL_.. map directly to
+ * bit positions.
+ *
+ * Besides the masks, a square table keeps a reference to the piece standing
+ * on each square, so "which piece is on this square" is answered without
+ * scanning the piece list.
+ *
+ * The board is kept in sync by ChessGame. Pieces must therefore only be
+ * moved, captured or placed through the game.
+ */
+public class Bitboard {
+
+	public static final int NUMBER_OF_SQUARES = 64;
+
+	// Bitboards indexed by [Team.ordinal()][Type.ordinal()].
+	private final long[][] pieces = new long[ Team.values().length ][ Type.values().length ];
+	// Bitboards of all pieces of a team indexed by Team.ordinal().
+	private final long[] teams = new long[ Team.values().length ];
+	private long occupied;
+
+	// Non captured piece on each square or null.
+	private final Piece[] squares = new Piece[ NUMBER_OF_SQUARES ];
+
+	/**
+	 * Converts row and column into a square index.
+	 * @param row of Piece.ROW_..
+	 * @param col of Piece.COL_..
+	 * @return square index between 0 (a1) and 63 (h8)
+	 */
+	public static int square( int row, int col ){
+		return (row << 3) | col;
+	}
+
+	/**
+	 * @param square index between 0 and 63
+	 * @return row of the square (Piece.ROW_..)
+	 */
+	public static int row( int square ){
+		return square >>> 3;
+	}
+
+	/**
+	 * @param square index between 0 and 63
+	 * @return column of the square (Piece.COL_..)
+	 */
+	public static int col( int square ){
+		return square & 7;
+	}
+
+	/**
+	 * Checks if row and column are within the boundaries of the board.
+	 * @param row of Piece.ROW_..
+	 * @param col of Piece.COL_..
+	 * @return True, if the location is on the board.
+	 */
+	public static boolean isOnBoard( int row, int col ){
+		return ((row | col) & ~7) == 0;
+	}
+
+	// ::: UPDATES (called by ChessGame) :::
+
+	/**
+	 * Puts the piece on the square given by its row and column.
+	 * @param piece A non captured piece.
+	 */
+	void place( Piece piece ){
+		int square = square( piece.getRow(), piece.getCol() );
+		long mask = 1L << square;
+		int team = piece.getTeam().ordinal();
+		this.pieces[ team ][ piece.getType().ordinal() ] |= mask;
+		this.teams[ team ] |= mask;
+		this.occupied |= mask;
+		this.squares[ square ] = piece;
+	}
+
+	/**
+	 * Removes the piece from the square given by its row and column.
+	 * @param piece A piece currently on the board.
+	 */
+	void remove( Piece piece ){
+		int square = square( piece.getRow(), piece.getCol() );
+		long mask = ~(1L << square);
+		int team = piece.getTeam().ordinal();
+		this.pieces[ team ][ piece.getType().ordinal() ] &= mask;
+		this.teams[ team ] &= mask;
+		this.occupied &= mask;
+		this.squares[ square ] = null;
+	}
+
+	// ::: QUERIES :::
+
+	/**
+	 * @param square index between 0 and 63
+	 * @return the non captured piece on the square or null
+	 */
+	public Piece getPiece( int square ){
+		return this.squares[ square ];
+	}
+
+	/**
+	 * @param square index between 0 and 63
+	 * @return True, if a non captured piece stands on the square.
+	 */
+	public boolean isOccupied( int square ){
+		return (this.occupied & (1L << square)) != 0;
+	}
+
+	/**
+	 * @param team of Piece.Team
+	 * @param square index between 0 and 63
+	 * @return True, if a non captured piece of the team stands on the square.
+	 */
+	public boolean isOccupied( Team team, int square ){
+		return (this.teams[ team.ordinal() ] & (1L << square)) != 0;
+	}
+
+	/**
+	 * @param team of Piece.Team
+	 * @param type of Piece.Type
+	 * @return bitboard of all non captured pieces of given team and type
+	 */
+	public long getPieces( Team team, Type type ){
+		return this.pieces[ team.ordinal() ][ type.ordinal() ];
+	}
+
+	/**
+	 * @param team of Piece.Team
+	 * @return bitboard of all non captured pieces of the team
+	 */
+	public long getPieces( Team team ){
+		return this.teams[ team.ordinal() ];
+	}
+
+	/**
+	 * @return bitboard of all non captured pieces
+	 */
+	public long getOccupied() {
+		return this.occupied;
+	}
+
+	/**
+	 * Checks if a piece of the team attacks the square, i.e. could capture a
+	 * piece standing there.
+	 * @param attacker of Piece.Team
+	 * @param square index between 0 and 63
+	 * @return True, if the square is attacked.
+	 */
+	public boolean isAttacked( Team attacker, int square ){
+		return isAttacked( attacker, square, this.occupied, 0L );
+	}
+
+	/**
+	 * Checks if a piece of the team would attack the square on a changed
+	 * board, e.g. after a move that is not made yet.
+	 * @param attacker of Piece.Team
+	 * @param square index between 0 and 63
+	 * @param occupied bitboard of all pieces on the changed board
+	 * @param removed bitboard of attacker pieces that are not on the changed
+	 * 		  board, e.g. a captured piece
+	 * @return True, if the square is attacked.
+	 */
+	public boolean isAttacked( Team attacker, int square, long occupied, long removed ){
+		long[] attackerPieces = this.pieces[ attacker.ordinal() ];
+		long kept = ~removed;
+		Team defender = (attacker == Team.WHITE ? Team.BLACK : Team.WHITE);
+		// A pawn of the defender on the square would attack the attacker's pawns.
+		return (Attacks.pawnAttacks( defender, square ) & attackerPieces[ Type.PAWN.ordinal() ] & kept) != 0
+			|| (Attacks.knightAttacks( square ) & attackerPieces[ Type.KNIGHT.ordinal() ] & kept) != 0
+			|| (Attacks.kingAttacks( square ) & attackerPieces[ Type.KING.ordinal() ] & kept) != 0
+			|| (Attacks.bishopAttacks( square, occupied ) & kept
+				& (attackerPieces[ Type.BISHOP.ordinal() ] | attackerPieces[ Type.QUEEN.ordinal() ])) != 0
+			|| (Attacks.rookAttacks( square, occupied ) & kept
+				& (attackerPieces[ Type.ROOK.ordinal() ] | attackerPieces[ Type.QUEEN.ordinal() ])) != 0;
+	}
+	
+}
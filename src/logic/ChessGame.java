@@ -1,6 +1,7 @@
 package logic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import logic.Piece.Team;
@@ -20,10 +21,92 @@ public class ChessGame {
 		}
 	}
 	
+	/**
+	 * Why the game has ended. NONE while the game is running.
+	 */
+	public static enum EndCondition {
+		NONE,
+		/** The team to move is in check and has no valid move; it loses. */
+		CHECKMATE,
+		/** The team to move is not in check but has no valid move; a draw. */
+		STALEMATE,
+		/** A king was captured, only possible if a position was set up with
+		 *  the king of the team not to move in check. */
+		KING_CAPTURED;
+	}
+	
+	// :: CASTLING RIGHTS ::
+	// Bits of getCastlingRights. A right is lost when the king or the rook
+	// moves or the rook is captured.
+	public static final int CASTLING_WHITE_KINGSIDE = 1;
+	public static final int CASTLING_WHITE_QUEENSIDE = 2;
+	public static final int CASTLING_BLACK_KINGSIDE = 4;
+	public static final int CASTLING_BLACK_QUEENSIDE = 8;
+	public static final int CASTLING_ALL = 15;
+	
+	/** Square index standing for "no square", e.g. no en passant square. */
+	public static final int NO_SQUARE = -1;
+	
+	/** The start position in Forsyth-Edwards Notation. */
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+	
+	// Castling rights that remain when a piece moves from or to a square.
+	private static final int[] CASTLING_RIGHTS_MASKS = new int[ Bitboard.NUMBER_OF_SQUARES ];
+	
+	static {
+		Arrays.fill( CASTLING_RIGHTS_MASKS, CASTLING_ALL );
+		CASTLING_RIGHTS_MASKS[ Bitboard.square( Piece.ROW_1, Piece.COL_A ) ] &= ~CASTLING_WHITE_QUEENSIDE;
+		CASTLING_RIGHTS_MASKS[ Bitboard.square( Piece.ROW_1, Piece.COL_H ) ] &= ~CASTLING_WHITE_KINGSIDE;
+		CASTLING_RIGHTS_MASKS[ Bitboard.square( Piece.ROW_1, Piece.COL_E ) ] &= ~(CASTLING_WHITE_KINGSIDE | CASTLING_WHITE_QUEENSIDE);
+		CASTLING_RIGHTS_MASKS[ Bitboard.square( Piece.ROW_8, Piece.COL_A ) ] &= ~CASTLING_BLACK_QUEENSIDE;
+		CASTLING_RIGHTS_MASKS[ Bitboard.square( Piece.ROW_8, Piece.COL_H ) ] &= ~CASTLING_BLACK_KINGSIDE;
+		CASTLING_RIGHTS_MASKS[ Bitboard.square( Piece.ROW_8, Piece.COL_E ) ] &= ~(CASTLING_BLACK_KINGSIDE | CASTLING_BLACK_QUEENSIDE);
+	}
+	
 	private GameState gameState = GameState.WHITE;
 	private GameState lastGameState;
 	private List<Piece> pieces = new ArrayList<Piece>();
+	private Bitboard bitboard = new Bitboard();
+	private long hash = 0L; // Zobrist hash of the current position
+	// Sums of the PieceSquareTables values and phase weights of all pieces
+	// on the board, updated with every move like the hash.
+	private int midgameScore = 0;
+	private int endgameScore = 0;
+	private int phase = 0;
+	// Squares attacked by each team, updated with every move.
+	private AttackMaps attackMaps = new AttackMaps();
+	private EndCondition endCondition = EndCondition.NONE;
+	// Snapshot of the current position, null until asked for after a change.
+	private Position position;
+	private int castlingRights = CASTLING_ALL;
+	// Square a pawn skipped with its double step, if an opponent pawn could
+	// capture it en passant; NO_SQUARE otherwise.
+	private int enPassantSquare = NO_SQUARE;
+	// Plies since the last capture or pawn move.
+	private int halfmoveClock = 0;
+	// Starts at 1 and is incremented after each move of black.
+	private int fullmoveNumber = 1;
 	private MoveValidator moveValidator = new MoveValidator( this );
+	private MoveGenerator moveGenerator = new MoveGenerator( this );
+	
+	// :: UNDO STACK ::
+	// One entry per executed move, used by unmakeMove to restore the
+	// previous position. The arrays grow when a game gets longer.
+	private static final int INITIAL_UNDO_CAPACITY = 256;
+	private Piece[] undoMovedPieces = new Piece[ INITIAL_UNDO_CAPACITY ];
+	private Piece[] undoCapturedPieces = new Piece[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoMoves = new int[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoCastlingRights = new int[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoEnPassantSquares = new int[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoHalfmoveClocks = new int[ INITIAL_UNDO_CAPACITY ];
+	private GameState[] undoGameStates = new GameState[ INITIAL_UNDO_CAPACITY ];
+	private GameState[] undoLastGameStates = new GameState[ INITIAL_UNDO_CAPACITY ];
+	private long[] undoHashes = new long[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoMidgameScores = new int[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoEndgameScores = new int[ INITIAL_UNDO_CAPACITY ];
+	private int[] undoPhases = new int[ INITIAL_UNDO_CAPACITY ];
+	private EndCondition[] undoEndConditions = new EndCondition[ INITIAL_UNDO_CAPACITY ];
+	private int undoSize = 0;
 	
 	/**
 	 * Initializes game.
@@ -63,9 +146,254 @@ public class ChessGame {
 	    for( int i=0; i<8; i++ ){
 	    	createAndAddPiece( Team.BLACK, Type.PAWN, Piece.ROW_7, currentCol );
 	    	currentCol++;
-	    }	
+	    }
+	
+	    this.hash ^= Zobrist.castlingKey( this.castlingRights );
+	}
+	
+	/**
+	 * Creates a deep copy of the specified game. The copy shares no pieces with
+	 * the original, so both games can be changed independently. The move
+	 * history is not copied: moves made before cannot be unmade in the copy.
+	 * @param other The game to copy.
+	 */
+	public ChessGame( ChessGame other ){
+		for( Piece piece : other.pieces ){
+			Piece copy = new Piece( piece.getTeam(), piece.getType(), piece.getRow(), piece.getCol() );
+			copy.setCaptured( piece.isCaptured() );
+			this.pieces.add( copy );
+			if( ! copy.isCaptured() ){
+				this.bitboard.place( copy );
+			}
+		}
+		this.attackMaps.reset( this.bitboard );
+		this.gameState = other.gameState;
+		this.lastGameState = other.lastGameState;
+		this.endCondition = other.endCondition;
+		this.hash = other.hash;
+		this.midgameScore = other.midgameScore;
+		this.endgameScore = other.endgameScore;
+		this.phase = other.phase;
+		this.castlingRights = other.castlingRights;
+		this.enPassantSquare = other.enPassantSquare;
+		this.halfmoveClock = other.halfmoveClock;
+		this.fullmoveNumber = other.fullmoveNumber;
+	}
+	
+	/**
+	 * Creates a game from a position in Forsyth-Edwards Notation, e.g.
+	 * START_FEN. The halfmove clock and fullmove number may be left out.
+	 * @param fen The position.
+	 * @return game in that position, without move history.
+	 * @throws IllegalArgumentException if the FEN is malformed.
+	 */
+	public static ChessGame fromFen( String fen ){
+		return new ChessGame( fen );
+	}
+	
+	/**
+	 * Parses the FEN in a single pass over its characters.
+	 */
+	private ChessGame( String fen ){
+		int length = fen.length();
+		int index = 0;
+		
+		// :: PIECE PLACEMENT :: from row 8 to row 1, each from column a to h
+		int row = Piece.ROW_8;
+		int col = Piece.COL_A;
+		for( ; index < length && fen.charAt( index ) != ' '; index++ ){
+			char c = fen.charAt( index );
+			if( c == '/' ){
+				if( col != 8 || row == Piece.ROW_1 ){
+					throw invalidFen( fen );
+				}
+				row--;
+				col = Piece.COL_A;
+			} else if( c >= '1' && c <= '8' ){
+				col += c - '0';
+				if( col > 8 ){
+					throw invalidFen( fen );
+				}
+			} else {
+				Type type = getTypeOfLetter( c );
+				if( type == null || col > Piece.COL_H ){
+					throw invalidFen( fen );
+				}
+				createAndAddPiece( Character.isUpperCase( c ) ? Team.WHITE : Team.BLACK, type, row, col++ );
+			}
+		}
+		if( row != Piece.ROW_1 || col != 8 ){
+			throw invalidFen( fen );
+		}
+		
+		// :: TEAM TO MOVE ::
+		index = skipSpace( fen, index );
+		if( index >= length ){
+			throw invalidFen( fen );
+		}
+		char team = fen.charAt( index++ );
+		if( team == 'w' ){
+			this.gameState = GameState.WHITE;
+		} else if( team == 'b' ){
+			this.gameState = GameState.BLACK;
+			this.hash ^= Zobrist.BLACK_TO_MOVE;
+		} else {
+			throw invalidFen( fen );
+		}
+		this.lastGameState = this.gameState;
+		
+		// :: CASTLING RIGHTS ::
+		index = skipSpace( fen, index );
+		this.castlingRights = 0;
+		if( index < length && fen.charAt( index ) == '-' ){
+			index++;
+		} else {
+			for( ; index < length && fen.charAt( index ) != ' '; index++ ){
+				switch( fen.charAt( index ) ){
+				case 'K':
+					this.castlingRights |= CASTLING_WHITE_KINGSIDE;
+					break;
+				case 'Q':
+					this.castlingRights |= CASTLING_WHITE_QUEENSIDE;
+					break;
+				case 'k':
+					this.castlingRights |= CASTLING_BLACK_KINGSIDE;
+					break;
+				case 'q':
+					this.castlingRights |= CASTLING_BLACK_QUEENSIDE;
+					break;
+				default:
+					throw invalidFen( fen );
+				}
+			}
+		}
+		this.hash ^= Zobrist.castlingKey( this.castlingRights );
+		
+		// :: EN PASSANT SQUARE ::
+		index = skipSpace( fen, index );
+		if( index < length && fen.charAt( index ) == '-' ){
+			index++;
+		} else if( index + 1 < length ){
+			int enPassantCol = fen.charAt( index++ ) - 'a';
+			int enPassantRow = fen.charAt( index++ ) - '1';
+			if( enPassantCol < Piece.COL_A || enPassantCol > Piece.COL_H
+					|| enPassantRow != (this.gameState == GameState.WHITE ? Piece.ROW_6 : Piece.ROW_3) ){
+				throw invalidFen( fen );
+			}
+			// Like makeMove, only keeps the square if a pawn can capture there.
+			int square = Bitboard.square( enPassantRow, enPassantCol );
+			Team movingTeam = (this.gameState == GameState.WHITE ? Team.WHITE : Team.BLACK);
+			Team lastTeam = (movingTeam == Team.WHITE ? Team.BLACK : Team.WHITE);
+			if( (Attacks.pawnAttacks( lastTeam, square ) & this.bitboard.getPieces( movingTeam, Type.PAWN )) != 0 ){
+				this.enPassantSquare = square;
+				this.hash ^= Zobrist.enPassantKey( square );
+			}
+		} else {
+			throw invalidFen( fen );
+		}
+		
+		// :: HALFMOVE CLOCK AND FULLMOVE NUMBER :: (optional)
+		index = skipSpace( fen, index );
+		if( index < length ){
+			int end = fen.indexOf( ' ', index );
+			end = (end < 0 ? length : end);
+			this.halfmoveClock = parseNumber( fen, index, end );
+			index = skipSpace( fen, end );
+			if( index < length ){
+				this.fullmoveNumber = Math.max( 1, parseNumber( fen, index, length ) );
+			}
+		}
+		
+		updateEndCondition();
+	}
+	
+	private static int skipSpace( String fen, int index ){
+		while( index < fen.length() && fen.charAt( index ) == ' ' ){
+			index++;
+		}
+		return index;
+	}
+	
+	private static int parseNumber( String fen, int start, int end ){
+		if( start == end ){
+			throw invalidFen( fen );
+		}
+		int number = 0;
+		for( int i = start; i < end; i++ ){
+			char c = fen.charAt( i );
+			if( c < '0' || c > '9' || number > 100000 ){
+				throw invalidFen( fen );
+			}
+			number = number * 10 + (c - '0');
+		}
+		return number;
 	}
 	
+	private static IllegalArgumentException invalidFen( String fen ){
+		return new IllegalArgumentException( "invalid FEN: " + fen );
+	}
+	
+	/**
+	 * @param letter FEN letter of a piece, upper case for white
+	 * @return type of the piece, null if the letter is no piece letter
+	 */
+	private static Type getTypeOfLetter( char letter ){
+		switch( Character.toLowerCase( letter ) ){
+		case 'r':
+			return Type.ROOK;
+		case 'n':
+			return Type.KNIGHT;
+		case 'b':
+			return Type.BISHOP;
+		case 'q':
+			return Type.QUEEN;
+		case 'k':
+			return Type.KING;
+		case 'p':
+			return Type.PAWN;
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * @return FEN letter of the piece, upper case for white
+	 */
+	static char getLetterOfPiece( Team team, Type type ){
+		char letter;
+		switch( type ){
+		case ROOK:
+			letter = 'r';
+			break;
+		case KNIGHT:
+			letter = 'n';
+			break;
+		case BISHOP:
+			letter = 'b';
+			break;
+		case QUEEN:
+			letter = 'q';
+			break;
+		case KING:
+			letter = 'k';
+			break;
+		case PAWN:
+			letter = 'p';
+			break;
+		default:
+			throw new IllegalStateException( "Unknown piece type: " + type );
+		}
+		return team == Team.WHITE ? Character.toUpperCase( letter ) : letter;
+	}
+	
+	/**
+	 * Writes the current position in Forsyth-Edwards Notation.
+	 * @return the FEN of the position.
+	 */
+	public String toFen() {
+		return getPosition().toFen();
+	}
+
   /** Creates piece instance and add it to the internal list of pieces.
 	*
 	* @param team of Pieces.Color
@@ -75,7 +403,30 @@ public class ChessGame {
 	*/
 	public void createAndAddPiece( Team team, Type type, int row, int col ) {
 		Piece piece = new Piece( team, type, row, col );
+		this.position = null;
 		this.pieces.add( piece );
+		this.bitboard.place( piece );
+		this.attackMaps.update( this.bitboard, 1L << Bitboard.square( row, col ) );
+		this.hash ^= Zobrist.pieceKey( team, type, Bitboard.square( row, col ) );
+		addScore( team, type, Bitboard.square( row, col ) );
+	}
+	
+	/**
+	 * Adds a piece on a square to the score.
+	 */
+	private void addScore( Team team, Type type, int square ){
+		this.midgameScore += PieceSquareTables.midgameValue( team, type, square );
+		this.endgameScore += PieceSquareTables.endgameValue( team, type, square );
+		this.phase += PieceSquareTables.phaseWeight( type );
+	}
+	
+	/**
+	 * Removes a piece on a square from the score.
+	 */
+	private void removeScore( Team team, Type type, int square ){
+		this.midgameScore -= PieceSquareTables.midgameValue( team, type, square );
+		this.endgameScore -= PieceSquareTables.endgameValue( team, type, square );
+		this.phase -= PieceSquareTables.phaseWeight( type );
 	}
 	
 	/**
@@ -88,51 +439,351 @@ public class ChessGame {
 	 * @param col The target column (Piece.COL_..)
 	 */
 	public boolean movePiece( Move move ){
-		int sourceRow = move.sourceRow;
-		int sourceCol = move.sourceCol;
-		int targetRow = move.targetRow;
-		int targetCol = move.targetCol;
-		
 		if( ! this.moveValidator.isMoveValid( move ) ){
-			System.out.println("invalid move");
 			return false;
 		}
+		makeMove( move );
+		return true;
+	}
+	
+	/**
+	 * Executes a move without validating it and without any console output.
+	 * The information needed to take the move back is pushed onto the undo
+	 * stack, so the move can be reverted with unmakeMove.
+	 * @param move A valid move, e.g. one returned by generateLegalMoves.
+	 * @return the captured opponent piece or null.
+	 */
+	public Piece makeMove( Move move ){
+		return makeMove( encodeMove( move ) );
+	}
+	
+	/**
+	 * Executes a packed move (see PackedMove) without validating it. Creates
+	 * no objects, apart from growing the undo stack in very long games.
+	 * @param move A valid packed move, e.g. one generated into a MoveList.
+	 * @return the captured opponent piece or null.
+	 */
+	public Piece makeMove( int move ){
+		int sourceSquare = PackedMove.source( move );
+		int targetSquare = PackedMove.target( move );
+		Piece piece = this.bitboard.getPiece( sourceSquare );
+		Team team = piece.getTeam();
+		this.position = null;
+		
+		if( this.undoSize == this.undoMovedPieces.length ){
+			growUndoStack();
+		}
+		int index = this.undoSize++;
+		this.undoMovedPieces[ index ] = piece;
+		this.undoMoves[ index ] = move;
+		this.undoCastlingRights[ index ] = this.castlingRights;
+		this.undoEnPassantSquares[ index ] = this.enPassantSquare;
+		this.undoHalfmoveClocks[ index ] = this.halfmoveClock;
+		this.undoGameStates[ index ] = this.gameState;
+		this.undoLastGameStates[ index ] = this.lastGameState;
+		this.undoHashes[ index ] = this.hash;
+		this.undoMidgameScores[ index ] = this.midgameScore;
+		this.undoEndgameScores[ index ] = this.endgameScore;
+		this.undoPhases[ index ] = this.phase;
+		this.undoEndConditions[ index ] = this.endCondition;
 		
-		Piece piece = getNonCapturedPieceAtLocation( sourceRow, sourceCol );
-			
-		// Checks if the move is capturing an opponent piece.
-		Team opponentTeam = (piece.getTeam() == Team.BLACK ? Team.WHITE : Team.BLACK );
-		if( isNonCapturedPieceAtLocation(opponentTeam, targetRow, targetCol) ){
-			Piece opponentPiece = getNonCapturedPieceAtLocation( targetRow, targetCol );
+		// Checks if the move is capturing an opponent piece. The pawn captured
+		// en passant stands behind the target square.
+		int captureSquare = targetSquare;
+		if( PackedMove.isEnPassant( move ) ){
+			captureSquare = (team == Team.WHITE ? targetSquare - 8 : targetSquare + 8);
+		}
+		Piece opponentPiece = this.bitboard.getPiece( captureSquare );
+		if( opponentPiece != null ){
+			this.bitboard.remove( opponentPiece );
 			opponentPiece.setCaptured( true );
-			System.out.println( piece + " captured " + opponentPiece );
+			this.hash ^= Zobrist.pieceKey( opponentPiece.getTeam(), opponentPiece.getType(), captureSquare );
+			removeScore( opponentPiece.getTeam(), opponentPiece.getType(), captureSquare );
+		}
+		this.undoCapturedPieces[ index ] = opponentPiece;
+		
+		this.hash ^= Zobrist.pieceKey( team, piece.getType(), sourceSquare );
+		removeScore( team, piece.getType(), sourceSquare );
+		this.bitboard.remove( piece );
+		if( PackedMove.isPromotion( move ) ){
+			piece.setType( PackedMove.promotionType( move ) );
+		}
+		relocate( piece, targetSquare );
+		this.hash ^= Zobrist.pieceKey( team, piece.getType(), targetSquare ) ^ Zobrist.BLACK_TO_MOVE;
+		addScore( team, piece.getType(), targetSquare );
+		
+		if( PackedMove.isCastle( move ) ){
+			int rookSource = getCastlingRookSource( targetSquare );
+			int rookTarget = getCastlingRookTarget( targetSquare );
+			Piece rook = this.bitboard.getPiece( rookSource );
+			this.bitboard.remove( rook );
+			relocate( rook, rookTarget );
+			this.hash ^= Zobrist.pieceKey( team, Type.ROOK, rookSource )
+				^ Zobrist.pieceKey( team, Type.ROOK, rookTarget );
+			removeScore( team, Type.ROOK, rookSource );
+			addScore( team, Type.ROOK, rookTarget );
+		}
+		this.attackMaps.update( this.bitboard, getChangedSquares( move, captureSquare ) );
+		
+		int castlingRights = this.castlingRights
+			& CASTLING_RIGHTS_MASKS[ sourceSquare ] & CASTLING_RIGHTS_MASKS[ targetSquare ];
+		this.hash ^= Zobrist.castlingKey( this.castlingRights ) ^ Zobrist.castlingKey( castlingRights );
+		this.castlingRights = castlingRights;
+		
+		// The en passant square is only set if it can be used, so that equal
+		// positions get equal hashes.
+		this.hash ^= Zobrist.enPassantKey( this.enPassantSquare );
+		this.enPassantSquare = NO_SQUARE;
+		if( piece.getType() == Type.PAWN && Math.abs( targetSquare - sourceSquare ) == 16 ){
+			int skippedSquare = (sourceSquare + targetSquare) / 2;
+			Team opponentTeam = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+			if( (Attacks.pawnAttacks( team, skippedSquare ) & this.bitboard.getPieces( opponentTeam, Type.PAWN )) != 0 ){
+				this.enPassantSquare = skippedSquare;
+				this.hash ^= Zobrist.enPassantKey( skippedSquare );
+			}
 		}
 		
-		piece.setRow( targetRow );
-		piece.setCol( targetCol );
+		if( opponentPiece != null || piece.getType() == Type.PAWN ){
+			this.halfmoveClock = 0;
+		} else {
+			this.halfmoveClock++;
+		}
+		if( team == Team.BLACK ){
+			this.fullmoveNumber++;
+		}
 		
-		if( isGameEndConditionReached() ){
+		// The game ends when the opponent has no valid move left, or when a
+		// king is captured.
+		if( opponentPiece != null && opponentPiece.getType() == Type.KING ){
 			this.gameState = GameState.END;
-			System.out.println( piece.getTeam() + " WINS!" );
+			this.endCondition = EndCondition.KING_CAPTURED;
 		} else {
-			this.changeGameState();
+			this.gameState = (this.gameState == GameState.WHITE ? GameState.BLACK : GameState.WHITE);
 			this.lastGameState = this.gameState;
+			updateEndCondition();
 		}
 		
-		return true;
+		return opponentPiece;
+	}
+	
+	/**
+	 * Ends the game if the team to move has no valid move: checkmate if its
+	 * king is attacked, stalemate otherwise. Like after a king capture,
+	 * lastGameState is left at the team that moved last.
+	 */
+	private void updateEndCondition() {
+		if( this.gameState == GameState.END || this.moveGenerator.hasMoves() ){
+			return;
+		}
+		this.endCondition = (isInCheck() ? EndCondition.CHECKMATE : EndCondition.STALEMATE);
+		this.lastGameState = (this.gameState == GameState.WHITE ? GameState.BLACK : GameState.WHITE);
+		this.gameState = GameState.END;
+	}
+	
+	/**
+	 * @param move A packed move.
+	 * @param captureSquare square of the captured piece, the target square
+	 * 		  unless capturing en passant
+	 * @return bitboard of the squares whose piece changes with the move.
+	 */
+	private static long getChangedSquares( int move, int captureSquare ){
+		long changed = (1L << PackedMove.source( move )) | (1L << PackedMove.target( move )) | (1L << captureSquare);
+		if( PackedMove.isCastle( move ) ){
+			int kingTarget = PackedMove.target( move );
+			changed |= (1L << getCastlingRookSource( kingTarget )) | (1L << getCastlingRookTarget( kingTarget ));
+		}
+		return changed;
+	}
+	
+	/**
+	 * Takes back the last move executed by makeMove or movePiece and restores
+	 * the position and game state from before that move.
+	 */
+	public void unmakeMove() {
+		if( this.undoSize == 0 ){
+			throw new IllegalStateException( "No move to take back." );
+		}
+		int index = --this.undoSize;
+		this.position = null;
+		Piece piece = this.undoMovedPieces[ index ];
+		Piece opponentPiece = this.undoCapturedPieces[ index ];
+		int move = this.undoMoves[ index ];
+		
+		this.bitboard.remove( piece );
+		if( PackedMove.isPromotion( move ) ){
+			piece.setType( Type.PAWN );
+		}
+		relocate( piece, PackedMove.source( move ) );
+		
+		if( PackedMove.isCastle( move ) ){
+			Piece rook = this.bitboard.getPiece( getCastlingRookTarget( PackedMove.target( move ) ) );
+			this.bitboard.remove( rook );
+			relocate( rook, getCastlingRookSource( PackedMove.target( move ) ) );
+		}
+		
+		int captureSquare = PackedMove.target( move );
+		if( opponentPiece != null ){
+			opponentPiece.setCaptured( false );
+			this.bitboard.place( opponentPiece );
+			captureSquare = Bitboard.square( opponentPiece.getRow(), opponentPiece.getCol() );
+		}
+		this.attackMaps.update( this.bitboard, getChangedSquares( move, captureSquare ) );
+		
+		this.castlingRights = this.undoCastlingRights[ index ];
+		this.enPassantSquare = this.undoEnPassantSquares[ index ];
+		this.halfmoveClock = this.undoHalfmoveClocks[ index ];
+		if( piece.getTeam() == Team.BLACK ){
+			this.fullmoveNumber--;
+		}
+		this.gameState = this.undoGameStates[ index ];
+		this.lastGameState = this.undoLastGameStates[ index ];
+		this.hash = this.undoHashes[ index ];
+		this.midgameScore = this.undoMidgameScores[ index ];
+		this.endgameScore = this.undoEndgameScores[ index ];
+		this.phase = this.undoPhases[ index ];
+		this.endCondition = this.undoEndConditions[ index ];
+		
+		// Releases references, so that the stack does not keep pieces alive.
+		this.undoMovedPieces[ index ] = null;
+		this.undoCapturedPieces[ index ] = null;
 	}
 	
 	/**
-	 * Checks if the game end condition is met: one color has a captured king.
-	 * @return True if the game end condition is met.
+	 * Sets the location of a piece that is not on the board and puts it there.
 	 */
-	private boolean isGameEndConditionReached() {
-		for( Piece piece : this.pieces ){
-			if( piece.getType() == Type.KING && piece.isCaptured() ){
-				return true;
+	private void relocate( Piece piece, int square ){
+		piece.setRow( Bitboard.row( square ) );
+		piece.setCol( Bitboard.col( square ) );
+		this.bitboard.place( piece );
+	}
+	
+	/**
+	 * @param kingTarget target square of the king when castling
+	 * @return square of the rook before castling
+	 */
+	private static int getCastlingRookSource( int kingTarget ){
+		return Bitboard.col( kingTarget ) == Piece.COL_G ? kingTarget + 1 : kingTarget - 2;
+	}
+	
+	/**
+	 * @param kingTarget target square of the king when castling
+	 * @return square of the rook after castling
+	 */
+	private static int getCastlingRookTarget( int kingTarget ){
+		return Bitboard.col( kingTarget ) == Piece.COL_G ? kingTarget - 1 : kingTarget + 1;
+	}
+	
+	/**
+	 * Packs a move for the current position, setting the flags for captures,
+	 * en passant, castling and promotions. A pawn reaching the last row
+	 * becomes a queen if the move names no promotion type.
+	 * @param move A move of the team whose turn it is.
+	 * @return the packed move (see PackedMove).
+	 */
+	public int encodeMove( Move move ){
+		return encodeMove( Bitboard.square( move.sourceRow, move.sourceCol ),
+			Bitboard.square( move.targetRow, move.targetCol ), move.promotionType );
+	}
+	
+	/**
+	 * Packs a move for the current position, see encodeMove(Move).
+	 * @param sourceSquare index between 0 and 63
+	 * @param targetSquare index between 0 and 63
+	 * @param promotionType type a pawn turns into or null for a queen
+	 * @return the packed move (see PackedMove).
+	 */
+	public int encodeMove( int sourceSquare, int targetSquare, Type promotionType ){
+		int flags = this.bitboard.isOccupied( targetSquare ) ? PackedMove.CAPTURE : 0;
+		Piece piece = this.bitboard.getPiece( sourceSquare );
+		if( piece != null && piece.getType() == Type.KING
+				&& Math.abs( targetSquare - sourceSquare ) == 2 ){
+			flags |= PackedMove.CASTLE;
+		} else if( piece != null && piece.getType() == Type.PAWN ){
+			if( targetSquare == this.enPassantSquare ){
+				flags |= PackedMove.CAPTURE | PackedMove.EN_PASSANT;
+			}
+			int targetRow = Bitboard.row( targetSquare );
+			if( targetRow == Piece.ROW_1 || targetRow == Piece.ROW_8 ){
+				return PackedMove.createPromotion( sourceSquare, targetSquare, flags,
+					promotionType == null ? Type.QUEEN : promotionType );
 			}
 		}
-		return false;
+		return PackedMove.create( sourceSquare, targetSquare, flags );
+	}
+	
+	/**
+	 * @return number of moves that can be taken back with unmakeMove.
+	 */
+	public int getUndoableMoveCount() {
+		return this.undoSize;
+	}
+	
+	private void growUndoStack() {
+		int capacity = this.undoMovedPieces.length * 2;
+		this.undoMovedPieces = Arrays.copyOf( this.undoMovedPieces, capacity );
+		this.undoCapturedPieces = Arrays.copyOf( this.undoCapturedPieces, capacity );
+		this.undoMoves = Arrays.copyOf( this.undoMoves, capacity );
+		this.undoCastlingRights = Arrays.copyOf( this.undoCastlingRights, capacity );
+		this.undoEnPassantSquares = Arrays.copyOf( this.undoEnPassantSquares, capacity );
+		this.undoHalfmoveClocks = Arrays.copyOf( this.undoHalfmoveClocks, capacity );
+		this.undoGameStates = Arrays.copyOf( this.undoGameStates, capacity );
+		this.undoLastGameStates = Arrays.copyOf( this.undoLastGameStates, capacity );
+		this.undoHashes = Arrays.copyOf( this.undoHashes, capacity );
+		this.undoMidgameScores = Arrays.copyOf( this.undoMidgameScores, capacity );
+		this.undoEndgameScores = Arrays.copyOf( this.undoEndgameScores, capacity );
+		this.undoPhases = Arrays.copyOf( this.undoPhases, capacity );
+		this.undoEndConditions = Arrays.copyOf( this.undoEndConditions, capacity );
+	}
+	
+	/**
+	 * Generates all valid moves of the team whose turn it is. Only the squares
+	 * each piece can actually reach are visited.
+	 * @return list of valid moves, empty if the game has ended.
+	 */
+	public List<Move> generateLegalMoves() {
+		return this.moveGenerator.generateMoves();
+	}
+	
+	/**
+	 * Generates all valid moves of the team whose turn it is as packed moves.
+	 * Creates no objects, so it is meant for searches and bulk counting.
+	 * @param moves Cleared and filled with the packed moves (see PackedMove).
+	 */
+	public void generateLegalMoves( MoveList moves ){
+		this.moveGenerator.generateMoves( moves );
+	}
+	
+	/**
+	 * Generates all valid moves of the specified piece.
+	 * @param piece A piece of this game.
+	 * @return list of valid moves, empty if the piece is captured or it is
+	 * 		   not the turn of the piece's team.
+	 */
+	public List<Move> generateLegalMoves( Piece piece ){
+		return this.moveGenerator.generateMoves( piece );
+	}
+	
+	/**
+	 * Checks if the king of the team to move is attacked. Costs one lookup in
+	 * the attack maps.
+	 * @return True, if the team to move is in check; after a checkmate, the
+	 * 		   mated team counts as the team to move.
+	 */
+	public boolean isInCheck() {
+		GameState toMove = this.gameState;
+		if( toMove == GameState.END ){
+			toMove = (this.lastGameState == GameState.WHITE ? GameState.BLACK : GameState.WHITE);
+		}
+		return isInCheck( toMove == GameState.WHITE ? Team.WHITE : Team.BLACK );
+	}
+	
+	/**
+	 * @param team of Piece.Team
+	 * @return True, if a piece of the other team attacks the king of the team.
+	 */
+	public boolean isInCheck( Team team ){
+		Team opponentTeam = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+		return (this.attackMaps.getAttacks( opponentTeam ) & this.bitboard.getPieces( team, Type.KING )) != 0;
 	}
 	
 	/**
@@ -143,14 +794,10 @@ public class ChessGame {
 	 * @return the first not captured piece at the specified location
 	 */
 	public Piece getNonCapturedPieceAtLocation( int row, int col ){
-		for( Piece piece : this.pieces ){
-			if( piece.getRow() == row 
-					&& piece.getCol() == col
-					&& piece.isCaptured() == false ){
-				return piece;
-			}
+		if( ! Bitboard.isOnBoard( row, col ) ){
+			return null;
 		}
-		return null;
+		return this.bitboard.getPiece( Bitboard.square( row, col ) );
 	}
 	
 	/**
@@ -163,15 +810,8 @@ public class ChessGame {
 	 * 		   specified color.
 	 */
 	public boolean isNonCapturedPieceAtLocation( Team team, int row, int col ){
-		for( Piece piece : this.pieces ){
-			if( piece.getRow() == row
-					&& piece.getCol() == col
-					&& piece.isCaptured() == false
-					&& piece.getTeam() == team ){
-				return true;
-			}
-		}
-		return false;
+		return Bitboard.isOnBoard( row, col )
+				&& this.bitboard.isOccupied( team, Bitboard.square( row, col ) );
 	}
 	
 	/**
@@ -182,14 +822,8 @@ public class ChessGame {
 	 * @return True, if the location contains a non captured piece.
 	 */
 	public boolean isNonCapturedPieceAtLocation( int row, int col ){
-		for( Piece piece : this.pieces ){
-			if( piece.getRow() == row
-					&& piece.getCol() == col
-					&& piece.isCaptured() == false ){
-				return true;
-			}
-		}
-		return false;
+		return Bitboard.isOnBoard( row, col )
+				&& this.bitboard.isOccupied( Bitboard.square( row, col ) );
 	}
 	
 	// ::: GETTERS & SETTERS :::
@@ -198,49 +832,134 @@ public class ChessGame {
 		return this.gameState;
 	}
 	public void setGameState(GameState gameState) {
+		this.position = null;
+		if( isTeamSwitch( this.gameState, gameState ) ){
+			this.hash ^= Zobrist.BLACK_TO_MOVE;
+		}
 		this.gameState = gameState;
 	}
 	public GameState getLastGameState() {
 		return lastGameState;
 	}
+	/**
+	 * @return the live pieces of the game, changed in place by every move.
+	 * 		   Readers on other threads should use getPosition() instead.
+	 */
 	public List<Piece> getPieces() {
 		return this.pieces;
 	}
+	/**
+	 * Returns an immutable snapshot of the current position. It is created
+	 * at the first call after a change and then returned again until the
+	 * next move, so asking for it once per move costs one small copy.
+	 * Call it on the thread that changes the game and hand the snapshot to
+	 * other threads.
+	 * @return snapshot of the current position.
+	 */
+	public Position getPosition() {
+		if( this.position == null ){
+			this.position = new Position( this );
+		}
+		return this.position;
+	}
+	/**
+	 * @return 64 bit Zobrist hash of the current position (pieces, team to
+	 * 		   move, castling rights and en passant square), see Zobrist.
+	 */
+	public long positionHash() {
+		return this.hash;
+	}
+	/**
+	 * @return static evaluation of the current position in centipawns,
+	 * 		   positive if white is better: material and piece-square values,
+	 * 		   tapered by the phase (see PieceSquareTables). Kept up to date
+	 * 		   with every move, so it costs no scan of the board.
+	 */
+	public int getScore() {
+		return PieceSquareTables.taper( this.midgameScore, this.endgameScore, this.phase );
+	}
+	/**
+	 * @return sum of the phase weights of the pieces on the board, from
+	 * 		   PieceSquareTables.MAX_PHASE at the start to 0 with only kings
+	 * 		   and pawns.
+	 */
+	public int getPhase() {
+		return this.phase;
+	}
+	/**
+	 * @return combination of the CASTLING_.. bits that are still allowed.
+	 */
+	public int getCastlingRights() {
+		return this.castlingRights;
+	}
+	/**
+	 * @return square a pawn can be captured on en passant, or NO_SQUARE.
+	 */
+	public int getEnPassantSquare() {
+		return this.enPassantSquare;
+	}
+	/**
+	 * @return number of plies since the last capture or pawn move.
+	 */
+	public int getHalfmoveClock() {
+		return this.halfmoveClock;
+	}
+	/**
+	 * @return number of the current move, starting at 1.
+	 */
+	public int getFullmoveNumber() {
+		return this.fullmoveNumber;
+	}
+	public Bitboard getBitboard() {
+		return this.bitboard;
+	}
 	public MoveValidator getMoveValidator() {
 		return moveValidator;
 	}
+	/**
+	 * @return the squares attacked by each team, up to date with the
+	 * 		   current position.
+	 */
+	public AttackMaps getAttackMaps() {
+		return this.attackMaps;
+	}
+	/**
+	 * @return why the game has ended, EndCondition.NONE while it is running.
+	 */
+	public EndCondition getEndCondition() {
+		return this.endCondition;
+	}
 
 	/**
 	 * Switches between the different game states.
 	 */
 	public void changeGameState() {
-		GameState lastGameState = this.gameState;
-		
-		// Checks if game end condition has been reached.
-		if( this.isGameEndConditionReached() ){
-			if( this.gameState == GameState.BLACK ){
-				System.out.println("Game over! Black won!");
-			} else if( this.gameState == GameState.WHITE ){
-				System.out.println("Game over! White won!");
-			} else {
-				throw new IllegalStateException( "Internal error! GameState shouldn't be END yet.");
-			}
-			this.gameState = GameState.END;
-			System.out.println( lastGameState + " WINS!" );
-		}
-		
+		this.position = null;
 		switch( this.gameState ){
 		case BLACK:
 			this.gameState = GameState.WHITE;
+			this.hash ^= Zobrist.BLACK_TO_MOVE;
 			break;
 		case WHITE:
 			this.gameState = GameState.BLACK;
+			this.hash ^= Zobrist.BLACK_TO_MOVE;
 			break;
 		case END:
-			break;
+			return;
 		default:
 			throw new IllegalStateException( "Unknown game state: " + this.gameState );
 		}
+		this.lastGameState = this.gameState;
+		// The team that gets the turn may have no valid move.
+		updateEndCondition();
+	}
+	
+	/**
+	 * @return True, if one of the states is WHITE and the other one BLACK.
+	 */
+	private static boolean isTeamSwitch( GameState oldState, GameState newState ){
+		return oldState == GameState.WHITE && newState == GameState.BLACK
+			|| oldState == GameState.BLACK && newState == GameState.WHITE;
 	}
 	
 }
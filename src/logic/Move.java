@@ -1,15 +1,76 @@
 package logic;
 
+import logic.Piece.Type;
+
 public class Move {
 	public int sourceRow;
 	public int sourceCol;
 	public int targetRow;
 	public int targetCol;
+	public Type promotionType; // type a pawn turns into, null for a queen or no promotion
 	
 	public Move( int sourceRow, int sourceCol, int targetRow, int targetCol ){
+		this( sourceRow, sourceCol, targetRow, targetCol, null );
+	}
+	
+	public Move( int sourceRow, int sourceCol, int targetRow, int targetCol, Type promotionType ){
 		this.sourceRow = sourceRow;
 		this.sourceCol = sourceCol;
 		this.targetRow = targetRow;
 		this.targetCol = targetCol;
+		this.promotionType = promotionType;
+	}
+	
+	/**
+	 * Parses a move in coordinate notation (e.g. "e2e4", "e2-e4" or "e7e8q").
+	 * @param str The move string.
+	 * @return the parsed move.
+	 */
+	public static Move parse( String str ){
+		String normalized = str.trim().replace( "-", "" ).toLowerCase();
+		if( normalized.length() != 4 && normalized.length() != 5 ){
+			throw new IllegalArgumentException( "invalid move: " + str );
+		}
+		int sourceCol = normalized.charAt( 0 ) - 'a';
+		int sourceRow = normalized.charAt( 1 ) - '1';
+		int targetCol = normalized.charAt( 2 ) - 'a';
+		int targetRow = normalized.charAt( 3 ) - '1';
+		if( ! Bitboard.isOnBoard( sourceRow, sourceCol )
+				|| ! Bitboard.isOnBoard( targetRow, targetCol ) ){
+			throw new IllegalArgumentException( "invalid move: " + str );
+		}
+		Type promotionType = null;
+		if( normalized.length() == 5 ){
+			switch( normalized.charAt( 4 ) ){
+			case 'q':
+				promotionType = Type.QUEEN;
+				break;
+			case 'r':
+				promotionType = Type.ROOK;
+				break;
+			case 'b':
+				promotionType = Type.BISHOP;
+				break;
+			case 'n':
+				promotionType = Type.KNIGHT;
+				break;
+			default:
+				throw new IllegalArgumentException( "invalid move: " + str );
+			}
+		}
+		return new Move( sourceRow, sourceCol, targetRow, targetCol, promotionType );
+	}
+	
+	/**
+	 * @return the move in coordinate notation (e.g. "e2e4" or "e7e8q").
+	 */
+	@Override
+	public String toString() {
+		String result = "" + (char)('a' + sourceCol) + (char)('1' + sourceRow)
+			+ (char)('a' + targetCol) + (char)('1' + targetRow);
+		if( promotionType != null ){
+			result += promotionType == Type.KNIGHT ? 'n' : Character.toLowerCase( promotionType.name().charAt( 0 ) );
+		}
+		return result;
 	}
 }
@@ -0,0 +1,413 @@
+package logic;
+
+import java.util.List;
+
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Generates the moves that MoveValidator accepts, without probing every
+ * square of the board. Each piece type only visits the squares it can reach:
+ * knight and king moves are read from offset tables, rooks, bishops and queens
+ * follow their rays up to the first blocking piece and pawns check their
+ * pushes and diagonal captures.
+ *
+ * Moves are generated as packed ints (see PackedMove) into a MoveList, so
+ * generating creates no objects. The methods returning List<Move> are meant
+ * for the GUI.
+ *
+ * Only legal moves are generated; none is made and tested afterwards. Before
+ * generating, the pieces giving check and the own pieces pinned to the king
+ * are looked up once. The king goes to squares the opponent does not attack
+ * (see AttackMaps), a pinned piece stays on the line through its king and,
+ * in check, the other pieces may only capture the checking piece or block
+ * it. In double check only the king moves. En passant captures, which remove
+ * two pieces from a row, are the one kind of move still tested.
+ */
+public class MoveGenerator {
+
+	// Types a pawn can turn into, the most valuable first.
+	private static final Type[] PROMOTION_TYPES = { Type.QUEEN, Type.ROOK, Type.BISHOP, Type.KNIGHT };
+	
+	private static final int WHITE_KING_SQUARE = Bitboard.square( Piece.ROW_1, Piece.COL_E );
+	private static final int BLACK_KING_SQUARE = Bitboard.square( Piece.ROW_8, Piece.COL_E );
+	
+	private ChessGame chessGame;
+	// Used by the methods returning List<Move>.
+	private final MoveList buffer = new MoveList();
+	// Used by hasMoves.
+	private final MoveList pieceMoves = new MoveList();
+	// :: TEAM TO MOVE :: set by prepare()
+	private int kingSquare;
+	// Squares the king may not go to.
+	private long kingDanger;
+	// Opponent pieces giving check.
+	private long checkers;
+	// Targets of the other pieces: all squares when not in check, otherwise
+	// the checking piece and the squares between it and the king.
+	private long checkMask;
+	// Own pieces that would uncover an attack on the king when leaving the
+	// line to it.
+	private long pinned;
+
+	public MoveGenerator( ChessGame chessGame ){
+		this.chessGame = chessGame;
+	}
+
+	/**
+	 * Generates all valid moves of the team whose turn it is.
+	 * @param moves Cleared and filled with the packed moves, stays empty if
+	 * 		  the game has ended.
+	 */
+	public void generateMoves( MoveList moves ){
+		moves.clear();
+		Team team = getTeamToMove();
+		if( team == null ){
+			return;
+		}
+
+		Bitboard bitboard = this.chessGame.getBitboard();
+		prepare( team );
+		// In double check, only the king can move.
+		long movingPieces = (this.checkMask == 0 ? bitboard.getPieces( team, Type.KING ) : bitboard.getPieces( team ));
+		while( movingPieces != 0 ){
+			int square = Long.numberOfTrailingZeros( movingPieces );
+			movingPieces &= movingPieces - 1;
+			addMoves( bitboard.getPiece( square ), moves );
+		}
+	}
+	
+	/**
+	 * Checks if the team whose turn it is has at least one valid move. Stops
+	 * at the first piece that can move, starting with the king, so it
+	 * usually costs a few lookups only.
+	 * @return False, if the team is checkmated or stalemated or the game has
+	 * 		   ended.
+	 */
+	public boolean hasMoves() {
+		Team team = getTeamToMove();
+		if( team == null ){
+			return false;
+		}
+		Bitboard bitboard = this.chessGame.getBitboard();
+		long king = bitboard.getPieces( team, Type.KING );
+		long ownPieces = bitboard.getPieces( team ) & ~king;
+		this.pieceMoves.clear();
+		if( king != 0 ){
+			// Usually the king has a free square the opponent does not attack.
+			int kingSquare = Long.numberOfTrailingZeros( king );
+			Team opponentTeam = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+			long opponentAttacks = this.chessGame.getAttackMaps().getAttacks( opponentTeam );
+			if( (opponentAttacks & king) == 0
+					&& (Attacks.kingAttacks( kingSquare ) & ~bitboard.getPieces( team ) & ~opponentAttacks) != 0 ){
+				return true;
+			}
+		}
+		prepare( team );
+		if( king != 0 ){
+			addMoves( bitboard.getPiece( this.kingSquare ), this.pieceMoves );
+			if( ! this.pieceMoves.isEmpty() ){
+				return true;
+			}
+		}
+		if( this.checkMask == 0 ){
+			return false;
+		}
+		while( ownPieces != 0 ){
+			int square = Long.numberOfTrailingZeros( ownPieces );
+			ownPieces &= ownPieces - 1;
+			addMoves( bitboard.getPiece( square ), this.pieceMoves );
+			if( ! this.pieceMoves.isEmpty() ){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Generates all valid moves of the team whose turn it is.
+	 * @return list of valid moves, empty if the game has ended.
+	 */
+	public List<Move> generateMoves() {
+		generateMoves( this.buffer );
+		return this.buffer.toMoves();
+	}
+
+	/**
+	 * Generates all valid moves of the specified piece.
+	 * @param piece A piece of the game.
+	 * @return list of valid moves, empty if the piece is captured or it is
+	 * 		   not the turn of the piece's team.
+	 */
+	public List<Move> generateMoves( Piece piece ){
+		this.buffer.clear();
+		if( ! piece.isCaptured() && piece.getTeam() == getTeamToMove() ){
+			prepare( piece.getTeam() );
+			addMoves( piece, this.buffer );
+		}
+		return this.buffer.toMoves();
+	}
+
+	private Team getTeamToMove() {
+		switch( this.chessGame.getGameState() ){
+		case WHITE:
+			return Team.WHITE;
+		case BLACK:
+			return Team.BLACK;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Looks up the checking pieces, the pinned pieces and the squares the king
+	 * may not go to, for addMoves.
+	 * @param team The team whose turn it is.
+	 */
+	private void prepare( Team team ){
+		Bitboard bitboard = this.chessGame.getBitboard();
+		Team opponentTeam = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+		long king = bitboard.getPieces( team, Type.KING );
+		this.kingDanger = this.chessGame.getAttackMaps().getAttacks( opponentTeam );
+		this.checkers = 0L;
+		this.checkMask = -1L;
+		this.pinned = 0L;
+		if( king == 0 ){
+			this.kingSquare = ChessGame.NO_SQUARE;
+			return;
+		}
+		int square = Long.numberOfTrailingZeros( king );
+		this.kingSquare = square;
+		long occupied = bitboard.getOccupied();
+		long rooks = bitboard.getPieces( opponentTeam, Type.ROOK ) | bitboard.getPieces( opponentTeam, Type.QUEEN );
+		long bishops = bitboard.getPieces( opponentTeam, Type.BISHOP ) | bitboard.getPieces( opponentTeam, Type.QUEEN );
+		
+		if( (this.kingDanger & king) != 0 ){
+			long sliders = (Attacks.rookAttacks( square, occupied ) & rooks)
+				| (Attacks.bishopAttacks( square, occupied ) & bishops);
+			this.checkers = sliders
+				| (Attacks.knightAttacks( square ) & bitboard.getPieces( opponentTeam, Type.KNIGHT ))
+				| (Attacks.pawnAttacks( team, square ) & bitboard.getPieces( opponentTeam, Type.PAWN ));
+			if( Long.bitCount( this.checkers ) == 1 ){
+				this.checkMask = this.checkers | Attacks.between( square, Long.numberOfTrailingZeros( this.checkers ) );
+			} else {
+				this.checkMask = 0L;
+			}
+			// The king hides the squares behind it from a checking slider.
+			while( sliders != 0 ){
+				int slider = Long.numberOfTrailingZeros( sliders );
+				sliders &= sliders - 1;
+				this.kingDanger |= Attacks.line( square, slider ) & ~(1L << slider);
+			}
+		}
+		
+		// A piece is pinned if it is the only one between the king and a
+		// slider that sees the king through the own pieces.
+		long opponentPieces = bitboard.getPieces( opponentTeam );
+		long snipers = (Attacks.rookAttacks( square, opponentPieces ) & rooks)
+			| (Attacks.bishopAttacks( square, opponentPieces ) & bishops);
+		while( snipers != 0 ){
+			int sniper = Long.numberOfTrailingZeros( snipers );
+			snipers &= snipers - 1;
+			long blockers = Attacks.between( square, sniper ) & occupied;
+			if( blockers != 0 && (blockers & (blockers - 1)) == 0 ){
+				this.pinned |= blockers & bitboard.getPieces( team );
+			}
+		}
+	}
+	
+	/**
+	 * Adds the moves of a piece that belongs to the team whose turn it is.
+	 * prepare() must have been called for the position.
+	 */
+	private void addMoves( Piece piece, MoveList moves ){
+		Bitboard bitboard = this.chessGame.getBitboard();
+		Team team = piece.getTeam();
+		int square = Bitboard.square( piece.getRow(), piece.getCol() );
+		long occupied = bitboard.getOccupied();
+		long notOwnPieces = ~bitboard.getPieces( team );
+		long allowed = this.checkMask;
+		if( (this.pinned & (1L << square)) != 0 ){
+			allowed &= Attacks.line( this.kingSquare, square );
+		}
+
+		long targets;
+		switch( piece.getType() ){
+		case BISHOP:
+			targets = Attacks.bishopAttacks( square, occupied ) & notOwnPieces;
+			break;
+		case KING:
+			if( this.checkers == 0 ){
+				addCastlingMoves( team, square, bitboard, this.kingDanger, moves );
+			}
+			allowed = ~this.kingDanger;
+			targets = Attacks.kingAttacks( square ) & notOwnPieces;
+			break;
+		case KNIGHT:
+			targets = Attacks.knightAttacks( square ) & notOwnPieces;
+			break;
+		case PAWN:
+			addPawnMoves( team, square, bitboard, allowed, moves );
+			return;
+		case QUEEN:
+			targets = Attacks.queenAttacks( square, occupied ) & notOwnPieces;
+			break;
+		case ROOK:
+			targets = Attacks.rookAttacks( square, occupied ) & notOwnPieces;
+			break;
+		default:
+			throw new IllegalStateException( "Unknown piece type: " + piece.getType() );
+		}
+		targets &= allowed;
+
+		while( targets != 0 ){
+			int target = Long.numberOfTrailingZeros( targets );
+			targets &= targets - 1;
+			moves.add( PackedMove.create( square, target,
+				(occupied & (1L << target)) != 0 ? PackedMove.CAPTURE : 0 ) );
+		}
+	}
+
+	/**
+	 * The pawn moves one square forward, or two from its start row, onto
+	 * unoccupied squares and captures diagonally forward, also en passant.
+	 * On the last row it turns into a queen, rook, bishop or knight.
+	 * @param allowed bitboard of the targets that keep the own king safe,
+	 * 		  apart from en passant
+	 */
+	private void addPawnMoves( Team team, int square, Bitboard bitboard, long allowed, MoveList moves ){
+		long empty = ~bitboard.getOccupied();
+		int row = Bitboard.row( square );
+		long pushes = 0L;
+		if( team == Team.WHITE ){
+			if( row < Piece.ROW_8 ){
+				pushes = (1L << (square + 8)) & empty;
+				if( pushes != 0 && row == Piece.ROW_2 ){
+					pushes |= (pushes << 8) & empty;
+				}
+			}
+		} else {
+			if( row > Piece.ROW_1 ){
+				pushes = (1L << (square - 8)) & empty;
+				if( pushes != 0 && row == Piece.ROW_7 ){
+					pushes |= (pushes >>> 8) & empty;
+				}
+			}
+		}
+		Team opponentTeam = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+		long attacks = Attacks.pawnAttacks( team, square );
+		long captures = attacks & bitboard.getPieces( opponentTeam ) & allowed;
+		pushes &= allowed;
+		
+		addPawnMoves( square, pushes, 0, moves );
+		addPawnMoves( square, captures, PackedMove.CAPTURE, moves );
+		
+		// Removing two pawns from a row may uncover an attack on the king, so
+		// en passant captures are always tested.
+		int enPassantSquare = this.chessGame.getEnPassantSquare();
+		if( enPassantSquare != ChessGame.NO_SQUARE && (attacks & (1L << enPassantSquare)) != 0
+				&& isKingSafeAfter( team, square, enPassantSquare,
+					(team == Team.WHITE ? enPassantSquare - 8 : enPassantSquare + 8), bitboard ) ){
+			moves.add( PackedMove.create( square, enPassantSquare, PackedMove.CAPTURE | PackedMove.EN_PASSANT ) );
+		}
+	}
+	
+	private static void addPawnMoves( int square, long targets, int flags, MoveList moves ){
+		while( targets != 0 ){
+			int target = Long.numberOfTrailingZeros( targets );
+			targets &= targets - 1;
+			int targetRow = Bitboard.row( target );
+			if( targetRow == Piece.ROW_8 || targetRow == Piece.ROW_1 ){
+				for( Type type : PROMOTION_TYPES ){
+					moves.add( PackedMove.createPromotion( square, target, flags, type ) );
+				}
+			} else {
+				moves.add( PackedMove.create( square, target, flags ) );
+			}
+		}
+	}
+	
+	/**
+	 * The king moves two squares towards a rook and the rook jumps over it, if
+	 * neither has moved yet, the squares between them are free and the king
+	 * does not stand on, pass or reach an attacked square.
+	 */
+	private void addCastlingMoves( Team team, int square, Bitboard bitboard, long opponentAttacks, MoveList moves ){
+		int rights = this.chessGame.getCastlingRights();
+		int kingside, queenside;
+		if( team == Team.WHITE ){
+			kingside = rights & ChessGame.CASTLING_WHITE_KINGSIDE;
+			queenside = rights & ChessGame.CASTLING_WHITE_QUEENSIDE;
+			if( square != WHITE_KING_SQUARE ){
+				return;
+			}
+		} else {
+			kingside = rights & ChessGame.CASTLING_BLACK_KINGSIDE;
+			queenside = rights & ChessGame.CASTLING_BLACK_QUEENSIDE;
+			if( square != BLACK_KING_SQUARE ){
+				return;
+			}
+		}
+		if( kingside != 0 && isCastlingPossible( team, square, square + 3, bitboard, opponentAttacks ) ){
+			moves.add( PackedMove.create( square, square + 2, PackedMove.CASTLE ) );
+		}
+		if( queenside != 0 && isCastlingPossible( team, square, square - 4, bitboard, opponentAttacks ) ){
+			moves.add( PackedMove.create( square, square - 2, PackedMove.CASTLE ) );
+		}
+	}
+	
+	/**
+	 * Checks the squares for castling; the castling right is checked by the
+	 * caller.
+	 * @param team The castling team.
+	 * @param kingSquare square of the king, e1 or e8
+	 * @param rookSquare square of the rook in the corner
+	 * @param bitboard The board.
+	 * @param opponentAttacks squares attacked by the other team (see
+	 * 		  AttackMaps)
+	 * @return True, if the king may castle with that rook.
+	 */
+	static boolean isCastlingPossible( Team team, int kingSquare, int rookSquare, Bitboard bitboard, long opponentAttacks ){
+		Piece rook = bitboard.getPiece( rookSquare );
+		if( rook == null || rook.getType() != Type.ROOK || rook.getTeam() != team ){
+			return false;
+		}
+		int step = rookSquare > kingSquare ? 1 : -1;
+		for( int square = kingSquare + step; square != rookSquare; square += step ){
+			if( bitboard.isOccupied( square ) ){
+				return false;
+			}
+		}
+		for( int square = kingSquare; square != kingSquare + 3 * step; square += step ){
+			if( (opponentAttacks & (1L << square)) != 0 ){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks if the own king is safe after a move, without making it. The
+	 * board is not changed, so this may be called while validating.
+	 * @param team The moving team.
+	 * @param source The source square.
+	 * @param target The target square.
+	 * @param captureSquare The square of the captured piece: the target, or
+	 * 		  the square behind it for an en passant capture.
+	 * @param bitboard The board before the move.
+	 * @return True, if no opponent piece attacks the king after the move or
+	 * 		   the team has no king.
+	 */
+	static boolean isKingSafeAfter( Team team, int source, int target, int captureSquare, Bitboard bitboard ){
+		long king = bitboard.getPieces( team, Type.KING );
+		if( king == 0 ){
+			return true;
+		}
+		int kingSquare = ((king & (1L << source)) != 0 ? target : Long.numberOfTrailingZeros( king ));
+		long captured = 1L << captureSquare;
+		long occupied = (bitboard.getOccupied() & ~(1L << source) & ~captured) | (1L << target);
+		Team opponentTeam = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+		return ! bitboard.isAttacked( opponentTeam, kingSquare, occupied, captured );
+	}
+
+}
@@ -0,0 +1,105 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable list of packed moves (see PackedMove). Meant to be allocated once
+ * and reused with clear, e.g. one list per search ply, so that generating
+ * moves creates no garbage.
+ */
+public class MoveList {
+	
+	// More than the maximum number of moves in any chess position (218).
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	private int[] moves;
+	private int size = 0;
+	
+	public MoveList() {
+		this( DEFAULT_CAPACITY );
+	}
+	
+	public MoveList( int capacity ){
+		this.moves = new int[ Math.max( 1, capacity ) ];
+	}
+	
+	public void add( int move ){
+		if( this.size == this.moves.length ){
+			this.moves = Arrays.copyOf( this.moves, this.size * 2 );
+		}
+		this.moves[ this.size++ ] = move;
+	}
+	
+	public int get( int index ){
+		if( index >= this.size ){
+			throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + this.size );
+		}
+		return this.moves[ index ];
+	}
+	
+	public void set( int index, int move ){
+		if( index >= this.size ){
+			throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + this.size );
+		}
+		this.moves[ index ] = move;
+	}
+	
+	/**
+	 * Exchanges two moves, e.g. to sort the list by move ordering scores.
+	 */
+	public void swap( int index1, int index2 ){
+		int move = get( index1 );
+		this.moves[ index1 ] = get( index2 );
+		this.moves[ index2 ] = move;
+	}
+	
+	public boolean contains( int move ){
+		for( int i = 0; i < this.size; i++ ){
+			if( this.moves[ i ] == move ){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes all moves but keeps the capacity.
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	/**
+	 * @return the moves as Move objects, e.g. for the GUI.
+	 */
+	public List<Move> toMoves() {
+		List<Move> result = new ArrayList<Move>( this.size );
+		for( int i = 0; i < this.size; i++ ){
+			result.add( PackedMove.toMove( this.moves[ i ] ) );
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder( "[" );
+		for( int i = 0; i < this.size; i++ ){
+			if( i > 0 ){
+				result.append( ", " );
+			}
+			result.append( PackedMove.toString( this.moves[ i ] ) );
+		}
+		return result.append( "]" ).toString();
+	}
+	
+}
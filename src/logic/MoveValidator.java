@@ -1,268 +1,402 @@
 package logic;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Validates moves against the current position of a chess game.
+ * 
+ * The validator keeps no state between or during calls: everything a check
+ * needs is passed along as method parameters. A single instance can
+ * therefore be shared by any number of threads validating moves against the
+ * same position at the same time, as long as no move is executed meanwhile.
+ * Validation does not allocate any objects.
+ */
 public class MoveValidator {
 	
-	ChessGame chessGame;
-	Piece sourcePiece;
-	Piece targetPiece;
+	/**
+	 * Reason why a move is not valid. NONE means the move is valid.
+	 */
+	public static enum Rejection {
+		NONE( "valid move" ),
+		NO_SOURCE_PIECE( "no source piece" ),
+		NOT_TEAMS_TURN( "not the turn of the piece's team" ),
+		TARGET_OFF_BOARD( "target location not on the board" ),
+		TARGET_OCCUPIED( "target location not free and not captureable" ),
+		PIECES_BETWEEN( "pieces between source and target" ),
+		KNIGHT_NOT_L_SHAPED( "knight can only move in an L-shape" ),
+		KING_TOO_FAR( "king can only move one square" ),
+		ROOK_NOT_STRAIGHT( "rook can't move diagonally" ),
+		BISHOP_NOT_DIAGONAL( "bishop can't move straight" ),
+		QUEEN_NOT_STRAIGHT_OR_DIAGONAL( "queen can only move straight or diagonally" ),
+		PAWN_WRONG_DISTANCE( "pawn can only move one row forward, or two from its start row" ),
+		PAWN_WRONG_COLUMN( "pawn can only move straight or capture diagonally" ),
+		CASTLING_NOT_ALLOWED( "king can only castle if neither it nor the rook has moved, "
+			+ "the squares between them are free and the king passes no attacked square" ),
+		INVALID_PROMOTION( "only a pawn reaching the last row turns into a queen, rook, bishop or knight" ),
+		FLAGS_MISMATCH( "move flags don't match the position" ),
+		KING_IN_CHECK( "move would leave the own king in check" ),
+		GAME_OVER( "the game has ended" );
+		
+		private final String description;
+		
+		private Rejection( String description ){
+			this.description = description;
+		}
+		
+		public String getDescription() {
+			return description;
+		}
+	}
+	
+	private final ChessGame chessGame;
 	
-	int sourceRow;
-	int sourceCol;
-	int targetRow;
-	int targetCol;
+	// Number of validations per result, indexed by Rejection.ordinal().
+	// Null while counting is disabled.
+	private volatile AtomicLongArray rejectionCounts;
 	
 	public MoveValidator( ChessGame chessGame ){
 		this.chessGame = chessGame;
 	}
 	
 	public boolean isMoveValid( Move move ){
-		sourceRow = move.sourceRow;
-		sourceCol = move.sourceCol;
-		targetRow = move.targetRow;
-		targetCol = move.targetCol;
-		
-		sourcePiece = chessGame.getNonCapturedPieceAtLocation( sourceRow, sourceCol );
-		targetPiece = chessGame.getNonCapturedPieceAtLocation( targetRow, targetCol );
+		return validateMove( move ) == Rejection.NONE;
+	}
+	
+	/**
+	 * Checks whether moving the piece on the source location to the target
+	 * location is valid.
+	 * @param sourceRow of Piece.ROW_..
+	 * @param sourceCol of Piece.COL_..
+	 * @param targetRow of Piece.ROW_..
+	 * @param targetCol of Piece.COL_..
+	 * @return True, if the move is valid.
+	 */
+	public boolean isMoveValid( int sourceRow, int sourceCol, int targetRow, int targetCol ){
+		return validateMove( sourceRow, sourceCol, targetRow, targetCol ) == Rejection.NONE;
+	}
+	
+	public Rejection validateMove( Move move ){
+		Rejection result = validate( move.sourceRow, move.sourceCol, move.targetRow, move.targetCol );
+		if( result == Rejection.NONE && move.promotionType != null
+				&& ! isPromotion( move.sourceRow, move.sourceCol, move.targetRow, move.promotionType ) ){
+			result = Rejection.INVALID_PROMOTION;
+		}
+		return count( result );
+	}
+	
+	/**
+	 * Validates a packed move (see PackedMove). Besides the squares, the flags
+	 * must match the position, e.g. a capture must be flagged as one.
+	 * @param move The packed move.
+	 * @return Rejection.NONE if the move is valid, otherwise the reason why
+	 * 		   it is not.
+	 */
+	public Rejection validateMove( int move ){
+		int source = PackedMove.source( move );
+		int target = PackedMove.target( move );
+		Rejection result = validate( Bitboard.row( source ), Bitboard.col( source ),
+			Bitboard.row( target ), Bitboard.col( target ) );
+		if( result == Rejection.NONE ){
+			Type promotionType = PackedMove.promotionType( move );
+			if( promotionType != null && ! isPromotion( Bitboard.row( source ), Bitboard.col( source ),
+					Bitboard.row( target ), promotionType ) ){
+				result = Rejection.INVALID_PROMOTION;
+			} else if( move != chessGame.encodeMove( source, target, promotionType ) ){
+				result = Rejection.FLAGS_MISMATCH;
+			}
+		}
+		return count( result );
+	}
+	
+	/**
+	 * Validates moving the piece on the source location to the target location.
+	 * @param sourceRow of Piece.ROW_..
+	 * @param sourceCol of Piece.COL_..
+	 * @param targetRow of Piece.ROW_..
+	 * @param targetCol of Piece.COL_..
+	 * @return Rejection.NONE if the move is valid, otherwise the reason why
+	 * 		   it is not.
+	 */
+	public Rejection validateMove( int sourceRow, int sourceCol, int targetRow, int targetCol ){
+		return count( validate( sourceRow, sourceCol, targetRow, targetCol ) );
+	}
+	
+	private Rejection count( Rejection result ){
+		AtomicLongArray counts = this.rejectionCounts;
+		if( counts != null ){
+			counts.incrementAndGet( result.ordinal() );
+		}
+		return result;
+	}
+	
+	/**
+	 * Checks if a pawn moving to the target row may turn into the type.
+	 */
+	private boolean isPromotion( int sourceRow, int sourceCol, int targetRow, Type promotionType ){
+		Piece piece = chessGame.getNonCapturedPieceAtLocation( sourceRow, sourceCol );
+		return piece.getType() == Type.PAWN
+			&& (targetRow == Piece.ROW_8 || targetRow == Piece.ROW_1)
+			&& promotionType != Type.PAWN && promotionType != Type.KING;
+	}
+	
+	private Rejection validate( int sourceRow, int sourceCol, int targetRow, int targetCol ){
+		Piece sourcePiece = chessGame.getNonCapturedPieceAtLocation( sourceRow, sourceCol );
+		Piece targetPiece = chessGame.getNonCapturedPieceAtLocation( targetRow, targetCol );
 		
 		// If source piece does not exist, returns null.
-		if( this.sourcePiece == null ){
-			System.out.println("no source piece");
-			return false;
+		if( sourcePiece == null ){
+			return Rejection.NO_SOURCE_PIECE;
 		}
 		
-		// Source piece has right color?
+		// Source piece has right color? After the game has ended no team has
+		// the turn.
 		if( ! chessGame.getGameState().equals( sourcePiece.getTeam() ) ){
-			return false;
+			return chessGame.getGameState() == ChessGame.GameState.END ? Rejection.GAME_OVER : Rejection.NOT_TEAMS_TURN;
 		}
 		
 		// Checks if target location is within boundaries.
 		if( targetRow < Piece.ROW_1 || targetRow > Piece.ROW_8
 				|| targetCol < Piece.COL_A || targetCol > Piece.COL_H ){
-			return false;
+			return Rejection.TARGET_OFF_BOARD;
 		}
 		
 		// Validates piece movement rules.
-		boolean validPieceMove = false;
+		Rejection result;
 		switch( sourcePiece.getType() ){
 		case BISHOP:
-			validPieceMove = isValidBishopMove();
+			result = validateBishopMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
 			break;
 		case KING:
-			validPieceMove = isValidKingMove();
+			result = validateKingMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
 			break;
 		case KNIGHT:
-			validPieceMove = isValidKnightMove();
+			result = validateKnightMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
 			break;
 		case PAWN:
-			validPieceMove = isValidPawnMove();
+			result = validatePawnMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
 			break;
 		case QUEEN:
-			validPieceMove = isValidQueenMove();
+			result = validateQueenMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
 			break;
 		case ROOK:
-			validPieceMove = isValidRookMove();
+			result = validateRookMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
 			break;
 		default:
-			break;
-		}
-		if( ! validPieceMove ){
-			return false;
+			throw new IllegalStateException( "Unknown piece type: " + sourcePiece.getType() );
 		}
 		
-		// TODO: Handle stalemate and checkmate.
-		
-		return true;
+		// The own king must not be attacked after the move. Castling already
+		// checked the squares of the king.
+		if( result == Rejection.NONE && ! isKingSafeAfter( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol ) ){
+			result = Rejection.KING_IN_CHECK;
+		}
+		return result;
+	}
+	
+	private boolean isKingSafeAfter( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
+		Team team = sourcePiece.getTeam();
+		int source = Bitboard.square( sourceRow, sourceCol );
+		int target = Bitboard.square( targetRow, targetCol );
+		int captureSquare = target;
+		if( sourcePiece.getType() == Type.PAWN && targetPiece == null && sourceCol != targetCol ){
+			// en passant: the captured pawn stands behind the target
+			captureSquare = (team == Team.WHITE ? target - 8 : target + 8);
+		}
+		return MoveGenerator.isKingSafeAfter( team, source, target, captureSquare, chessGame.getBitboard() );
 	}
 	
-	private boolean isTargetLocationCaptureable() {
+	private boolean isTargetLocationCaptureable( Piece sourcePiece, Piece targetPiece ){
 		if( targetPiece == null ){
 			return false;
 		} else if( targetPiece.getTeam() != sourcePiece.getTeam() ){
-			System.out.println("target location captureable");
 			return true;
 		} else {
 			return false;
 		}
 	}
 	
-	private boolean isTargetLocationFree() {
+	private boolean isTargetLocationFree( Piece targetPiece ){
 		return targetPiece == null;
 	}
 	
-	private boolean isTargetLocationFreeOrCaptureable() {
-		if( isTargetLocationFree() || isTargetLocationCaptureable() ){
-			return true;
-		} else {
-			System.out.println("target location not free and not captureable");
-			return false;
-		}
+	private boolean isTargetLocationFreeOrCaptureable( Piece sourcePiece, Piece targetPiece ){
+		return isTargetLocationFree( targetPiece ) || isTargetLocationCaptureable( sourcePiece, targetPiece );
 	}
 	
-	private boolean isValidKnightMove() {
+	private Rejection validateKnightMove( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
 		// The knight moves to any of the closest squares which are not on the same rank,
 		// file or diagonal, thus the move forms an "L"-shape two squares long and one
 		// square wide. The knight is the only piece which can leap over other pieces.
 		
-		if( ! isTargetLocationFreeOrCaptureable() ){
-			return false;
+		if( ! isTargetLocationFreeOrCaptureable( sourcePiece, targetPiece ) ){
+			return Rejection.TARGET_OCCUPIED;
 		}
 		
 		if( sourceRow+2 == targetRow && sourceCol+1 == targetCol ){
 			// move up up right
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow+1 == targetRow && sourceCol+2 == targetCol ){
 			// move up right right
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow-1 == targetRow && sourceCol+2 == targetCol ){
 			// move down right right
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow-2 == targetRow && sourceCol+1 == targetCol ){
 			// move down down right
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow-2 == targetRow && sourceCol-1 == targetCol ){
 			// move down down left
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow-1 == targetRow && sourceCol-2 == targetCol ){
 			// move down left left
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow+1 == targetRow && sourceCol-2 == targetCol ){
 			// move up left left
-			return true;
+			return Rejection.NONE;
 		} else if( sourceRow+2 == targetRow && sourceCol-1 == targetCol ){
 			// move up up left
-			return true;
+			return Rejection.NONE;
 		} else {
-			return false;
+			return Rejection.KNIGHT_NOT_L_SHAPED;
 		}
 	}
 	
-	private boolean isValidKingMove() {
+	private Rejection validateKingMove( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
 		// The king moves one square in any direction, the king has also a
 		// special move which is called castling and also involves a rook.
 		
-		if( ! isTargetLocationFreeOrCaptureable() ){
-			return false;
+		if( ! isTargetLocationFreeOrCaptureable( sourcePiece, targetPiece ) ){
+			return Rejection.TARGET_OCCUPIED;
 		}
 		
-		boolean result = true;
+		Rejection result = Rejection.NONE;
 		
 		if( sourceRow+1 == targetRow && sourceCol == targetCol ){
 			// up
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow+1 == targetRow && sourceCol+1 == targetCol ){
 			// up right
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow == targetRow && sourceCol+1 == targetCol ){
 			// right
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow-1 == targetRow && sourceCol+1 == targetCol ){
 			// down right
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow-1 == targetRow && sourceCol == targetCol ){
 			// down
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow-1 == targetRow && sourceCol-1 == targetCol ){
 			// down left
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow == targetRow && sourceCol-1 == targetCol ){
 			// left
-			result = true;
+			result = Rejection.NONE;
 		} else if( sourceRow+1 == targetRow && sourceCol-1 == targetCol ){
 			// up left
-			result = true;
+			result = Rejection.NONE;
+		} else if( sourceRow == targetRow && Math.abs( targetCol - sourceCol ) == 2 ){
+			// castling
+			result = validateCastling( sourcePiece, sourceRow, sourceCol, targetCol );
 		} else {
-			result = false;
+			result = Rejection.KING_TOO_FAR;
 		}
 		
-		// TODO: Castling
-		
 		return result;
 	}
 	
-	private boolean isValidRookMove() {
+	private Rejection validateCastling( Piece king, int row, int sourceCol, int targetCol ){
+		boolean isKingside = targetCol > sourceCol;
+		int right;
+		if( king.getTeam() == Team.WHITE ){
+			right = isKingside ? ChessGame.CASTLING_WHITE_KINGSIDE : ChessGame.CASTLING_WHITE_QUEENSIDE;
+		} else {
+			right = isKingside ? ChessGame.CASTLING_BLACK_KINGSIDE : ChessGame.CASTLING_BLACK_QUEENSIDE;
+		}
+		int homeRow = (king.getTeam() == Team.WHITE ? Piece.ROW_1 : Piece.ROW_8);
+		if( (chessGame.getCastlingRights() & right) == 0 || row != homeRow || sourceCol != Piece.COL_E ){
+			return Rejection.CASTLING_NOT_ALLOWED;
+		}
+		int kingSquare = Bitboard.square( row, sourceCol );
+		int rookSquare = Bitboard.square( row, isKingside ? Piece.COL_H : Piece.COL_A );
+		Team opponentTeam = (king.getTeam() == Team.WHITE ? Team.BLACK : Team.WHITE);
+		if( ! MoveGenerator.isCastlingPossible( king.getTeam(), kingSquare, rookSquare, chessGame.getBitboard(),
+				chessGame.getAttackMaps().getAttacks( opponentTeam ) ) ){
+			return Rejection.CASTLING_NOT_ALLOWED;
+		}
+		return Rejection.NONE;
+	}
+	
+	private Rejection validateRookMove( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
 		// The rook can move any number of squares along any rank or file, but
 		// may not leap over other pieces. Along with the king, the rook is also
 		// involved during the king's castling move.
 		
-		if( ! isTargetLocationFreeOrCaptureable() ){
-			return false;
+		if( ! isTargetLocationFreeOrCaptureable( sourcePiece, targetPiece ) ){
+			return Rejection.TARGET_OCCUPIED;
 		}
 		
-		boolean result = false;
-
 		int rowDiff = targetRow - sourceRow;
 		int colDiff = targetCol - sourceCol;
 		
-		if( rowDiff > 0 && colDiff == 0 ){
-			// up
-			result = ! arePiecesBetween( +1, 0 );
-		} else if( rowDiff == 0 && colDiff > 0 ){
-			// right
-			result = ! arePiecesBetween( 0, +1 );
-		} else if( rowDiff < 0 && colDiff == 0 ){
-			// down
-			result = ! arePiecesBetween( -1, 0 );
-		} else if( rowDiff == 0 && colDiff < 0 ){
-			// left
-			result = ! arePiecesBetween( 0, -1 );
-		} else {
-			// not moving straight
-			System.out.println("can't move diagonally");
-			result = false;
+		// Exactly one of row and column changes when moving straight.
+		if( (rowDiff == 0) == (colDiff == 0) ){
+			return Rejection.ROOK_NOT_STRAIGHT;
 		}
-		
-		return result;
+		return arePiecesBetween( sourceRow, sourceCol, targetRow, targetCol ) ? Rejection.PIECES_BETWEEN : Rejection.NONE;
 	}
 	
-	private boolean isValidBishopMove() {
+	private Rejection validateBishopMove( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
 		// The bishop can move any number of squares diagonally, but may not
 		// leap over other pieces.
 		
-		if( ! isTargetLocationFreeOrCaptureable() ){
-			return false;
+		if( ! isTargetLocationFreeOrCaptureable( sourcePiece, targetPiece ) ){
+			return Rejection.TARGET_OCCUPIED;
 		}
 		
-		boolean result = false;
-		
 		int rowDiff = targetRow - sourceRow;
 		int colDiff = targetCol - sourceCol;
 		
-		if( rowDiff == colDiff && colDiff > 0 ){
-			// up right
-			result = ! arePiecesBetween( +1, +1 );
-		} else if( rowDiff == -colDiff && colDiff > 0 ){
-			// down right
-			result = ! arePiecesBetween( -1, +1 );
-		} else if( rowDiff == colDiff && colDiff < 0 ){
-			// down right
-			result = ! arePiecesBetween( -1, -1 );
-		} else if( rowDiff == -colDiff && colDiff < 0 ){
-			// down right
-			result = ! arePiecesBetween( +1, -1 );
-		} else {
-			// not moving diagonally
-			System.out.println("can't move straight");
-			result = false;
+		// Row and column change by the same distance when moving diagonally.
+		if( colDiff == 0 || Math.abs( rowDiff ) != Math.abs( colDiff ) ){
+			return Rejection.BISHOP_NOT_DIAGONAL;
 		}
-		
-		return result;
+		return arePiecesBetween( sourceRow, sourceCol, targetRow, targetCol ) ? Rejection.PIECES_BETWEEN : Rejection.NONE;
 	}
 	
-	private boolean isValidQueenMove() {
+	private Rejection validateQueenMove( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
 		// The queen combines the power of the rook and bishop and can move any 
 		// number of squares along rank, file, or diagonal, but it may not leap
 		// over other pieces.
-		return isValidBishopMove() || isValidRookMove();
+		Rejection bishopResult = validateBishopMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
+		if( bishopResult != Rejection.BISHOP_NOT_DIAGONAL ){
+			return bishopResult;
+		}
+		Rejection rookResult = validateRookMove( sourcePiece, targetPiece, sourceRow, sourceCol, targetRow, targetCol );
+		if( rookResult != Rejection.ROOK_NOT_STRAIGHT ){
+			return rookResult;
+		}
+		return Rejection.QUEEN_NOT_STRAIGHT_OR_DIAGONAL;
 	}
 	
-	private boolean isValidPawnMove() {
+	private Rejection validatePawnMove( Piece sourcePiece, Piece targetPiece,
+			int sourceRow, int sourceCol, int targetRow, int targetCol ){
 		// The pawn may move forward to the unoccupied square immediately in front
 		// of it on the same file, or on its first move it may advance two squares
 		// along the same file provided both squares are unoccupied. The pawn
 		// has two special moves: the en passant capture and the pawn promotion.
-		boolean result = false;
+		Rejection result = Rejection.TARGET_OCCUPIED;
 		
-		if( isTargetLocationFree() ){
+		if( isTargetLocationFree( targetPiece ) ){
 			
 			if( sourceCol == targetCol ){
 				// same column
@@ -270,36 +404,40 @@ public class MoveValidator {
 					// white
 					if( sourceRow+1 == targetRow ){
 						// move one up
-						result = true;
-					} else if( sourceRow+2 == targetRow && sourcePiece.getRow() == Piece.ROW_2 ){
+						result = Rejection.NONE;
+					} else if( sourceRow+2 == targetRow && sourcePiece.getRow() == Piece.ROW_2
+							&& ! chessGame.isNonCapturedPieceAtLocation( sourceRow+1, sourceCol ) ){
 						// move two up
-						result = true;
+						result = Rejection.NONE;
 					} else {
-						System.out.println("can't move backwards");
-						result = false;
+						result = Rejection.PAWN_WRONG_DISTANCE;
 					}
 				} else {
 					// black
 					if( sourceRow-1 == targetRow ){
 						// move one down
-						result = true;
-					} else if( sourceRow-2 == targetRow && sourcePiece.getRow() == Piece.ROW_7 ){
+						result = Rejection.NONE;
+					} else if( sourceRow-2 == targetRow && sourcePiece.getRow() == Piece.ROW_7
+							&& ! chessGame.isNonCapturedPieceAtLocation( sourceRow-1, sourceCol ) ){
 						// move two down
-						result = true;
+						result = Rejection.NONE;
 					} else {
-						System.out.println("can't move backwards");
-						result = false;
+						result = Rejection.PAWN_WRONG_DISTANCE;
 					}
 				}
+			} else if( Bitboard.square( targetRow, targetCol ) == chessGame.getEnPassantSquare()
+					&& Math.abs( targetCol - sourceCol ) == 1
+					&& targetRow - sourceRow == (sourcePiece.getTeam() == Team.WHITE ? 1 : -1) ){
+				// en passant capture of the pawn that just passed the target
+				result = Rejection.NONE;
 			} else {
 				// not the same column
-				System.out.println("can't move to different column");
-				result = false;
+				result = Rejection.PAWN_WRONG_COLUMN;
 			}
 			
 		// Or it may move to a square occupied by an opponent's piece, which is
 		// diagonally in front of it on an adjacent file, capturing that piece.
-		} else if( isTargetLocationCaptureable() ){
+		} else if( isTargetLocationCaptureable( sourcePiece, targetPiece ) ){
 			
 			if( sourceCol+1 == targetCol || sourceCol-1 == targetCol ){
 				// one column to the left or right
@@ -307,56 +445,61 @@ public class MoveValidator {
 					// white
 					if( sourceRow+1 == targetRow ){
 						// capture up right or up left
-						result = true;
+						result = Rejection.NONE;
 					} else {
-						System.out.println("can't move backwards");
-						result = false;
+						result = Rejection.PAWN_WRONG_DISTANCE;
 					}
 				} else {
 					// black
 					if( sourceRow-1 == targetRow ){
 						// capture down right or down left
-						result = true;
+						result = Rejection.NONE;
 					} else {
-						System.out.println("can't move backwards");
-						result = false;
+						result = Rejection.PAWN_WRONG_DISTANCE;
 					}
 				}
 			} else {
 				// not one column to the left or right
-				System.out.println("can't move more than one column to the left or right");
-				result = false;
+				result = Rejection.PAWN_WRONG_COLUMN;
 			}
 		}
 		
-		// TODO: On its first move it may advance two squres.
-		
-		// TODO: En passant capture.
-		
 		return result;
 	}
 	
-	private boolean arePiecesBetween( int rowIncrementPerStep, int colIncrementPerStep ){
-		int currentRow = sourceRow + rowIncrementPerStep;
-		int currentCol = sourceCol + colIncrementPerStep;
-		
-		while( true ){
-			if( currentRow == targetRow && currentCol == targetCol ){
-				break;
-			}
-			if( currentRow < Piece.ROW_1 || currentRow > Piece.ROW_8
-					|| currentCol < Piece.COL_A || currentCol > Piece.COL_H ){
-				break;
-			}
-			if( chessGame.isNonCapturedPieceAtLocation(currentRow, currentCol) ){
-				System.out.println("pieces between source and target");
-				return true;
-			}
-			currentRow += rowIncrementPerStep;
-			currentCol += colIncrementPerStep;
-		}
-		
-		return false;
+	/**
+	 * Checks the squares between source and target, which the caller made
+	 * sure share a rank, file or diagonal, with one table lookup.
+	 */
+	private boolean arePiecesBetween( int sourceRow, int sourceCol, int targetRow, int targetCol ){
+		long between = Attacks.between( Bitboard.square( sourceRow, sourceCol ), Bitboard.square( targetRow, targetCol ) );
+		return (between & chessGame.getBitboard().getOccupied()) != 0;
+	}
+	
+	// ::: DIAGNOSTICS :::
+	
+	/**
+	 * Enables or disables counting the validation results per rejection
+	 * reason. Counting is disabled by default and costs nothing then.
+	 * Enabling it resets the counts.
+	 * @param enabled True to count validation results.
+	 */
+	public void setRejectionCountingEnabled( boolean enabled ){
+		this.rejectionCounts = enabled ? new AtomicLongArray( Rejection.values().length ) : null;
+	}
+	
+	public boolean isRejectionCountingEnabled() {
+		return this.rejectionCounts != null;
+	}
+	
+	/**
+	 * @param rejection The validation result.
+	 * @return number of validations with that result since counting was
+	 * 		   enabled, 0 if counting is disabled.
+	 */
+	public long getRejectionCount( Rejection rejection ){
+		AtomicLongArray counts = this.rejectionCounts;
+		return counts == null ? 0 : counts.get( rejection.ordinal() );
 	}
 	
 }
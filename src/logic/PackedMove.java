@@ -0,0 +1,99 @@
+package logic;
+
+import logic.Piece.Type;
+
+/**
+ * Moves packed into a single int, so that move lists, the undo stack and the
+ * transposition table need no objects per move.
+ *
+ * Layout (from the lowest bit):
+ * 6 bits source square, 6 bits target square, 4 flag bits (CAPTURE,
+ * EN_PASSANT, CASTLE, PROMOTION) and 3 bits promotion type (Type.ordinal()).
+ * Squares are indexed as in Bitboard. 0 is never a valid move and stands for
+ * "no move".
+ */
+public final class PackedMove {
+	
+	public static final int NONE = 0;
+	
+	public static final int CAPTURE = 1 << 12;
+	public static final int EN_PASSANT = 1 << 13;
+	public static final int CASTLE = 1 << 14;
+	public static final int PROMOTION = 1 << 15;
+	
+	private static final int SQUARE_MASK = 0x3F;
+	private static final int TARGET_SHIFT = 6;
+	private static final int PROMOTION_TYPE_SHIFT = 16;
+	
+	private static final Type[] TYPES = Type.values();
+	
+	private PackedMove() {
+	}
+	
+	/**
+	 * @param source square index between 0 and 63
+	 * @param target square index between 0 and 63
+	 * @param flags CAPTURE, EN_PASSANT and CASTLE combined, or 0
+	 * @return the packed move
+	 */
+	public static int create( int source, int target, int flags ){
+		return source | target << TARGET_SHIFT | flags;
+	}
+	
+	/**
+	 * @param source square index between 0 and 63
+	 * @param target square index between 0 and 63
+	 * @param flags CAPTURE or 0
+	 * @param promotionType type the pawn turns into
+	 * @return the packed move
+	 */
+	public static int createPromotion( int source, int target, int flags, Type promotionType ){
+		return source | target << TARGET_SHIFT | flags | PROMOTION
+			| promotionType.ordinal() << PROMOTION_TYPE_SHIFT;
+	}
+	
+	public static int source( int move ){
+		return move & SQUARE_MASK;
+	}
+	public static int target( int move ){
+		return (move >>> TARGET_SHIFT) & SQUARE_MASK;
+	}
+	public static boolean isCapture( int move ){
+		return (move & CAPTURE) != 0;
+	}
+	public static boolean isEnPassant( int move ){
+		return (move & EN_PASSANT) != 0;
+	}
+	public static boolean isCastle( int move ){
+		return (move & CASTLE) != 0;
+	}
+	public static boolean isPromotion( int move ){
+		return (move & PROMOTION) != 0;
+	}
+	
+	/**
+	 * @return the type the pawn turns into, null if the move is no promotion.
+	 */
+	public static Type promotionType( int move ){
+		return isPromotion( move ) ? TYPES[ (move >>> PROMOTION_TYPE_SHIFT) & 0x7 ] : null;
+	}
+	
+	/**
+	 * @param move a packed move, not NONE
+	 * @return the move as Move object
+	 */
+	public static Move toMove( int move ){
+		int source = source( move );
+		int target = target( move );
+		return new Move( Bitboard.row( source ), Bitboard.col( source ),
+			Bitboard.row( target ), Bitboard.col( target ), promotionType( move ) );
+	}
+	
+	/**
+	 * @return the move in coordinate notation (e.g. "e2e4" or "e7e8q").
+	 */
+	public static String toString( int move ){
+		return toMove( move ).toString();
+	}
+	
+}
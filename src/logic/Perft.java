@@ -0,0 +1,201 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Performance test (perft) of the move generation. Counts all move sequences
+ * of a given length from a position. The counts of the standard start
+ * position are well known, so comparing them shows whether the rules match
+ * standard chess, and the time taken shows the raw move generation
+ * throughput.
+ *
+ * The subtree of every root move is counted in its own fork/join task and
+ * large subtrees are split further, so the count scales with the number of
+ * cores. Every task works on its own copy of the position and explores its
+ * subtree by making and unmaking packed moves, with one reused MoveList per
+ * ply, so counting creates no objects per node.
+ *
+ * Usage: Perft [-threads n] [-fen "fen"] depth [move ...]
+ * The optional moves (e.g. "e2e4 e7e5") are played from the start position,
+ * or the FEN position if given, before counting.
+ */
+public class Perft {
+	
+	// Known node counts of the start position, indexed by depth.
+	private static final long[] START_POSITION_NODES = {
+		1L, 20L, 400L, 8902L, 197281L, 4865609L, 119060324L, 3195901860L
+	};
+	
+	// Subtrees with at least this depth are split into one task per move.
+	private static final int SPLIT_DEPTH = 3;
+	
+	private ForkJoinPool pool;
+	
+	public Perft( ForkJoinPool pool ){
+		this.pool = pool;
+	}
+	
+	/**
+	 * Counts the leaf nodes of the move tree of given depth.
+	 * @param chessGame The position to start from. It is not changed.
+	 * @param depth The depth in plies.
+	 * @return number of leaf nodes.
+	 */
+	public long perft( ChessGame chessGame, int depth ){
+		return this.pool.invoke( new PerftTask( new ChessGame( chessGame ), PackedMove.NONE, depth ) );
+	}
+	
+	/**
+	 * Counts the leaf nodes below every root move ("divide").
+	 * @param chessGame The position to start from. It is not changed.
+	 * @param depth The depth in plies, at least 1.
+	 * @param moves Receives the root moves.
+	 * @return leaf node counts of the root moves in the order of moves.
+	 */
+	public long[] divide( ChessGame chessGame, int depth, MoveList moves ){
+		chessGame.generateLegalMoves( moves );
+		List<PerftTask> tasks = new ArrayList<PerftTask>();
+		for( int i = 0; i < moves.size(); i++ ){
+			tasks.add( new PerftTask( chessGame, moves.get( i ), depth - 1 ) );
+		}
+		for( PerftTask task : tasks ){
+			this.pool.execute( task );
+		}
+		long[] result = new long[ moves.size() ];
+		for( int i = 0; i < result.length; i++ ){
+			result[ i ] = tasks.get( i ).join();
+		}
+		return result;
+	}
+	
+	/**
+	 * Counts the leaf nodes below one position. If a move is set (not
+	 * PackedMove.NONE), the task works on a copy of the position with that
+	 * move applied.
+	 */
+	private static class PerftTask extends RecursiveTask<Long> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private ChessGame chessGame;
+		private int move;
+		private int depth;
+		
+		PerftTask( ChessGame chessGame, int move, int depth ){
+			this.chessGame = chessGame;
+			this.move = move;
+			this.depth = depth;
+		}
+		
+		@Override
+		protected Long compute() {
+			ChessGame position = this.chessGame;
+			if( this.move != PackedMove.NONE ){
+				position = new ChessGame( this.chessGame );
+				position.makeMove( this.move );
+			}
+			if( this.depth < SPLIT_DEPTH ){
+				MoveList[] moveLists = new MoveList[ Math.max( 1, this.depth ) ];
+				for( int i = 0; i < moveLists.length; i++ ){
+					moveLists[ i ] = new MoveList();
+				}
+				return count( position, this.depth, moveLists );
+			}
+			
+			MoveList moves = new MoveList();
+			position.generateLegalMoves( moves );
+			List<PerftTask> subtasks = new ArrayList<PerftTask>();
+			for( int i = 0; i < moves.size(); i++ ){
+				subtasks.add( new PerftTask( position, moves.get( i ), this.depth - 1 ) );
+			}
+			invokeAll( subtasks );
+			long nodes = 0;
+			for( PerftTask subtask : subtasks ){
+				nodes += subtask.join();
+			}
+			return nodes;
+		}
+		
+		/**
+		 * @param moveLists one list per remaining ply, moveLists[depth - 1]
+		 * 		  is used at this ply
+		 */
+		private static long count( ChessGame position, int depth, MoveList[] moveLists ){
+			if( depth == 0 ){
+				return 1;
+			}
+			MoveList moves = moveLists[ depth - 1 ];
+			position.generateLegalMoves( moves );
+			if( depth == 1 ){
+				return moves.size();
+			}
+			long nodes = 0;
+			for( int i = 0; i < moves.size(); i++ ){
+				position.makeMove( moves.get( i ) );
+				nodes += count( position, depth - 1, moveLists );
+				position.unmakeMove();
+			}
+			return nodes;
+		}
+	}
+	
+	public static void main( String[] args ){
+		int threads = Runtime.getRuntime().availableProcessors();
+		String fen = null;
+		int argIndex = 0;
+		for( ; args.length > argIndex + 1 && args[ argIndex ].startsWith( "-" ); argIndex += 2 ){
+			if( args[ argIndex ].equals( "-threads" ) ){
+				threads = Integer.parseInt( args[ argIndex + 1 ] );
+			} else if( args[ argIndex ].equals( "-fen" ) ){
+				fen = args[ argIndex + 1 ];
+			} else {
+				break;
+			}
+		}
+		if( args.length <= argIndex || args[ argIndex ].startsWith( "-" ) ){
+			System.out.println( "usage: Perft [-threads n] [-fen \"fen\"] depth [move ...]" );
+			return;
+		}
+		int depth = Integer.parseInt( args[ argIndex++ ] );
+		
+		ChessGame chessGame = (fen == null ? new ChessGame() : ChessGame.fromFen( fen ));
+		boolean isStartPosition = fen == null && argIndex == args.length;
+		for( ; argIndex < args.length; argIndex++ ){
+			if( ! chessGame.movePiece( Move.parse( args[ argIndex ] ) ) ){
+				throw new IllegalArgumentException( "invalid move: " + args[ argIndex ] );
+			}
+		}
+		
+		Perft perft = new Perft( new ForkJoinPool( threads ) );
+		long startTime = System.nanoTime();
+		long nodes = 0;
+		if( depth == 0 ){
+			nodes = 1;
+		} else {
+			MoveList moves = new MoveList();
+			long[] counts = perft.divide( chessGame, depth, moves );
+			for( int i = 0; i < counts.length; i++ ){
+				System.out.println( PackedMove.toString( moves.get( i ) ) + ": " + counts[ i ] );
+				nodes += counts[ i ];
+			}
+		}
+		long elapsedNanos = Math.max( 1, System.nanoTime() - startTime );
+		
+		System.out.println();
+		System.out.println( "depth:     " + depth );
+		System.out.println( "threads:   " + threads );
+		System.out.println( "nodes:     " + nodes );
+		System.out.println( "time (ms): " + elapsedNanos / 1000000 );
+		System.out.println( "nodes/sec: " + (long)( nodes * 1e9 / elapsedNanos ) );
+		System.out.println( Attacks.getTableInfo() );
+		if( isStartPosition && depth < START_POSITION_NODES.length ){
+			long expected = START_POSITION_NODES[ depth ];
+			System.out.println( "expected:  " + expected
+				+ (expected == nodes ? " (ok)" : " (MISMATCH)") );
+		}
+	}
+	
+}
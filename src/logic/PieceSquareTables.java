@@ -0,0 +1,194 @@
+package logic;
+
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Material and piece-square values for the static evaluation. Every piece on
+ * a square has a midgame and an endgame value; the score of a position is the
+ * sum of the values of all pieces, white positive and black negative, blended
+ * between midgame and endgame by the material left on the board (the phase).
+ * Moving a piece therefore only needs a few additions to update the score,
+ * which ChessGame does on every move.
+ */
+public final class PieceSquareTables {
+	
+	/** Phase of the start position; the phase is 0 when only kings and pawns are left. */
+	public static final int MAX_PHASE = 24;
+	
+	// Indexed by Type.ordinal(): ROOK, KNIGHT, BISHOP, QUEEN, KING, PAWN.
+	private static final int[] PIECE_VALUES = { 500, 320, 330, 900, 0, 100 };
+	private static final int[] PHASE_WEIGHTS = { 2, 1, 1, 4, 0, 0 };
+	
+	// :: TABLES :: from white's point of view, row 8 first, in centipawns
+	private static final int[] PAWN_MIDGAME = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		 50,  50,  50,  50,  50,  50,  50,  50,
+		 10,  10,  20,  30,  30,  20,  10,  10,
+		  5,   5,  10,  25,  25,  10,   5,   5,
+		  0,   0,   0,  20,  20,   0,   0,   0,
+		  5,  -5, -10,   0,   0, -10,  -5,   5,
+		  5,  10,  10, -20, -20,  10,  10,   5,
+		  0,   0,   0,   0,   0,   0,   0,   0 };
+	private static final int[] PAWN_ENDGAME = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		 80,  80,  80,  80,  80,  80,  80,  80,
+		 50,  50,  50,  50,  50,  50,  50,  50,
+		 30,  30,  30,  30,  30,  30,  30,  30,
+		 20,  20,  20,  20,  20,  20,  20,  20,
+		 10,  10,  10,  10,  10,  10,  10,  10,
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		  0,   0,   0,   0,   0,   0,   0,   0 };
+	private static final int[] KNIGHT = {
+		-50, -40, -30, -30, -30, -30, -40, -50,
+		-40, -20,   0,   0,   0,   0, -20, -40,
+		-30,   0,  10,  15,  15,  10,   0, -30,
+		-30,   5,  15,  20,  20,  15,   5, -30,
+		-30,   0,  15,  20,  20,  15,   0, -30,
+		-30,   5,  10,  15,  15,  10,   5, -30,
+		-40, -20,   0,   5,   5,   0, -20, -40,
+		-50, -40, -30, -30, -30, -30, -40, -50 };
+	private static final int[] BISHOP = {
+		-20, -10, -10, -10, -10, -10, -10, -20,
+		-10,   0,   0,   0,   0,   0,   0, -10,
+		-10,   0,   5,  10,  10,   5,   0, -10,
+		-10,   5,   5,  10,  10,   5,   5, -10,
+		-10,   0,  10,  10,  10,  10,   0, -10,
+		-10,  10,  10,  10,  10,  10,  10, -10,
+		-10,   5,   0,   0,   0,   0,   5, -10,
+		-20, -10, -10, -10, -10, -10, -10, -20 };
+	private static final int[] ROOK = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		  5,  10,  10,  10,  10,  10,  10,   5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		  0,   0,   0,   5,   5,   0,   0,   0 };
+	private static final int[] QUEEN = {
+		-20, -10, -10,  -5,  -5, -10, -10, -20,
+		-10,   0,   0,   0,   0,   0,   0, -10,
+		-10,   0,   5,   5,   5,   5,   0, -10,
+		 -5,   0,   5,   5,   5,   5,   0,  -5,
+		  0,   0,   5,   5,   5,   5,   0,  -5,
+		-10,   5,   5,   5,   5,   5,   0, -10,
+		-10,   0,   5,   0,   0,   0,   0, -10,
+		-20, -10, -10,  -5,  -5, -10, -10, -20 };
+	private static final int[] KING_MIDGAME = {
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-20, -30, -30, -40, -40, -30, -30, -20,
+		-10, -20, -20, -20, -20, -20, -20, -10,
+		 20,  20,   0,   0,   0,   0,  20,  20,
+		 20,  30,  10,   0,   0,  10,  30,  20 };
+	private static final int[] KING_ENDGAME = {
+		-50, -40, -30, -20, -20, -30, -40, -50,
+		-30, -20, -10,   0,   0, -10, -20, -30,
+		-30, -10,  20,  30,  30,  20, -10, -30,
+		-30, -10,  30,  40,  40,  30, -10, -30,
+		-30, -10,  30,  40,  40,  30, -10, -30,
+		-30, -10,  20,  30,  30,  20, -10, -30,
+		-30, -30,   0,   0,   0,   0, -30, -30,
+		-50, -30, -30, -30, -30, -30, -30, -50 };
+	
+	// Signed values including material, indexed by
+	// [Team.ordinal()][Type.ordinal()][square].
+	private static final int[][][] MIDGAME_VALUES =
+		new int[ Team.values().length ][ Type.values().length ][ Bitboard.NUMBER_OF_SQUARES ];
+	private static final int[][][] ENDGAME_VALUES =
+		new int[ Team.values().length ][ Type.values().length ][ Bitboard.NUMBER_OF_SQUARES ];
+	
+	static {
+		int[][] midgameTables = { ROOK, KNIGHT, BISHOP, QUEEN, KING_MIDGAME, PAWN_MIDGAME };
+		int[][] endgameTables = { ROOK, KNIGHT, BISHOP, QUEEN, KING_ENDGAME, PAWN_ENDGAME };
+		for( Type type : Type.values() ){
+			for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+				// The tables list row 8 first; black's pieces use them mirrored.
+				int whiteIndex = (7 - Bitboard.row( square )) * 8 + Bitboard.col( square );
+				int blackIndex = Bitboard.row( square ) * 8 + Bitboard.col( square );
+				int t = type.ordinal();
+				MIDGAME_VALUES[ Team.WHITE.ordinal() ][ t ][ square ] = PIECE_VALUES[ t ] + midgameTables[ t ][ whiteIndex ];
+				ENDGAME_VALUES[ Team.WHITE.ordinal() ][ t ][ square ] = PIECE_VALUES[ t ] + endgameTables[ t ][ whiteIndex ];
+				MIDGAME_VALUES[ Team.BLACK.ordinal() ][ t ][ square ] = -PIECE_VALUES[ t ] - midgameTables[ t ][ blackIndex ];
+				ENDGAME_VALUES[ Team.BLACK.ordinal() ][ t ][ square ] = -PIECE_VALUES[ t ] - endgameTables[ t ][ blackIndex ];
+			}
+		}
+	}
+	
+	private PieceSquareTables() {
+	}
+	
+	/**
+	 * @param type of Piece.Type
+	 * @return material value of the piece in centipawns, 0 for the king
+	 */
+	public static int pieceValue( Type type ){
+		return PIECE_VALUES[ type.ordinal() ];
+	}
+	
+	/**
+	 * @param team of Piece.Team
+	 * @param type of Piece.Type
+	 * @param square index between 0 and 63
+	 * @return midgame value of the piece on the square, negative for black
+	 */
+	public static int midgameValue( Team team, Type type, int square ){
+		return MIDGAME_VALUES[ team.ordinal() ][ type.ordinal() ][ square ];
+	}
+	
+	/**
+	 * @param team of Piece.Team
+	 * @param type of Piece.Type
+	 * @param square index between 0 and 63
+	 * @return endgame value of the piece on the square, negative for black
+	 */
+	public static int endgameValue( Team team, Type type, int square ){
+		return ENDGAME_VALUES[ team.ordinal() ][ type.ordinal() ][ square ];
+	}
+	
+	/**
+	 * @param type of Piece.Type
+	 * @return how much the piece adds to the phase
+	 */
+	public static int phaseWeight( Type type ){
+		return PHASE_WEIGHTS[ type.ordinal() ];
+	}
+	
+	/**
+	 * Blends midgame and endgame scores.
+	 * @param midgameScore sum of the midgame values of all pieces
+	 * @param endgameScore sum of the endgame values of all pieces
+	 * @param phase sum of the phase weights of all pieces; more than
+	 * 		  MAX_PHASE (after promotions) counts as MAX_PHASE
+	 * @return score in centipawns, positive if white is better
+	 */
+	public static int taper( int midgameScore, int endgameScore, int phase ){
+		int midgamePhase = Math.min( phase, MAX_PHASE );
+		return (midgameScore * midgamePhase + endgameScore * (MAX_PHASE - midgamePhase)) / MAX_PHASE;
+	}
+	
+	/**
+	 * Computes the score of a game from scratch. ChessGame keeps its score up
+	 * to date incrementally; this method is meant for verification.
+	 * @param chessGame The game.
+	 * @return score of the current position, see ChessGame.getScore().
+	 */
+	public static int computeScore( ChessGame chessGame ){
+		int midgameScore = 0;
+		int endgameScore = 0;
+		int phase = 0;
+		for( Piece piece : chessGame.getPieces() ){
+			if( ! piece.isCaptured() ){
+				int square = Bitboard.square( piece.getRow(), piece.getCol() );
+				midgameScore += midgameValue( piece.getTeam(), piece.getType(), square );
+				endgameScore += endgameValue( piece.getTeam(), piece.getType(), square );
+				phase += phaseWeight( piece.getType() );
+			}
+		}
+		return taper( midgameScore, endgameScore, phase );
+	}
+	
+}
@@ -0,0 +1,227 @@
+package logic;
+
+import logic.ChessGame.EndCondition;
+import logic.ChessGame.GameState;
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Immutable snapshot of a game position: one bitboard per team and piece
+ * type plus the team to move, castling rights, en passant square, move
+ * counters and Zobrist hash. Taken with ChessGame.getPosition().
+ *
+ * A snapshot never changes after it was created and shares nothing with
+ * the game, so it may be handed to other threads (e.g. spectators,
+ * analysers or renderers) and read there without locks, while the game goes
+ * on. All fields are final, so a snapshot is seen completely even when it
+ * is published through a plain field.
+ */
+public final class Position {
+	
+	private static final int TYPE_COUNT = Type.values().length;
+	
+	// Bitboards indexed by Team.ordinal() * TYPE_COUNT + Type.ordinal().
+	private final long[] pieces = new long[ Team.values().length * TYPE_COUNT ];
+	private final long white;
+	private final long black;
+	private final GameState gameState;
+	private final Team teamToMove;
+	private final EndCondition endCondition;
+	private final int castlingRights;
+	private final int enPassantSquare;
+	private final int halfmoveClock;
+	private final int fullmoveNumber;
+	private final long hash;
+	
+	/**
+	 * Copies the current position of the game.
+	 * @param chessGame The game, not changed by another thread meanwhile.
+	 */
+	Position( ChessGame chessGame ){
+		Bitboard bitboard = chessGame.getBitboard();
+		for( Team team : Team.values() ){
+			for( Type type : Type.values() ){
+				this.pieces[ team.ordinal() * TYPE_COUNT + type.ordinal() ] = bitboard.getPieces( team, type );
+			}
+		}
+		this.white = bitboard.getPieces( Team.WHITE );
+		this.black = bitboard.getPieces( Team.BLACK );
+		this.gameState = chessGame.getGameState();
+		// After the final move of a game it would be the other team's turn.
+		boolean isBlackToMove = this.gameState == GameState.BLACK
+			|| this.gameState == GameState.END && chessGame.getLastGameState() == GameState.WHITE;
+		this.teamToMove = (isBlackToMove ? Team.BLACK : Team.WHITE);
+		this.endCondition = chessGame.getEndCondition();
+		this.castlingRights = chessGame.getCastlingRights();
+		this.enPassantSquare = chessGame.getEnPassantSquare();
+		this.halfmoveClock = chessGame.getHalfmoveClock();
+		this.fullmoveNumber = chessGame.getFullmoveNumber();
+		this.hash = chessGame.positionHash();
+	}
+	
+	// ::: QUERIES :::
+	
+	/**
+	 * @param team of Piece.Team
+	 * @param type of Piece.Type
+	 * @return bitboard of the pieces of that team and type
+	 */
+	public long getPieces( Team team, Type type ){
+		return this.pieces[ team.ordinal() * TYPE_COUNT + type.ordinal() ];
+	}
+	
+	/**
+	 * @param team of Piece.Team
+	 * @return bitboard of all pieces of the team
+	 */
+	public long getPieces( Team team ){
+		return team == Team.WHITE ? this.white : this.black;
+	}
+	
+	/**
+	 * @return bitboard of all pieces on the board
+	 */
+	public long getOccupied() {
+		return this.white | this.black;
+	}
+	
+	/**
+	 * @param square index between 0 and 63
+	 * @return team of the piece on the square, null if the square is empty
+	 */
+	public Team getTeam( int square ){
+		long mask = 1L << square;
+		if( (this.white & mask) != 0 ){
+			return Team.WHITE;
+		}
+		return (this.black & mask) != 0 ? Team.BLACK : null;
+	}
+	
+	/**
+	 * @param square index between 0 and 63
+	 * @return type of the piece on the square, null if the square is empty
+	 */
+	public Type getType( int square ){
+		long mask = 1L << square;
+		for( int i = 0; i < this.pieces.length; i++ ){
+			if( (this.pieces[ i ] & mask) != 0 ){
+				return Type.values()[ i % TYPE_COUNT ];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Writes the position in Forsyth-Edwards Notation.
+	 * @return the FEN of the position.
+	 */
+	public String toFen() {
+		StringBuilder fen = new StringBuilder( 90 );
+		for( int row = Piece.ROW_8; row >= Piece.ROW_1; row-- ){
+			int emptySquares = 0;
+			for( int col = Piece.COL_A; col <= Piece.COL_H; col++ ){
+				int square = Bitboard.square( row, col );
+				Team team = getTeam( square );
+				if( team == null ){
+					emptySquares++;
+				} else {
+					if( emptySquares > 0 ){
+						fen.append( (char) ('0' + emptySquares) );
+						emptySquares = 0;
+					}
+					fen.append( ChessGame.getLetterOfPiece( team, getType( square ) ) );
+				}
+			}
+			if( emptySquares > 0 ){
+				fen.append( (char) ('0' + emptySquares) );
+			}
+			if( row > Piece.ROW_1 ){
+				fen.append( '/' );
+			}
+		}
+		
+		fen.append( this.teamToMove == Team.BLACK ? " b " : " w " );
+		
+		if( this.castlingRights == 0 ){
+			fen.append( '-' );
+		} else {
+			if( (this.castlingRights & ChessGame.CASTLING_WHITE_KINGSIDE) != 0 ){
+				fen.append( 'K' );
+			}
+			if( (this.castlingRights & ChessGame.CASTLING_WHITE_QUEENSIDE) != 0 ){
+				fen.append( 'Q' );
+			}
+			if( (this.castlingRights & ChessGame.CASTLING_BLACK_KINGSIDE) != 0 ){
+				fen.append( 'k' );
+			}
+			if( (this.castlingRights & ChessGame.CASTLING_BLACK_QUEENSIDE) != 0 ){
+				fen.append( 'q' );
+			}
+		}
+		
+		fen.append( ' ' );
+		if( this.enPassantSquare == ChessGame.NO_SQUARE ){
+			fen.append( '-' );
+		} else {
+			fen.append( (char) ('a' + Bitboard.col( this.enPassantSquare )) )
+				.append( (char) ('1' + Bitboard.row( this.enPassantSquare )) );
+		}
+		
+		fen.append( ' ' ).append( this.halfmoveClock ).append( ' ' ).append( this.fullmoveNumber );
+		return fen.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return toFen();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	/**
+	 * @return the state of the game: the team to move or END.
+	 */
+	public GameState getGameState() {
+		return this.gameState;
+	}
+	/**
+	 * @return the team to move; after the final move of a game the team
+	 * 		   that would have been next.
+	 */
+	public Team getTeamToMove() {
+		return this.teamToMove;
+	}
+	/**
+	 * @return why the game has ended, EndCondition.NONE while it is running.
+	 */
+	public EndCondition getEndCondition() {
+		return this.endCondition;
+	}
+	/**
+	 * @return combination of the ChessGame.CASTLING_.. bits that are still
+	 * 		   allowed.
+	 */
+	public int getCastlingRights() {
+		return this.castlingRights;
+	}
+	/**
+	 * @return square a pawn can be captured on en passant, or
+	 * 		   ChessGame.NO_SQUARE.
+	 */
+	public int getEnPassantSquare() {
+		return this.enPassantSquare;
+	}
+	public int getHalfmoveClock() {
+		return this.halfmoveClock;
+	}
+	public int getFullmoveNumber() {
+		return this.fullmoveNumber;
+	}
+	/**
+	 * @return 64 bit Zobrist hash of the position, see Zobrist.
+	 */
+	public long getHash() {
+		return this.hash;
+	}
+	
+}
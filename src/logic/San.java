@@ -0,0 +1,242 @@
+package logic;
+
+import logic.Piece.Type;
+
+/**
+ * Standard Algebraic Notation (SAN) as used in PGN files, e.g. "e4", "Nbd7",
+ * "exd5", "O-O" or "e8=Q+".
+ *
+ * SAN leaves out the source square unless two pieces of the same type can
+ * reach the target. A piece that may not move because it would leave its own
+ * king attacked does not count; the generated moves already leave those out.
+ */
+public final class San {
+	
+	private San() {
+	}
+	
+	/**
+	 * Decodes a move in SAN for the current position. Check, mate and
+	 * annotation suffixes ("+", "#", "!", "?") are ignored. A promotion without
+	 * a type becomes a queen.
+	 * @param chessGame The position.
+	 * @param san The move, e.g. "Nf3".
+	 * @param moves Buffer for generating the moves of the position.
+	 * @return the packed move (see PackedMove).
+	 * @throws IllegalArgumentException if the move is malformed, not possible
+	 * 		   or ambiguous.
+	 */
+	public static int parse( ChessGame chessGame, String san, MoveList moves ){
+		int end = san.length();
+		while( end > 0 && "+#!?".indexOf( san.charAt( end - 1 ) ) >= 0 ){
+			end--;
+		}
+		if( end < 2 ){
+			throw new IllegalArgumentException( "invalid move: " + san );
+		}
+		chessGame.generateLegalMoves( moves );
+		
+		// :: CASTLING ::
+		char first = san.charAt( 0 );
+		if( first == 'O' || first == '0' ){
+			boolean isQueenside;
+			if( san.regionMatches( 0, "O-O-O", 0, 5 ) || san.regionMatches( 0, "0-0-0", 0, 5 ) ){
+				isQueenside = true;
+			} else if( san.regionMatches( 0, "O-O", 0, 3 ) || san.regionMatches( 0, "0-0", 0, 3 ) ){
+				isQueenside = false;
+			} else {
+				throw new IllegalArgumentException( "invalid move: " + san );
+			}
+			for( int i = 0; i < moves.size(); i++ ){
+				int move = moves.get( i );
+				if( PackedMove.isCastle( move )
+						&& (Bitboard.col( PackedMove.target( move ) ) == Piece.COL_C) == isQueenside ){
+					return move;
+				}
+			}
+			throw new IllegalArgumentException( "castling not possible: " + san );
+		}
+		
+		// :: PIECE TYPE AND PROMOTION ::
+		int index = 0;
+		Type type = Type.PAWN;
+		Type pieceType = getTypeOfLetter( first );
+		if( pieceType != null ){
+			type = pieceType;
+			index = 1;
+		}
+		Type promotionType = null;
+		if( type == Type.PAWN ){
+			promotionType = getTypeOfLetter( san.charAt( end - 1 ) );
+			if( promotionType != null ){
+				end -= (san.charAt( end - 2 ) == '=' ? 2 : 1);
+			}
+		}
+		
+		// :: TARGET SQUARE AND DISAMBIGUATION ::
+		if( end - index < 2 ){
+			throw new IllegalArgumentException( "invalid move: " + san );
+		}
+		int targetCol = san.charAt( end - 2 ) - 'a';
+		int targetRow = san.charAt( end - 1 ) - '1';
+		if( ! Bitboard.isOnBoard( targetRow, targetCol ) ){
+			throw new IllegalArgumentException( "invalid move: " + san );
+		}
+		int targetSquare = Bitboard.square( targetRow, targetCol );
+		int sourceCol = -1;
+		int sourceRow = -1;
+		for( int i = index; i < end - 2; i++ ){
+			char c = san.charAt( i );
+			if( c >= 'a' && c <= 'h' ){
+				sourceCol = c - 'a';
+			} else if( c >= '1' && c <= '8' ){
+				sourceRow = c - '1';
+			} else if( c != 'x' && c != '-' && c != ':' ){
+				throw new IllegalArgumentException( "invalid move: " + san );
+			}
+		}
+		
+		// :: MATCHING MOVES ::
+		Bitboard bitboard = chessGame.getBitboard();
+		int found = PackedMove.NONE;
+		int matches = 0;
+		for( int i = 0; i < moves.size(); i++ ){
+			int move = moves.get( i );
+			int source = PackedMove.source( move );
+			if( PackedMove.target( move ) != targetSquare
+					|| bitboard.getPiece( source ).getType() != type
+					|| sourceCol >= 0 && Bitboard.col( source ) != sourceCol
+					|| sourceRow >= 0 && Bitboard.row( source ) != sourceRow
+					|| PackedMove.isCastle( move ) ){
+				continue;
+			}
+			if( PackedMove.isPromotion( move )
+					&& PackedMove.promotionType( move ) != (promotionType == null ? Type.QUEEN : promotionType) ){
+				continue;
+			}
+			found = move;
+			matches++;
+		}
+		if( matches == 0 ){
+			throw new IllegalArgumentException( "no such move: " + san );
+		} else if( matches > 1 ){
+			throw new IllegalArgumentException( "ambiguous move: " + san );
+		}
+		return found;
+	}
+	
+	/**
+	 * Encodes a move of the current position in SAN. A "+" is appended if the
+	 * move checks the opponent king, a "#" if it mates.
+	 * @param chessGame The position. Moves may be tried on it, but it is
+	 * 		  always restored.
+	 * @param move A valid packed move of the position.
+	 * @param moves Buffer for generating the moves of the position.
+	 * @return the move in SAN, e.g. "Nbd7".
+	 */
+	public static String toSan( ChessGame chessGame, int move, MoveList moves ){
+		StringBuilder san = new StringBuilder( 8 );
+		int source = PackedMove.source( move );
+		int target = PackedMove.target( move );
+		Piece piece = chessGame.getBitboard().getPiece( source );
+		
+		if( PackedMove.isCastle( move ) ){
+			san.append( Bitboard.col( target ) == Piece.COL_C ? "O-O-O" : "O-O" );
+		} else {
+			if( piece.getType() == Type.PAWN ){
+				if( PackedMove.isCapture( move ) ){
+					san.append( (char) ('a' + Bitboard.col( source )) );
+				}
+			} else {
+				san.append( getLetterOfType( piece.getType() ) );
+				appendDisambiguation( chessGame, move, moves, san );
+			}
+			if( PackedMove.isCapture( move ) ){
+				san.append( 'x' );
+			}
+			san.append( (char) ('a' + Bitboard.col( target )) ).append( (char) ('1' + Bitboard.row( target )) );
+			if( PackedMove.isPromotion( move ) ){
+				san.append( '=' ).append( getLetterOfType( PackedMove.promotionType( move ) ) );
+			}
+		}
+		
+		chessGame.makeMove( move );
+		if( chessGame.getEndCondition() == ChessGame.EndCondition.CHECKMATE ){
+			san.append( '#' );
+		} else if( chessGame.isInCheck() ){
+			san.append( '+' );
+		}
+		chessGame.unmakeMove();
+		return san.toString();
+	}
+	
+	/**
+	 * Appends the column, row or both of the source square if another piece
+	 * of the same type can also move to the target.
+	 */
+	private static void appendDisambiguation( ChessGame chessGame, int move, MoveList moves, StringBuilder san ){
+		Bitboard bitboard = chessGame.getBitboard();
+		int source = PackedMove.source( move );
+		int target = PackedMove.target( move );
+		Type type = bitboard.getPiece( source ).getType();
+		boolean isAmbiguous = false;
+		boolean isColShared = false;
+		boolean isRowShared = false;
+		chessGame.generateLegalMoves( moves );
+		for( int i = 0; i < moves.size(); i++ ){
+			int other = moves.get( i );
+			int otherSource = PackedMove.source( other );
+			if( otherSource == source || PackedMove.target( other ) != target
+					|| bitboard.getPiece( otherSource ).getType() != type ){
+				continue;
+			}
+			isAmbiguous = true;
+			isColShared |= Bitboard.col( otherSource ) == Bitboard.col( source );
+			isRowShared |= Bitboard.row( otherSource ) == Bitboard.row( source );
+		}
+		if( isAmbiguous && (! isColShared || isRowShared) ){
+			san.append( (char) ('a' + Bitboard.col( source )) );
+		}
+		if( isAmbiguous && isColShared ){
+			san.append( (char) ('1' + Bitboard.row( source )) );
+		}
+	}
+	
+	/**
+	 * @return type of the upper case SAN letter, null for any other character.
+	 */
+	private static Type getTypeOfLetter( char letter ){
+		switch( letter ){
+		case 'K':
+			return Type.KING;
+		case 'Q':
+			return Type.QUEEN;
+		case 'R':
+			return Type.ROOK;
+		case 'B':
+			return Type.BISHOP;
+		case 'N':
+			return Type.KNIGHT;
+		default:
+			return null;
+		}
+	}
+	
+	private static char getLetterOfType( Type type ){
+		switch( type ){
+		case KING:
+			return 'K';
+		case QUEEN:
+			return 'Q';
+		case ROOK:
+			return 'R';
+		case BISHOP:
+			return 'B';
+		case KNIGHT:
+			return 'N';
+		default:
+			throw new IllegalArgumentException( "No letter for type: " + type );
+		}
+	}
+	
+}
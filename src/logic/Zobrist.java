@@ -0,0 +1,130 @@
+package logic;
+
+import logic.ChessGame.GameState;
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Random keys for Zobrist hashing. The hash of a position is the XOR of the
+ * keys of all pieces on their squares, the side key if it is black's turn,
+ * the keys of the remaining castling rights and the key of the en passant
+ * file, if any. Moving a piece therefore only needs a few XOR operations to update
+ * the hash.
+ *
+ * The keys are generated from a fixed seed, so hashes are the same in every
+ * run and can be stored.
+ */
+public final class Zobrist {
+	
+	private static final long SEED = 0x4A617661436865L;
+	
+	// Indexed by [Team.ordinal()][Type.ordinal()][square].
+	private static final long[][][] PIECE_KEYS =
+		new long[ Team.values().length ][ Type.values().length ][ Bitboard.NUMBER_OF_SQUARES ];
+	
+	/** Key that is part of the hash if it is black's turn. */
+	public static final long BLACK_TO_MOVE;
+	
+	// Indexed by the ChessGame.CASTLING_.. bit combination.
+	private static final long[] CASTLING_KEYS = new long[ 16 ];
+	
+	// Indexed by the column of the en passant square.
+	private static final long[] EN_PASSANT_KEYS = new long[ 8 ];
+	
+	static {
+		long state = SEED;
+		for( int team = 0; team < PIECE_KEYS.length; team++ ){
+			for( int type = 0; type < PIECE_KEYS[ team ].length; type++ ){
+				for( int square = 0; square < Bitboard.NUMBER_OF_SQUARES; square++ ){
+					state += 0x9E3779B97F4A7C15L;
+					PIECE_KEYS[ team ][ type ][ square ] = mix( state );
+				}
+			}
+		}
+		state += 0x9E3779B97F4A7C15L;
+		BLACK_TO_MOVE = mix( state );
+		
+		// One key per castling right; a combination of rights XORs their keys.
+		long[] castlingRightKeys = new long[ 4 ];
+		for( int i = 0; i < castlingRightKeys.length; i++ ){
+			state += 0x9E3779B97F4A7C15L;
+			castlingRightKeys[ i ] = mix( state );
+		}
+		for( int rights = 0; rights < CASTLING_KEYS.length; rights++ ){
+			for( int i = 0; i < castlingRightKeys.length; i++ ){
+				if( (rights & (1 << i)) != 0 ){
+					CASTLING_KEYS[ rights ] ^= castlingRightKeys[ i ];
+				}
+			}
+		}
+		for( int col = 0; col < EN_PASSANT_KEYS.length; col++ ){
+			state += 0x9E3779B97F4A7C15L;
+			EN_PASSANT_KEYS[ col ] = mix( state );
+		}
+	}
+	
+	private Zobrist() {
+	}
+	
+	/**
+	 * SplitMix64 finalizer.
+	 */
+	private static long mix( long z ){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * @param team of Piece.Team
+	 * @param type of Piece.Type
+	 * @param square index between 0 and 63
+	 * @return key of the piece on the square
+	 */
+	public static long pieceKey( Team team, Type type, int square ){
+		return PIECE_KEYS[ team.ordinal() ][ type.ordinal() ][ square ];
+	}
+	
+	/**
+	 * @param castlingRights combination of ChessGame.CASTLING_.. bits
+	 * @return key of the castling rights, 0 if there are none
+	 */
+	public static long castlingKey( int castlingRights ){
+		return CASTLING_KEYS[ castlingRights ];
+	}
+	
+	/**
+	 * @param enPassantSquare square index between 0 and 63, or
+	 * 		  ChessGame.NO_SQUARE
+	 * @return key of the en passant square, 0 if there is none
+	 */
+	public static long enPassantKey( int enPassantSquare ){
+		return enPassantSquare == ChessGame.NO_SQUARE ? 0L : EN_PASSANT_KEYS[ Bitboard.col( enPassantSquare ) ];
+	}
+	
+	/**
+	 * Computes the hash of a game from scratch. ChessGame keeps its hash up to
+	 * date incrementally; this method is meant for verification.
+	 * @param chessGame The game.
+	 * @return hash of the current position.
+	 */
+	public static long computeHash( ChessGame chessGame ){
+		long hash = 0L;
+		for( Piece piece : chessGame.getPieces() ){
+			if( ! piece.isCaptured() ){
+				hash ^= pieceKey( piece.getTeam(), piece.getType(),
+					Bitboard.square( piece.getRow(), piece.getCol() ) );
+			}
+		}
+		// After the final move of a game it would be the other team's turn.
+		if( chessGame.getGameState() == GameState.BLACK
+				|| chessGame.getGameState() == GameState.END
+					&& chessGame.getLastGameState() == GameState.WHITE ){
+			hash ^= BLACK_TO_MOVE;
+		}
+		hash ^= castlingKey( chessGame.getCastlingRights() );
+		hash ^= enPassantKey( chessGame.getEnPassantSquare() );
+		return hash;
+	}
+	
+}
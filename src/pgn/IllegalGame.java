@@ -0,0 +1,49 @@
+package pgn;
+
+/**
+ * A game that could not be replayed, with the move that failed.
+ */
+public class IllegalGame {
+	
+	private final PgnGame game;
+	private final int ply;
+	private final String move;
+	private final String reason;
+	
+	/**
+	 * @param game The game.
+	 * @param ply index of the failing move in the game's move list.
+	 * @param move the failing move with its number, e.g. "12... Nf6", or null
+	 * 		  if the game failed before its first move.
+	 * @param reason why the move failed.
+	 */
+	public IllegalGame( PgnGame game, int ply, String move, String reason ){
+		this.game = game;
+		this.ply = ply;
+		this.move = move;
+		this.reason = reason;
+	}
+	
+	@Override
+	public String toString() {
+		return "game " + this.game.getGameNumber() + " (line " + this.game.getLineNumber() + ", "
+			+ this.game.getTag( "White" ) + " - " + this.game.getTag( "Black" ) + "): "
+			+ (this.move != null ? this.move + ": " : "") + this.reason;
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public PgnGame getGame() {
+		return game;
+	}
+	public int getPly() {
+		return ply;
+	}
+	public String getMove() {
+		return move;
+	}
+	public String getReason() {
+		return reason;
+	}
+	
+}
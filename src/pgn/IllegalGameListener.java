@@ -0,0 +1,14 @@
+package pgn;
+
+/**
+ * Receives the games a PgnValidator could not replay.
+ */
+public interface IllegalGameListener {
+	
+	/**
+	 * Called from the worker threads, possibly at the same time.
+	 * @param illegalGame The game and the move that failed.
+	 */
+	void illegalGameFound( IllegalGame illegalGame );
+	
+}
@@ -0,0 +1,72 @@
+package pgn;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game read from a PGN file: its tag pairs, its moves in SAN and its
+ * result. Comments, variations and annotations are not kept.
+ */
+public class PgnGame {
+	
+	private final long gameNumber;
+	private final long lineNumber;
+	private final Map<String, String> tags = new LinkedHashMap<String, String>();
+	private final List<String> moves = new ArrayList<String>();
+	private String result = "*";
+	
+	/**
+	 * @param gameNumber number of the game in its file, starting at 1.
+	 * @param lineNumber line of the file the game starts on, starting at 1.
+	 */
+	public PgnGame( long gameNumber, long lineNumber ){
+		this.gameNumber = gameNumber;
+		this.lineNumber = lineNumber;
+	}
+	
+	/**
+	 * @param name tag name, e.g. "White"
+	 * @return value of the tag or null if the game has no such tag.
+	 */
+	public String getTag( String name ){
+		return this.tags.get( name );
+	}
+	
+	void setTag( String name, String value ){
+		this.tags.put( name, value );
+	}
+	
+	void addMove( String san ){
+		this.moves.add( san );
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public long getGameNumber() {
+		return gameNumber;
+	}
+	public long getLineNumber() {
+		return lineNumber;
+	}
+	public Map<String, String> getTags() {
+		return tags;
+	}
+	/**
+	 * @return the moves in SAN, e.g. "e4", "Nf3".
+	 */
+	public List<String> getMoves() {
+		return moves;
+	}
+	/**
+	 * @return "1-0", "0-1", "1/2-1/2" or "*" if unknown.
+	 */
+	public String getResult() {
+		return result;
+	}
+	void setResult( String result ){
+		this.result = result;
+	}
+	
+}
@@ -0,0 +1,204 @@
+package pgn;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the games of a PGN file one after the other. Only one line is held in
+ * memory besides the game being read, so files of any size can be streamed.
+ *
+ * A game consists of tag pair lines ("[White "Name"]") followed by the
+ * movetext. Move numbers, comments ("{..}" and ";.." ), variations ("(..)")
+ * and numeric annotation glyphs ("$1") are skipped. A game ends at its result
+ * token or when the tags of the next game begin.
+ */
+public class PgnReader implements Closeable {
+	
+	private final BufferedReader reader;
+	private String pendingLine;
+	private long lineNumber = 0;
+	private long gameNumber = 0;
+	
+	// Movetext parsing state that continues over line ends.
+	private boolean isInComment = false;
+	private int variationDepth = 0;
+	
+	private final StringBuilder token = new StringBuilder( 16 );
+	
+	public PgnReader( Reader reader ){
+		this.reader = (reader instanceof BufferedReader
+			? (BufferedReader) reader : new BufferedReader( reader, 1 << 16 ));
+	}
+	
+	/**
+	 * Reads the next game.
+	 * @return the game or null if the end of the file has been reached.
+	 * @throws IOException if reading fails.
+	 */
+	public PgnGame next() throws IOException {
+		PgnGame game = null;
+		boolean hasMovetext = false;
+		this.isInComment = false;
+		this.variationDepth = 0;
+		
+		String line;
+		while( (line = readLine()) != null ){
+			String trimmed = line.trim();
+			if( trimmed.isEmpty() || trimmed.charAt( 0 ) == '%' && ! this.isInComment ){
+				continue;
+			}
+			if( trimmed.charAt( 0 ) == '[' && ! this.isInComment && this.variationDepth == 0 ){
+				if( hasMovetext ){
+					// Tags of the next game; the current one had no result.
+					this.pendingLine = line;
+					this.lineNumber--;
+					return game;
+				}
+				if( game == null ){
+					game = new PgnGame( ++this.gameNumber, this.lineNumber );
+				}
+				parseTag( trimmed, game );
+			} else {
+				if( game == null ){
+					game = new PgnGame( ++this.gameNumber, this.lineNumber );
+				}
+				hasMovetext = true;
+				if( parseMovetext( trimmed, game ) ){
+					return game;
+				}
+			}
+		}
+		return game;
+	}
+	
+	private String readLine() throws IOException {
+		String line = this.pendingLine;
+		if( line != null ){
+			this.pendingLine = null;
+		} else {
+			line = this.reader.readLine();
+		}
+		if( line != null ){
+			this.lineNumber++;
+		}
+		return line;
+	}
+	
+	/**
+	 * Parses a tag pair such as [Event "Name"]. Malformed tags are ignored.
+	 */
+	private static void parseTag( String line, PgnGame game ){
+		int nameEnd = line.indexOf( ' ' );
+		int valueStart = line.indexOf( '"' );
+		if( nameEnd < 0 || valueStart < 0 ){
+			return;
+		}
+		StringBuilder value = new StringBuilder();
+		for( int i = valueStart + 1; i < line.length(); i++ ){
+			char c = line.charAt( i );
+			if( c == '\\' && i + 1 < line.length() ){
+				value.append( line.charAt( ++i ) );
+			} else if( c == '"' ){
+				break;
+			} else {
+				value.append( c );
+			}
+		}
+		game.setTag( line.substring( 1, nameEnd ), value.toString() );
+	}
+	
+	/**
+	 * Adds the moves of a movetext line to the game.
+	 * @return True, if the line contained the result, i.e. the game is
+	 * 		   complete.
+	 */
+	private boolean parseMovetext( String line, PgnGame game ){
+		this.token.setLength( 0 );
+		for( int i = 0; i < line.length(); i++ ){
+			char c = line.charAt( i );
+			if( this.isInComment ){
+				this.isInComment = (c != '}');
+			} else if( c == '{' ){
+				if( endToken( game ) ){
+					return true;
+				}
+				this.isInComment = true;
+			} else if( c == ';' ){
+				// Comment up to the end of the line.
+				break;
+			} else if( c == '(' ){
+				if( endToken( game ) ){
+					return true;
+				}
+				this.variationDepth++;
+			} else if( c == ')' ){
+				this.token.setLength( 0 );
+				this.variationDepth = Math.max( 0, this.variationDepth - 1 );
+			} else if( this.variationDepth > 0 ){
+				continue;
+			} else if( c == ' ' || c == '\t' ){
+				if( endToken( game ) ){
+					return true;
+				}
+			} else if( c == '.' && isMoveNumber() ){
+				// "12." or "12..." directly followed by the move.
+				this.token.setLength( 0 );
+			} else {
+				this.token.append( c );
+			}
+		}
+		return endToken( game );
+	}
+	
+	/**
+	 * @return True, if the token read so far consists of digits only.
+	 */
+	private boolean isMoveNumber() {
+		for( int i = 0; i < this.token.length(); i++ ){
+			char c = this.token.charAt( i );
+			if( c < '0' || c > '9' ){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds the current token as move or result.
+	 * @return True, if the token was the result.
+	 */
+	private boolean endToken( PgnGame game ){
+		if( this.token.length() == 0 || this.variationDepth > 0 ){
+			this.token.setLength( 0 );
+			return false;
+		}
+		String text = this.token.toString();
+		this.token.setLength( 0 );
+		if( text.equals( "1-0" ) || text.equals( "0-1" ) || text.equals( "1/2-1/2" ) || text.equals( "*" ) ){
+			game.setResult( text );
+			return true;
+		}
+		if( text.charAt( 0 ) != '$' && ! isMoveNumber( text ) ){
+			game.addMove( text );
+		}
+		return false;
+	}
+	
+	private static boolean isMoveNumber( String text ){
+		for( int i = 0; i < text.length(); i++ ){
+			char c = text.charAt( i );
+			if( (c < '0' || c > '9') && c != '.' ){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+	
+}
@@ -0,0 +1,271 @@
+package pgn;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import logic.ChessGame;
+import logic.ChessGame.GameState;
+import logic.MoveList;
+import logic.MoveValidator.Rejection;
+import logic.San;
+
+/**
+ * Replays the games of PGN files through the rules of ChessGame to find games
+ * with illegal moves. Every move is decoded from SAN, checked by the
+ * MoveValidator and executed.
+ *
+ * The file is read by the calling thread and handed to the worker threads in
+ * batches through a bounded queue. Reading blocks while the workers are
+ * behind, so memory use does not depend on the size of the file. If a worker
+ * fails, e.g. because the listener throws, reading stops and validate
+ * rethrows the failure instead of waiting for the dead worker.
+ *
+ * Usage: PgnValidator [-threads n] file.pgn [file.pgn ...]
+ */
+public class PgnValidator {
+	
+	private static final int BATCH_SIZE = 64;
+	// Number of batches that may wait in the queue per worker thread.
+	private static final int QUEUED_BATCHES_PER_THREAD = 4;
+	// How long the reader waits for room in the queue before it checks
+	// whether a worker failed.
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	// Tells a worker thread that no more games follow.
+	private static final List<PgnGame> END_OF_INPUT = new ArrayList<PgnGame>();
+	
+	private final int threads;
+	private IllegalGameListener listener;
+	
+	private final LongAdder games = new LongAdder();
+	private final LongAdder moves = new LongAdder();
+	private final LongAdder illegalGames = new LongAdder();
+	
+	/**
+	 * @param threads number of worker threads, at least 1.
+	 */
+	public PgnValidator( int threads ){
+		if( threads < 1 ){
+			throw new IllegalArgumentException( "At least one thread is needed." );
+		}
+		this.threads = threads;
+	}
+	
+	/**
+	 * Validates all games of the reader and returns when every game has been
+	 * replayed. Can be called several times; the counts add up.
+	 * @param reader The games.
+	 * @throws IOException if reading fails.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 * @throws RuntimeException the first exception thrown in a worker thread,
+	 * 		   e.g. by the listener; the remaining games are not validated.
+	 */
+	public void validate( PgnReader reader ) throws IOException, InterruptedException {
+		final BlockingQueue<List<PgnGame>> queue =
+			new ArrayBlockingQueue<List<PgnGame>>( this.threads * QUEUED_BATCHES_PER_THREAD );
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] workers = new Thread[ this.threads ];
+		for( int i = 0; i < workers.length; i++ ){
+			workers[ i ] = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					try {
+						work( queue, failure );
+					} catch( Throwable e ){
+						failure.compareAndSet( null, e );
+					}
+				}
+			}, "pgn-validator-" + i );
+			workers[ i ].setDaemon( true );
+			workers[ i ].start();
+		}
+		
+		try {
+			List<PgnGame> batch = new ArrayList<PgnGame>( BATCH_SIZE );
+			PgnGame game;
+			while( (game = reader.next()) != null ){
+				batch.add( game );
+				if( batch.size() == BATCH_SIZE ){
+					if( ! offer( queue, batch, failure ) ){
+						break;
+					}
+					batch = new ArrayList<PgnGame>( BATCH_SIZE );
+				}
+			}
+			if( ! batch.isEmpty() ){
+				offer( queue, batch, failure );
+			}
+		} finally {
+			// Workers that are still alive take the end marker or stop at
+			// their next batch because of the failure.
+			for( int i = 0; i < workers.length; i++ ){
+				if( ! offer( queue, END_OF_INPUT, failure ) ){
+					break;
+				}
+			}
+			for( Thread worker : workers ){
+				worker.join();
+			}
+		}
+		Throwable e = failure.get();
+		if( e instanceof RuntimeException ){
+			throw (RuntimeException) e;
+		} else if( e instanceof Error ){
+			throw (Error) e;
+		} else if( e != null ){
+			throw new IllegalStateException( "Validating the games failed: " + e.getMessage(), e );
+		}
+	}
+	
+	/**
+	 * Hands a batch to the workers. Waits while the queue is full, but gives
+	 * up when a worker has failed, so a dead pool cannot block the reader.
+	 * @return False, if a worker failed and the batch was not queued.
+	 */
+	private static boolean offer( BlockingQueue<List<PgnGame>> queue, List<PgnGame> batch,
+			AtomicReference<Throwable> failure ) throws InterruptedException {
+		while( ! queue.offer( batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) ){
+			if( failure.get() != null ){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void work( BlockingQueue<List<PgnGame>> queue, AtomicReference<Throwable> failure ){
+		MoveList moveList = new MoveList();
+		try {
+			List<PgnGame> batch;
+			while( (batch = queue.take()) != END_OF_INPUT && failure.get() == null ){
+				for( PgnGame game : batch ){
+					IllegalGame illegalGame = replay( game, moveList );
+					this.games.increment();
+					if( illegalGame == null ){
+						this.moves.add( game.getMoves().size() );
+					} else {
+						this.moves.add( illegalGame.getPly() );
+						this.illegalGames.increment();
+						if( this.listener != null ){
+							this.listener.illegalGameFound( illegalGame );
+						}
+					}
+				}
+			}
+		} catch( InterruptedException e ){
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Replays a game from the start position, or from its "FEN" tag if it
+	 * has one.
+	 * @param game The game.
+	 * @param moveList Buffer for generating moves.
+	 * @return the move that failed or null if the whole game is valid.
+	 */
+	public static IllegalGame replay( PgnGame game, MoveList moveList ){
+		ChessGame chessGame;
+		String fen = game.getTag( "FEN" );
+		try {
+			chessGame = (fen == null ? new ChessGame() : ChessGame.fromFen( fen ));
+		} catch( IllegalArgumentException e ){
+			return new IllegalGame( game, 0, null, e.getMessage() );
+		} catch( RuntimeException e ){
+			return new IllegalGame( game, 0, null, "replay failed: " + e );
+		}
+		
+		List<String> sanMoves = game.getMoves();
+		for( int ply = 0; ply < sanMoves.size(); ply++ ){
+			String san = sanMoves.get( ply );
+			String reason;
+			try {
+				int move = San.parse( chessGame, san, moveList );
+				Rejection rejection = chessGame.getMoveValidator().validateMove( move );
+				if( rejection == Rejection.NONE ){
+					chessGame.makeMove( move );
+					continue;
+				}
+				reason = rejection.getDescription();
+			} catch( IllegalArgumentException e ){
+				reason = e.getMessage();
+			} catch( RuntimeException e ){
+				// A bug rather than an illegal move; the game is reported
+				// all the same, so one game cannot stop the validation.
+				reason = "replay failed: " + e;
+			}
+			String moveNumber = chessGame.getFullmoveNumber()
+				+ (chessGame.getGameState() == GameState.BLACK ? "... " : ". ");
+			return new IllegalGame( game, ply, moveNumber + san, reason );
+		}
+		return null;
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public void setListener(IllegalGameListener listener) {
+		this.listener = listener;
+	}
+	public long getGameCount() {
+		return games.sum();
+	}
+	/**
+	 * @return number of moves replayed, up to the failing move of illegal
+	 * 		   games.
+	 */
+	public long getMoveCount() {
+		return moves.sum();
+	}
+	public long getIllegalGameCount() {
+		return illegalGames.sum();
+	}
+	
+	public static void main( String[] args ) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int argIndex = 0;
+		if( args.length > 1 && args[ 0 ].equals( "-threads" ) ){
+			threads = Integer.parseInt( args[ 1 ] );
+			argIndex = 2;
+		}
+		if( args.length <= argIndex ){
+			System.out.println( "usage: PgnValidator [-threads n] file.pgn [file.pgn ...]" );
+			return;
+		}
+		
+		PgnValidator validator = new PgnValidator( threads );
+		validator.setListener( new IllegalGameListener() {
+			@Override
+			public synchronized void illegalGameFound( IllegalGame illegalGame ){
+				System.out.println( illegalGame );
+			}
+		} );
+		long startTime = System.nanoTime();
+		for( ; argIndex < args.length; argIndex++ ){
+			PgnReader reader = new PgnReader( new InputStreamReader(
+				new FileInputStream( args[ argIndex ] ), StandardCharsets.UTF_8 ) );
+			try {
+				validator.validate( reader );
+			} finally {
+				reader.close();
+			}
+		}
+		long elapsedNanos = Math.max( 1, System.nanoTime() - startTime );
+		
+		System.out.println();
+		System.out.println( "threads:       " + threads );
+		System.out.println( "games:         " + validator.getGameCount() );
+		System.out.println( "illegal games: " + validator.getIllegalGameCount() );
+		System.out.println( "moves:         " + validator.getMoveCount() );
+		System.out.println( "time (ms):     " + elapsedNanos / 1000000 );
+		System.out.println( "games/sec:     " + (long)( validator.getGameCount() * 1e9 / elapsedNanos ) );
+		System.out.println( "moves/sec:     " + (long)( validator.getMoveCount() * 1e9 / elapsedNanos ) );
+	}
+	
+}
@@ -0,0 +1,318 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import logic.Attacks;
+import logic.ChessGame;
+import logic.ChessGame.GameState;
+
+/**
+ * Headless server hosting independent ChessGame sessions over a line based
+ * TCP protocol. Every connection is served by its own thread: a virtual
+ * thread on Java 21 and later, otherwise a thread of a cached pool.
+ *
+ * Commands, one per line; every reply is one line starting with "ok" or
+ * "error":
+ * <pre>
+ * new [fen]          creates a session          ok &lt;id&gt;
+ * move &lt;id&gt; &lt;move&gt;   e.g. "e2e4", "e2-e4", "Nf3" ok WHITE|BLACK|END
+ * moves &lt;id&gt;         legal moves                 ok e2e4 d2d4 ...
+ * fen &lt;id&gt;           current position           ok &lt;fen&gt;
+ * stats [id]         session or server stats    ok moves 40 avg-us 12.5 ...
+ * close &lt;id&gt;         ends a session             ok
+ * quit               closes the connection
+ * </pre>
+ * A connection may play in any session, but the sessions it created are
+ * closed when it disconnects. Replies are flushed when no further command of
+ * the client is buffered, so pipelined commands share network writes.
+ *
+ * Usage: GameServer [-port n] [-report seconds]
+ */
+public class GameServer {
+	
+	public static final int DEFAULT_PORT = 7070;
+	
+	private final Map<Long, GameSession> sessions = new ConcurrentHashMap<Long, GameSession>();
+	private final AtomicLong nextSessionId = new AtomicLong( 1 );
+	private final LongAdder moveCount = new LongAdder();
+	private final LongAdder moveNanos = new LongAdder();
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final long startNanos = System.nanoTime();
+	private volatile ServerSocket serverSocket;
+	
+	/**
+	 * Accepts connections until the server is closed.
+	 * @param port The TCP port, 0 for any free port (see getPort()).
+	 * @throws IOException if the port cannot be opened.
+	 */
+	public void serve( int port ) throws IOException {
+		ServerSocket socket = new ServerSocket();
+		socket.setReuseAddress( true );
+		socket.bind( new InetSocketAddress( port ), 1024 );
+		this.serverSocket = socket;
+		ExecutorService executor = newConnectionExecutor( "game-server-connection" );
+		try {
+			while( ! socket.isClosed() ){
+				final Socket connection;
+				try {
+					connection = socket.accept();
+				} catch( IOException e ){
+					if( socket.isClosed() ){
+						break;
+					}
+					throw e;
+				}
+				executor.execute( new Runnable() {
+					@Override
+					public void run() {
+						serveConnection( connection );
+					}
+				} );
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Stops accepting connections. Open connections are served until the
+	 * clients disconnect.
+	 */
+	public void close() throws IOException {
+		if( this.serverSocket != null ){
+			this.serverSocket.close();
+		}
+	}
+	
+	/**
+	 * Creates an executor that runs every task on a new virtual thread if the
+	 * Java runtime has them (Java 21 and later), otherwise on a cached pool of
+	 * daemon threads. Virtual threads are looked up by reflection, as the
+	 * sources are compiled for Java 8.
+	 * @param name Name of the pool threads.
+	 */
+	static ExecutorService newConnectionExecutor( final String name ){
+		try {
+			return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+		} catch( ReflectiveOperationException e ){
+			final AtomicInteger threadNumber = new AtomicInteger();
+			return Executors.newCachedThreadPool( new ThreadFactory() {
+				@Override
+				public Thread newThread( Runnable runnable ){
+					Thread thread = new Thread( runnable, name + "-" + threadNumber.incrementAndGet() );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		}
+	}
+	
+	/**
+	 * @return True, if newConnectionExecutor() uses virtual threads.
+	 */
+	static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+			return true;
+		} catch( NoSuchMethodException e ){
+			return false;
+		}
+	}
+	
+	private void serveConnection( Socket connection ){
+		this.connectionCount.incrementAndGet();
+		List<GameSession> ownSessions = new ArrayList<GameSession>();
+		try {
+			connection.setTcpNoDelay( true );
+			BufferedReader reader = new BufferedReader( new InputStreamReader( connection.getInputStream(), StandardCharsets.UTF_8 ) );
+			Writer writer = new BufferedWriter( new OutputStreamWriter( connection.getOutputStream(), StandardCharsets.UTF_8 ) );
+			String line;
+			while( (line = reader.readLine()) != null ){
+				long startNanos = System.nanoTime();
+				String[] words = line.trim().split( "\\s+", 3 );
+				if( words[ 0 ].equals( "quit" ) ){
+					break;
+				}
+				String reply;
+				try {
+					reply = execute( words, line, startNanos, ownSessions );
+				} catch( RuntimeException e ){
+					reply = "error " + e.getMessage();
+				}
+				writer.write( reply );
+				writer.write( '\n' );
+				if( ! reader.ready() ){
+					writer.flush();
+				}
+			}
+			writer.flush();
+		} catch( IOException e ){
+			// The client went away; its sessions are closed below.
+		} finally {
+			for( GameSession session : ownSessions ){
+				this.sessions.remove( session.getId() );
+			}
+			this.connectionCount.decrementAndGet();
+			try {
+				connection.close();
+			} catch( IOException e ){
+			}
+		}
+	}
+	
+	/**
+	 * @param words the command line split into command, id and rest.
+	 * @return the reply line.
+	 */
+	private String execute( String[] words, String line, long startNanos, List<GameSession> ownSessions ){
+		String command = words[ 0 ];
+		if( command.equals( "new" ) ){
+			String fen = line.trim().substring( command.length() ).trim();
+			ChessGame chessGame = (fen.isEmpty() ? new ChessGame() : ChessGame.fromFen( fen ));
+			GameSession session = new GameSession( this.nextSessionId.getAndIncrement(), chessGame );
+			this.sessions.put( session.getId(), session );
+			ownSessions.add( session );
+			return "ok " + session.getId();
+		}
+		if( command.equals( "stats" ) && words.length == 1 ){
+			return "ok sessions " + this.sessions.size() + " connections " + this.connectionCount.get()
+				+ " moves " + this.moveCount.sum() + " moves/sec " + (long) getMovesPerSecond();
+		}
+		if( words.length < 2 ){
+			return "error unknown command: " + line;
+		}
+		GameSession session = getSession( words[ 1 ] );
+		if( session == null ){
+			return "error no session " + words[ 1 ];
+		}
+		if( command.equals( "move" ) && words.length == 3 ){
+			GameState gameState = session.move( words[ 2 ].trim(), startNanos );
+			this.moveCount.increment();
+			this.moveNanos.add( System.nanoTime() - startNanos );
+			return "ok " + gameState;
+		} else if( command.equals( "moves" ) ){
+			return "ok " + session.legalMoves();
+		} else if( command.equals( "fen" ) ){
+			return "ok " + session.fen();
+		} else if( command.equals( "stats" ) ){
+			return "ok " + session.statistics();
+		} else if( command.equals( "close" ) ){
+			this.sessions.remove( session.getId() );
+			ownSessions.remove( session );
+			return "ok";
+		}
+		return "error unknown command: " + line;
+	}
+	
+	private GameSession getSession( String id ){
+		try {
+			return this.sessions.get( Long.parseLong( id ) );
+		} catch( NumberFormatException e ){
+			return null;
+		}
+	}
+	
+	/**
+	 * Prints the sessions, moves per second and move latencies of the last
+	 * interval every few seconds, on a daemon thread.
+	 */
+	public void startReporting( final int intervalSeconds ){
+		Thread reporter = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				long lastMoves = 0;
+				long lastNanos = 0;
+				while( true ){
+					try {
+						Thread.sleep( intervalSeconds * 1000L );
+					} catch( InterruptedException e ){
+						return;
+					}
+					long moves = moveCount.sum();
+					long nanos = moveNanos.sum();
+					long intervalMoves = moves - lastMoves;
+					long maxNanos = 0;
+					for( GameSession session : sessions.values() ){
+						maxNanos = Math.max( maxNanos, session.getMaxNanos() );
+					}
+					System.out.println( "sessions " + sessions.size()
+						+ ", connections " + connectionCount.get()
+						+ ", moves/sec " + intervalMoves / intervalSeconds
+						+ ", avg latency (us) " + (intervalMoves == 0 ? 0 : (nanos - lastNanos) / 1000 / intervalMoves)
+						+ ", max latency (us) " + maxNanos / 1000 );
+					lastMoves = moves;
+					lastNanos = nanos;
+				}
+			}
+		}, "game-server-report" );
+		reporter.setDaemon( true );
+		reporter.start();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	/**
+	 * @return the port the server listens on, -1 before serve() is called.
+	 */
+	public int getPort() {
+		return this.serverSocket == null ? -1 : this.serverSocket.getLocalPort();
+	}
+	public int getSessionCount() {
+		return this.sessions.size();
+	}
+	public long getMoveCount() {
+		return this.moveCount.sum();
+	}
+	/**
+	 * @return moves per second since the server was created.
+	 */
+	public double getMovesPerSecond() {
+		return this.moveCount.sum() * 1e9 / Math.max( 1, System.nanoTime() - this.startNanos );
+	}
+	
+	/**
+	 * Starts a server.
+	 * Usage: GameServer [-port n] [-report seconds]
+	 */
+	public static void main( String[] args ) throws IOException {
+		int port = DEFAULT_PORT;
+		int reportSeconds = 5;
+		for( int i = 0; i < args.length; i++ ){
+			if( args[ i ].equals( "-port" ) ){
+				port = Integer.parseInt( args[ ++i ] );
+			} else if( args[ i ].equals( "-report" ) ){
+				reportSeconds = Integer.parseInt( args[ ++i ] );
+			} else {
+				System.out.println( "usage: GameServer [-port n] [-report seconds]" );
+				return;
+			}
+		}
+		GameServer server = new GameServer();
+		if( reportSeconds > 0 ){
+			server.startReporting( reportSeconds );
+		}
+		System.out.println( "listening on port " + port + (hasVirtualThreads() ? " (virtual threads)" : " (thread pool)") );
+		System.out.println( Attacks.getTableInfo() );
+		server.serve( port );
+	}
+	
+}
@@ -0,0 +1,159 @@
+package server;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import logic.ChessGame;
+import logic.ChessGame.GameState;
+import logic.Move;
+import logic.MoveList;
+import logic.MoveValidator.Rejection;
+import logic.PackedMove;
+import logic.Position;
+import logic.San;
+
+/**
+ * A game hosted by the GameServer. Commands for one session are executed one
+ * at a time, in the order they take the lock, even if several connections
+ * play in it. The lock is a ReentrantLock rather than a synchronized block,
+ * as a virtual thread waiting for a monitor blocks its carrier thread.
+ *
+ * After every move the session publishes an immutable snapshot of the
+ * position (see Position), so reading the position takes no lock and does
+ * not wait for a move in progress.
+ */
+public class GameSession {
+	
+	private final long id;
+	private final ChessGame chessGame;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final MoveList moveList = new MoveList();
+	// Snapshot of the position after the last move, replaced under the lock.
+	private volatile Position position;
+	// :: STATISTICS :: guarded by the lock
+	private long moveCount;
+	private long totalNanos;
+	private long maxNanos;
+	
+	/**
+	 * @param id The session id.
+	 * @param chessGame The game, owned by the session from now on.
+	 */
+	GameSession( long id, ChessGame chessGame ){
+		this.id = id;
+		this.chessGame = chessGame;
+		this.position = chessGame.getPosition();
+	}
+	
+	/**
+	 * Validates and executes a move.
+	 * @param input The move in coordinate notation (e.g. "e2e4" or "e2-e4")
+	 * 		  or SAN (e.g. "Nf3").
+	 * @param startNanos System.nanoTime() when the command was received; the
+	 * 		  time until the move is done counts as its latency.
+	 * @return the game state after the move.
+	 * @throws IllegalArgumentException if the move is malformed or invalid or
+	 * 		   the game is over.
+	 */
+	GameState move( String input, long startNanos ){
+		this.lock.lock();
+		try {
+			if( this.chessGame.getGameState() == GameState.END ){
+				throw new IllegalArgumentException( "game over" );
+			}
+			Move move = isCoordinateMove( input ) ? Move.parse( input )
+				: PackedMove.toMove( San.parse( this.chessGame, input, this.moveList ) );
+			Rejection rejection = this.chessGame.getMoveValidator().validateMove( move );
+			if( rejection != Rejection.NONE ){
+				throw new IllegalArgumentException( rejection.getDescription() );
+			}
+			this.chessGame.makeMove( move );
+			this.position = this.chessGame.getPosition();
+			
+			long nanos = System.nanoTime() - startNanos;
+			this.moveCount++;
+			this.totalNanos += nanos;
+			this.maxNanos = Math.max( this.maxNanos, nanos );
+			return this.chessGame.getGameState();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	private static boolean isCoordinateMove( String input ){
+		String normalized = input.replace( "-", "" );
+		return (normalized.length() == 4 || normalized.length() == 5)
+			&& normalized.charAt( 0 ) >= 'a' && normalized.charAt( 0 ) <= 'h'
+			&& normalized.charAt( 1 ) >= '1' && normalized.charAt( 1 ) <= '8'
+			&& normalized.charAt( 2 ) >= 'a' && normalized.charAt( 2 ) <= 'h'
+			&& normalized.charAt( 3 ) >= '1' && normalized.charAt( 3 ) <= '8';
+	}
+	
+	/**
+	 * @return the moves of the side to move in coordinate notation, separated
+	 * 		   by spaces; empty if the game is over.
+	 */
+	String legalMoves() {
+		this.lock.lock();
+		try {
+			StringBuilder moves = new StringBuilder();
+			if( this.chessGame.getGameState() != GameState.END ){
+				this.chessGame.generateLegalMoves( this.moveList );
+				for( int i = 0; i < this.moveList.size(); i++ ){
+					if( i > 0 ){
+						moves.append( ' ' );
+					}
+					moves.append( PackedMove.toString( this.moveList.get( i ) ) );
+				}
+			}
+			return moves.toString();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the position in Forsyth-Edwards Notation.
+	 */
+	String fen() {
+		return this.position.toFen();
+	}
+	
+	/**
+	 * @return e.g. "moves 40 avg-us 12.5 max-us 230.0"
+	 */
+	String statistics() {
+		this.lock.lock();
+		try {
+			return "moves " + this.moveCount
+				+ " avg-us " + (this.moveCount == 0 ? 0.0 : this.totalNanos / 1000.0 / this.moveCount)
+				+ " max-us " + this.maxNanos / 1000.0;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public long getId() {
+		return id;
+	}
+	/**
+	 * @return snapshot of the position after the last move; may be read
+	 * 		   without holding the session's lock.
+	 */
+	public Position getPosition() {
+		return position;
+	}
+	/**
+	 * @return the highest latency of a move so far, in nanoseconds.
+	 */
+	long getMaxNanos() {
+		this.lock.lock();
+		try {
+			return maxNanos;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+}
@@ -0,0 +1,244 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the GameServer. Every connection plays random games in
+ * a number of sessions, taking turns between them, and measures the round
+ * trip time of each move command. At the end it prints the moves per second
+ * and the latency percentiles. With -local it starts a server in the same
+ * process first.
+ *
+ * Usage: LoadGenerator [-local] [-host h] [-port n] [-connections n]
+ * 		  [-sessions n] [-seconds n] [-plies n]
+ */
+public class LoadGenerator {
+	
+	private String host = "localhost";
+	private int port = GameServer.DEFAULT_PORT;
+	private int connections = 100;
+	private int sessionsPerConnection = 10;
+	private int seconds = 10;
+	private int maxPlies = 200;
+	
+	private final AtomicLong errorCount = new AtomicLong();
+	private final AtomicLong gameCount = new AtomicLong();
+	
+	/**
+	 * Round trip times of the move commands of one connection.
+	 */
+	private static class Latencies {
+		long[] nanos = new long[ 1024 ];
+		int size;
+		
+		void add( long latency ){
+			if( this.size == this.nanos.length ){
+				this.nanos = Arrays.copyOf( this.nanos, this.size * 2 );
+			}
+			this.nanos[ this.size++ ] = latency;
+		}
+	}
+	
+	/**
+	 * Runs the load and prints the results.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public void run() throws InterruptedException {
+		final long endNanos = System.nanoTime() + this.seconds * 1000000000L;
+		final List<Latencies> results = new ArrayList<Latencies>();
+		ExecutorService executor = GameServer.newConnectionExecutor( "load-generator" );
+		long startNanos = System.nanoTime();
+		for( int i = 0; i < this.connections; i++ ){
+			final Latencies latencies = new Latencies();
+			results.add( latencies );
+			final long seed = i;
+			executor.execute( new Runnable() {
+				@Override
+				public void run() {
+					try {
+						playGames( new Random( seed ), endNanos, latencies );
+					} catch( IOException e ){
+						errorCount.incrementAndGet();
+						System.out.println( "connection failed: " + e.getMessage() );
+					}
+				}
+			} );
+		}
+		executor.shutdown();
+		executor.awaitTermination( this.seconds + 60, TimeUnit.SECONDS );
+		long elapsedNanos = Math.max( 1, System.nanoTime() - startNanos );
+		
+		int moveCount = 0;
+		for( Latencies latencies : results ){
+			moveCount += latencies.size;
+		}
+		long[] all = new long[ moveCount ];
+		int offset = 0;
+		for( Latencies latencies : results ){
+			System.arraycopy( latencies.nanos, 0, all, offset, latencies.size );
+			offset += latencies.size;
+		}
+		Arrays.sort( all );
+		
+		System.out.println( "connections: " + this.connections + ", sessions: " + this.connections * this.sessionsPerConnection
+			+ (GameServer.hasVirtualThreads() ? " (virtual threads)" : " (thread pool)") );
+		System.out.println( "games:       " + this.gameCount.get() );
+		System.out.println( "moves:       " + moveCount );
+		System.out.println( "errors:      " + this.errorCount.get() );
+		System.out.println( "moves/sec:   " + (long)( moveCount * 1e9 / elapsedNanos ) );
+		if( moveCount > 0 ){
+			System.out.println( "latency (us): p50 " + percentile( all, 50 ) + ", p90 " + percentile( all, 90 )
+				+ ", p99 " + percentile( all, 99 ) + ", max " + all[ all.length - 1 ] / 1000 );
+		}
+	}
+	
+	private static long percentile( long[] sorted, int percent ){
+		return sorted[ (int) Math.min( sorted.length - 1, (long) sorted.length * percent / 100 ) ] / 1000;
+	}
+	
+	/**
+	 * Plays random games over one connection until the end time.
+	 */
+	private void playGames( Random random, long endNanos, Latencies latencies ) throws IOException {
+		Socket socket = new Socket( this.host, this.port );
+		try {
+			socket.setTcpNoDelay( true );
+			BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.UTF_8 ) );
+			Writer writer = new BufferedWriter( new OutputStreamWriter( socket.getOutputStream(), StandardCharsets.UTF_8 ) );
+			String[] sessionIds = new String[ this.sessionsPerConnection ];
+			int[] plies = new int[ this.sessionsPerConnection ];
+			for( int i = 0; i < sessionIds.length; i++ ){
+				sessionIds[ i ] = request( reader, writer, "new" );
+			}
+			while( System.nanoTime() < endNanos ){
+				for( int i = 0; i < sessionIds.length; i++ ){
+					String[] moves = request( reader, writer, "moves " + sessionIds[ i ] ).split( " " );
+					String state = "END";
+					if( ! moves[ 0 ].isEmpty() && plies[ i ] < this.maxPlies ){
+						long startNanos = System.nanoTime();
+						state = request( reader, writer, "move " + sessionIds[ i ] + " " + moves[ random.nextInt( moves.length ) ] );
+						latencies.add( System.nanoTime() - startNanos );
+						plies[ i ]++;
+					}
+					if( state.equals( "END" ) ){
+						request( reader, writer, "close " + sessionIds[ i ] );
+						sessionIds[ i ] = request( reader, writer, "new" );
+						plies[ i ] = 0;
+						this.gameCount.incrementAndGet();
+					}
+				}
+			}
+			writer.write( "quit\n" );
+			writer.flush();
+		} finally {
+			socket.close();
+		}
+	}
+	
+	/**
+	 * Sends a command and waits for the reply.
+	 * @return the reply without "ok ".
+	 * @throws IOException if the connection fails or the reply is an error.
+	 */
+	private static String request( BufferedReader reader, Writer writer, String command ) throws IOException {
+		writer.write( command );
+		writer.write( '\n' );
+		writer.flush();
+		String reply = reader.readLine();
+		if( reply == null || ! reply.startsWith( "ok" ) ){
+			throw new IOException( command + ": " + reply );
+		}
+		return reply.length() > 3 ? reply.substring( 3 ) : "";
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public void setHost(String host) {
+		this.host = host;
+	}
+	public void setPort(int port) {
+		this.port = port;
+	}
+	public void setConnections(int connections) {
+		this.connections = connections;
+	}
+	public void setSessionsPerConnection(int sessionsPerConnection) {
+		this.sessionsPerConnection = sessionsPerConnection;
+	}
+	public void setSeconds(int seconds) {
+		this.seconds = seconds;
+	}
+	/**
+	 * @param maxPlies number of plies after which a game is given up and a
+	 * 		  new one started.
+	 */
+	public void setMaxPlies(int maxPlies) {
+		this.maxPlies = maxPlies;
+	}
+	
+	/**
+	 * Runs a load test.
+	 * Usage: LoadGenerator [-local] [-host h] [-port n] [-connections n]
+	 * 		  [-sessions n] [-seconds n] [-plies n]
+	 */
+	public static void main( String[] args ) throws Exception {
+		LoadGenerator generator = new LoadGenerator();
+		boolean isLocal = false;
+		for( int i = 0; i < args.length; i++ ){
+			if( args[ i ].equals( "-local" ) ){
+				isLocal = true;
+			} else if( args[ i ].equals( "-host" ) ){
+				generator.setHost( args[ ++i ] );
+			} else if( args[ i ].equals( "-port" ) ){
+				generator.setPort( Integer.parseInt( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-connections" ) ){
+				generator.setConnections( Integer.parseInt( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-sessions" ) ){
+				generator.setSessionsPerConnection( Integer.parseInt( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-seconds" ) ){
+				generator.setSeconds( Integer.parseInt( args[ ++i ] ) );
+			} else if( args[ i ].equals( "-plies" ) ){
+				generator.setMaxPlies( Integer.parseInt( args[ ++i ] ) );
+			} else {
+				System.out.println( "usage: LoadGenerator [-local] [-host h] [-port n] [-connections n] [-sessions n] [-seconds n] [-plies n]" );
+				return;
+			}
+		}
+		if( isLocal ){
+			final GameServer server = new GameServer();
+			Thread serverThread = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					try {
+						server.serve( 0 );
+					} catch( IOException e ){
+						System.out.println( "server failed: " + e.getMessage() );
+					}
+				}
+			}, "game-server" );
+			serverThread.setDaemon( true );
+			serverThread.start();
+			while( server.getPort() < 0 ){
+				Thread.sleep( 10 );
+			}
+			generator.setHost( "localhost" );
+			generator.setPort( server.getPort() );
+		}
+		generator.run();
+	}
+	
+}
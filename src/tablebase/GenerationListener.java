@@ -0,0 +1,18 @@
+package tablebase;
+
+/**
+ * Receives the progress of a TablebaseGenerator.
+ */
+public interface GenerationListener {
+	
+	/**
+	 * Called after a table has been generated, also for the tables of the
+	 * endings it depends on. Not called for tables read from their files.
+	 * @param material The ending.
+	 * @param resolvedPositions number of won or lost positions.
+	 * @param levels number of levels (plies to mate) that were processed.
+	 * @param millis time taken in milliseconds.
+	 */
+	void tableGenerated( Material material, long resolvedPositions, int levels, long millis );
+	
+}
@@ -0,0 +1,165 @@
+package tablebase;
+
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * The pieces of an ending, named like "KQK" (king and queen against king) or
+ * "KRKN". White's pieces come first, each side's pieces in the order queen,
+ * rook, bishop, knight, pawn, so every ending has one name.
+ *
+ * Tables are stored for the normalized name only, where white has more or
+ * stronger pieces; "KKQ" is probed as "KQK" with the colors swapped.
+ *
+ * Every piece has a slot: the white king first, then the other white pieces,
+ * then the black king and the other black pieces. A position of the ending is
+ * indexed by the side to move and the squares of the slots, 6 bits each.
+ */
+public final class Material {
+	
+	public static final int MAX_PIECES = 4;
+	
+	// Letters of the pieces besides the king, in name order.
+	static final String LETTERS = "QRBNP";
+	static final Type[] LETTER_TYPES = { Type.QUEEN, Type.ROOK, Type.BISHOP, Type.KNIGHT, Type.PAWN };
+	
+	private final String name;
+	private final Team[] teams;
+	private final Type[] types;
+	private final int whitePieceCount;
+	
+	private Material( String whiteLetters, String blackLetters ){
+		this.name = "K" + whiteLetters + "K" + blackLetters;
+		int pieceCount = 2 + whiteLetters.length() + blackLetters.length();
+		this.teams = new Team[ pieceCount ];
+		this.types = new Type[ pieceCount ];
+		this.whitePieceCount = 1 + whiteLetters.length();
+		int slot = 0;
+		for( Team team : new Team[]{ Team.WHITE, Team.BLACK } ){
+			String letters = (team == Team.WHITE ? whiteLetters : blackLetters);
+			this.teams[ slot ] = team;
+			this.types[ slot++ ] = Type.KING;
+			for( int i = 0; i < letters.length(); i++ ){
+				this.teams[ slot ] = team;
+				this.types[ slot++ ] = LETTER_TYPES[ LETTERS.indexOf( letters.charAt( i ) ) ];
+			}
+		}
+	}
+	
+	/**
+	 * @param name name of the ending, e.g. "KBNK"; the pieces of a side may
+	 * 		  be in any order.
+	 * @return the ending, with normalized name.
+	 * @throws IllegalArgumentException if the name is malformed or has more
+	 * 		   than MAX_PIECES pieces.
+	 */
+	public static Material parse( String name ){
+		String upperName = name.toUpperCase();
+		int blackKing = upperName.indexOf( 'K', 1 );
+		if( upperName.isEmpty() || upperName.charAt( 0 ) != 'K' || blackKing < 0 ){
+			throw new IllegalArgumentException( "invalid ending: " + name );
+		}
+		String whiteLetters = sortLetters( upperName.substring( 1, blackKing ), name );
+		String blackLetters = sortLetters( upperName.substring( blackKing + 1 ), name );
+		if( 2 + whiteLetters.length() + blackLetters.length() > MAX_PIECES ){
+			throw new IllegalArgumentException( "more than " + MAX_PIECES + " pieces: " + name );
+		}
+		return of( whiteLetters, blackLetters );
+	}
+	
+	/**
+	 * @param whiteLetters white's pieces besides the king, in name order.
+	 * @param blackLetters black's pieces besides the king, in name order.
+	 * @return the ending, colors swapped if needed to normalize it.
+	 */
+	static Material of( String whiteLetters, String blackLetters ){
+		return isNormalized( whiteLetters, blackLetters )
+			? new Material( whiteLetters, blackLetters ) : new Material( blackLetters, whiteLetters );
+	}
+	
+	/**
+	 * @return True, if white has more pieces than black or, with as many, the
+	 * 		   stronger ones. Also true if both sides have the same pieces.
+	 */
+	static boolean isNormalized( String whiteLetters, String blackLetters ){
+		if( whiteLetters.length() != blackLetters.length() ){
+			return whiteLetters.length() > blackLetters.length();
+		}
+		for( int i = 0; i < whiteLetters.length(); i++ ){
+			int white = LETTERS.indexOf( whiteLetters.charAt( i ) );
+			int black = LETTERS.indexOf( blackLetters.charAt( i ) );
+			if( white != black ){
+				return white < black;
+			}
+		}
+		return true;
+	}
+	
+	private static String sortLetters( String letters, String name ){
+		StringBuilder sorted = new StringBuilder( letters.length() );
+		for( int i = 0; i < LETTERS.length(); i++ ){
+			for( int j = 0; j < letters.length(); j++ ){
+				if( letters.charAt( j ) == LETTERS.charAt( i ) ){
+					sorted.append( letters.charAt( j ) );
+				}
+			}
+		}
+		if( sorted.length() != letters.length() ){
+			throw new IllegalArgumentException( "invalid ending: " + name );
+		}
+		return sorted.toString();
+	}
+	
+	/**
+	 * @param sideToMove Team.ordinal() of the side to move.
+	 * @param squares square of each slot.
+	 * @return index of the position in the table.
+	 */
+	int index( int sideToMove, int[] squares ){
+		int index = sideToMove;
+		for( int slot = 0; slot < squares.length; slot++ ){
+			index = index << 6 | squares[ slot ];
+		}
+		return index;
+	}
+	
+	/**
+	 * @return True, if only the kings are left, which is always a draw.
+	 */
+	public boolean isKingsOnly() {
+		return this.teams.length == 2;
+	}
+	
+	@Override
+	public String toString() {
+		return this.name;
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public String getName() {
+		return name;
+	}
+	public int getPieceCount() {
+		return teams.length;
+	}
+	/**
+	 * @return number of positions in the table, including illegal ones.
+	 */
+	public int getPositionCount() {
+		return 2 << (6 * this.teams.length);
+	}
+	Team getTeam( int slot ){
+		return this.teams[ slot ];
+	}
+	Type getType( int slot ){
+		return this.types[ slot ];
+	}
+	/**
+	 * @return number of white slots; the black slots follow them.
+	 */
+	int getWhitePieceCount() {
+		return whitePieceCount;
+	}
+	
+}
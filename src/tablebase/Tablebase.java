@@ -0,0 +1,220 @@
+package tablebase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import logic.Attacks;
+import logic.Bitboard;
+import logic.ChessGame;
+import logic.ChessGame.GameState;
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Endgame tables written by TablebaseGenerator. A probe computes the index of
+ * the position from the squares of its pieces and reads one byte of the mapped
+ * table file; nothing is searched.
+ *
+ * File layout, one file per ending named like "KBNK.jctb":
+ * <pre>
+ * header:    int magic "JCTB", int version, 8 bytes ending name (ASCII,
+ *            zero padded)
+ * positions: one byte per index (see Material), the value of the position
+ *            for the side to move
+ * </pre>
+ * A value of 0 is a draw and 255 an illegal position. Other values are the
+ * number of plies to mate plus one: even plies lose for the side to move, odd
+ * plies win. Positions with castling rights or an en passant square are not
+ * in the tables.
+ */
+public class Tablebase {
+	
+	static final int MAGIC = 0x4A435442;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	static final String FILE_EXTENSION = ".jctb";
+	
+	static final int DRAW = 0;
+	static final int ILLEGAL = 255;
+	static final int MAX_PLIES = 253;
+	
+	// Marks endings without a table file in the cache.
+	private static final ByteBuffer MISSING = ByteBuffer.allocate( 0 );
+	
+	private final File directory;
+	private final Map<String, ByteBuffer> tables = new ConcurrentHashMap<String, ByteBuffer>();
+	
+	/**
+	 * @param directory The directory of the table files. Files are mapped
+	 * 		  when first probed.
+	 */
+	public Tablebase( File directory ){
+		this.directory = directory;
+	}
+	
+	/**
+	 * Looks up the current position of a game.
+	 * @param chessGame The position. It is not changed.
+	 * @return the result for the side to move or null if the position is not
+	 * 		   in the tables: too many pieces, castling rights, an en passant
+	 * 		   square, a finished game or a missing table file.
+	 * @throws IOException if a table file cannot be read.
+	 */
+	public TablebaseResult probe( ChessGame chessGame ) throws IOException {
+		Bitboard bitboard = chessGame.getBitboard();
+		if( chessGame.getGameState() == GameState.END
+				|| chessGame.getCastlingRights() != 0
+				|| chessGame.getEnPassantSquare() != ChessGame.NO_SQUARE
+				|| Long.bitCount( bitboard.getOccupied() ) > Material.MAX_PIECES ){
+			return null;
+		}
+		String whiteLetters = letters( bitboard, Team.WHITE );
+		String blackLetters = letters( bitboard, Team.BLACK );
+		if( whiteLetters == null || blackLetters == null ){
+			return null;
+		}
+		// The tables have the stronger side as white; otherwise the colors
+		// of the position are swapped.
+		boolean isFlipped = ! Material.isNormalized( whiteLetters, blackLetters );
+		int sideToMove = (chessGame.getGameState() == GameState.WHITE ? 0 : 1);
+		if( isFlipped ){
+			sideToMove = 1 - sideToMove;
+		}
+		if( whiteLetters.isEmpty() && blackLetters.isEmpty() ){
+			// No table; kings next to each other are illegal.
+			long whiteKing = bitboard.getPieces( Team.WHITE, Type.KING );
+			int blackKing = Long.numberOfTrailingZeros( bitboard.getPieces( Team.BLACK, Type.KING ) );
+			return (Attacks.kingAttacks( blackKing ) & whiteKing) != 0 ? null : new TablebaseResult( TablebaseResult.Outcome.DRAW, 0 );
+		}
+		String name = (isFlipped ? "K" + blackLetters + "K" + whiteLetters : "K" + whiteLetters + "K" + blackLetters);
+		ByteBuffer table = getTable( name );
+		if( table == null ){
+			return null;
+		}
+		
+		int index = sideToMove;
+		Team first = (isFlipped ? Team.BLACK : Team.WHITE);
+		for( Team team : new Team[]{ first, first == Team.WHITE ? Team.BLACK : Team.WHITE } ){
+			index = index << 6 | flip( Long.numberOfTrailingZeros( bitboard.getPieces( team, Type.KING ) ), isFlipped );
+			for( Type type : Material.LETTER_TYPES ){
+				long pieces = bitboard.getPieces( team, type );
+				while( pieces != 0 ){
+					index = index << 6 | flip( Long.numberOfTrailingZeros( pieces ), isFlipped );
+					pieces &= pieces - 1;
+				}
+			}
+		}
+		return toResult( table.get( HEADER_SIZE + index ) & 0xFF );
+	}
+	
+	/**
+	 * @return the pieces of a team besides the king in name order, or null if
+	 * 		   the team has no king.
+	 */
+	private static String letters( Bitboard bitboard, Team team ){
+		if( Long.bitCount( bitboard.getPieces( team, Type.KING ) ) != 1 ){
+			return null;
+		}
+		StringBuilder letters = new StringBuilder();
+		for( int i = 0; i < Material.LETTER_TYPES.length; i++ ){
+			for( int count = Long.bitCount( bitboard.getPieces( team, Material.LETTER_TYPES[ i ] ) ); count > 0; count-- ){
+				letters.append( Material.LETTERS.charAt( i ) );
+			}
+		}
+		return letters.toString();
+	}
+	
+	private static int flip( int square, boolean isFlipped ){
+		return isFlipped ? square ^ 56 : square;
+	}
+	
+	/**
+	 * @param value a table value.
+	 * @return the result it stands for or null for an illegal position.
+	 */
+	static TablebaseResult toResult( int value ){
+		if( value == ILLEGAL ){
+			return null;
+		}
+		if( value == DRAW ){
+			return new TablebaseResult( TablebaseResult.Outcome.DRAW, 0 );
+		}
+		int plies = value - 1;
+		return new TablebaseResult( (plies & 1) == 0 ? TablebaseResult.Outcome.LOSS : TablebaseResult.Outcome.WIN, plies );
+	}
+	
+	private ByteBuffer getTable( String name ) throws IOException {
+		ByteBuffer table = this.tables.get( name );
+		if( table == null ){
+			table = map( new File( this.directory, name + FILE_EXTENSION ), name );
+			this.tables.put( name, table );
+		}
+		return table == MISSING ? null : table;
+	}
+	
+	private static ByteBuffer map( File file, String name ) throws IOException {
+		if( ! file.isFile() ){
+			return MISSING;
+		}
+		RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+		try {
+			ByteBuffer table = randomAccessFile.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length() );
+			if( table.limit() < HEADER_SIZE || table.getInt( 0 ) != MAGIC || ! readName( table ).equals( name ) ){
+				throw new IOException( "Not a tablebase file for " + name + ": " + file );
+			}
+			if( table.getInt( 4 ) != VERSION ){
+				throw new IOException( "Unsupported tablebase version " + table.getInt( 4 ) + ": " + file );
+			}
+			if( table.limit() != HEADER_SIZE + Material.parse( name ).getPositionCount() ){
+				throw new IOException( "Truncated tablebase file: " + file );
+			}
+			return table;
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	private static String readName( ByteBuffer table ){
+		StringBuilder name = new StringBuilder();
+		for( int i = 8; i < HEADER_SIZE && table.get( i ) != 0; i++ ){
+			name.append( (char) table.get( i ) );
+		}
+		return name.toString();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Prints the tablebase result of a position and the probe time.
+	 * Usage: Tablebase directory "fen"
+	 */
+	public static void main( String[] args ) throws IOException {
+		if( args.length < 2 ){
+			System.out.println( "usage: Tablebase directory \"fen\"" );
+			return;
+		}
+		Tablebase tablebase = new Tablebase( new File( args[ 0 ] ) );
+		ChessGame chessGame = ChessGame.fromFen( args[ 1 ] );
+		
+		int probes = 1000000;
+		TablebaseResult result = null;
+		long startTime = System.nanoTime();
+		for( int i = 0; i < probes; i++ ){
+			result = tablebase.probe( chessGame );
+		}
+		long elapsedNanos = System.nanoTime() - startTime;
+		
+		System.out.println( result == null ? "not in the tablebase" : result.toString() );
+		System.out.println( "probe (ns): " + elapsedNanos / probes );
+	}
+	
+}
@@ -0,0 +1,672 @@
+package tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import logic.Attacks;
+import logic.Bitboard;
+import logic.Piece.Team;
+import logic.Piece.Type;
+
+/**
+ * Generates the table files of a Tablebase by retrograde analysis. The tables
+ * of the endings reached by captures and promotions are generated first, or
+ * read if their files exist.
+ *
+ * Positions are resolved level by level, a level being the number of plies to
+ * mate. At level k, the positions with a move to a position lost at level k-1
+ * are won, and positions whose moves all lead to won positions, the longest
+ * one at level k-1, are lost. Only positions that a move leads from into a
+ * position resolved at level k-1 are evaluated again, plus positions waiting
+ * for a capture or promotion into another table. Positions never resolved are
+ * draws. Every pass is split over the index range among all worker threads.
+ *
+ * The moves are the rules of ChessGame without castling and en passant, as
+ * positions with castling rights or an en passant square are not in the
+ * tables. Pawns promote to queen, rook, bishop or knight.
+ */
+public class TablebaseGenerator {
+	
+	private static final int CHUNK_SIZE = 1 << 14;
+	private static final Type[] PROMOTION_TYPES = { Type.QUEEN, Type.ROOK, Type.BISHOP, Type.KNIGHT };
+	private static final int NO_PLIES = Integer.MAX_VALUE;
+	
+	private final File directory;
+	private final Map<String, byte[]> tables = new LinkedHashMap<String, byte[]>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private GenerationListener listener;
+	
+	/**
+	 * @param directory The directory the table files are written to.
+	 */
+	public TablebaseGenerator( File directory ){
+		this.directory = directory;
+	}
+	
+	/**
+	 * Generates the table of an ending and the tables it depends on, unless
+	 * their files exist, and writes them to the directory.
+	 * @param material The ending.
+	 * @return the values of the table, see Tablebase.
+	 * @throws IOException if a table file cannot be read or written.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public byte[] generate( Material material ) throws IOException, InterruptedException {
+		byte[] values = this.tables.get( material.getName() );
+		if( values != null ){
+			return values;
+		}
+		File file = getFile( material );
+		if( file.isFile() ){
+			values = read( file, material );
+		} else {
+			values = new Generation( material ).run();
+			write( file, material, values );
+		}
+		this.tables.put( material.getName(), values );
+		return values;
+	}
+	
+	/**
+	 * @return the table file of an ending.
+	 */
+	public File getFile( Material material ){
+		return new File( this.directory, material.getName() + Tablebase.FILE_EXTENSION );
+	}
+	
+	private static byte[] read( File file, Material material ) throws IOException {
+		DataInputStream input = new DataInputStream( new FileInputStream( file ) );
+		try {
+			if( input.readInt() != Tablebase.MAGIC || input.readInt() != Tablebase.VERSION
+					|| file.length() != Tablebase.HEADER_SIZE + material.getPositionCount() ){
+				throw new IOException( "Not a tablebase file for " + material + ": " + file );
+			}
+			input.skipBytes( Tablebase.HEADER_SIZE - 8 );
+			byte[] values = new byte[ material.getPositionCount() ];
+			input.readFully( values );
+			return values;
+		} finally {
+			input.close();
+		}
+	}
+	
+	private static void write( File file, Material material, byte[] values ) throws IOException {
+		File temporaryFile = new File( file.getPath() + ".tmp" );
+		DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temporaryFile ), 1 << 16 ) );
+		try {
+			output.writeInt( Tablebase.MAGIC );
+			output.writeInt( Tablebase.VERSION );
+			byte[] name = new byte[ Tablebase.HEADER_SIZE - 8 ];
+			for( int i = 0; i < material.getName().length(); i++ ){
+				name[ i ] = (byte) material.getName().charAt( i );
+			}
+			output.write( name );
+			output.write( values );
+		} finally {
+			output.close();
+		}
+		if( ! temporaryFile.renameTo( file ) ){
+			throw new IOException( "Cannot rename " + temporaryFile + " to " + file );
+		}
+	}
+	
+	/**
+	 * Where a capture or promotion leads: the table of the resulting ending
+	 * and the slot of the current ending that goes to each of its slots.
+	 */
+	private static final class Conversion {
+		// Null if only the kings are left.
+		final byte[] values;
+		final int[] slots;
+		// True if the resulting table has the colors swapped.
+		final boolean isFlipped;
+		
+		Conversion( byte[] values, int[] slots, boolean isFlipped ){
+			this.values = values;
+			this.slots = slots;
+			this.isFlipped = isFlipped;
+		}
+		
+		int getValue( int sideToMove, int[] squares ){
+			if( this.values == null ){
+				return Tablebase.DRAW;
+			}
+			int index = (this.isFlipped ? 1 - sideToMove : sideToMove);
+			for( int slot : this.slots ){
+				index = index << 6 | (this.isFlipped ? squares[ slot ] ^ 56 : squares[ slot ]);
+			}
+			return this.values[ index ] & 0xFF;
+		}
+	}
+	
+	private interface RangeTask {
+		/**
+		 * @param squares scratch array of the worker thread, one entry per slot.
+		 * @return number of positions resolved.
+		 */
+		long run( int from, int to, int[] squares );
+	}
+	
+	/**
+	 * The state of generating one table.
+	 */
+	private final class Generation {
+		
+		final Material material;
+		final int pieceCount;
+		final int positionCount;
+		final byte[] values;
+		// Level at which a capture or promotion may resolve a position.
+		final byte[] pending;
+		// Set if a successor was resolved at the previous level.
+		final byte[] touched;
+		final AtomicInteger lastPendingLevel = new AtomicInteger();
+		// Indexed by conversionIndex().
+		final Conversion[] conversions;
+		
+		Generation( Material material ) throws IOException, InterruptedException {
+			this.material = material;
+			this.pieceCount = material.getPieceCount();
+			this.positionCount = material.getPositionCount();
+			this.conversions = new Conversion[ (this.pieceCount + 1) * (this.pieceCount + 1) * PROMOTION_TYPES.length ];
+			for( int captured = -1; captured < this.pieceCount; captured++ ){
+				if( captured >= 0 && material.getType( captured ) == Type.KING ){
+					continue;
+				}
+				for( int promoted = -1; promoted < this.pieceCount; promoted++ ){
+					// The promoting pawn and the captured piece are of different teams.
+					if( promoted >= 0 && (material.getType( promoted ) != Type.PAWN
+							|| captured >= 0 && material.getTeam( promoted ) == material.getTeam( captured )) ){
+						continue;
+					}
+					for( int promotion = 0; promotion < PROMOTION_TYPES.length; promotion++ ){
+						if( captured >= 0 || promoted >= 0 ){
+							this.conversions[ conversionIndex( captured, promoted, promotion ) ] =
+								createConversion( captured, promoted, PROMOTION_TYPES[ promotion ] );
+						}
+						if( promoted < 0 ){
+							break;
+						}
+					}
+				}
+			}
+			this.values = new byte[ this.positionCount ];
+			this.pending = new byte[ this.positionCount ];
+			this.touched = new byte[ this.positionCount ];
+		}
+		
+		int conversionIndex( int captured, int promoted, int promotion ){
+			return ((captured + 1) * (this.pieceCount + 1) + promoted + 1) * PROMOTION_TYPES.length + promotion;
+		}
+		
+		private Conversion createConversion( int captured, int promoted, Type promotionType ) throws IOException, InterruptedException {
+			StringBuilder[] letters = { new StringBuilder(), new StringBuilder() };
+			for( int i = 0; i < Material.LETTER_TYPES.length; i++ ){
+				for( int slot = 0; slot < this.pieceCount; slot++ ){
+					if( slot != captured && getType( slot, promoted, promotionType ) == Material.LETTER_TYPES[ i ] ){
+						letters[ this.material.getTeam( slot ).ordinal() ].append( Material.LETTERS.charAt( i ) );
+					}
+				}
+			}
+			Material result = Material.of( letters[ 0 ].toString(), letters[ 1 ].toString() );
+			boolean isFlipped = ! Material.isNormalized( letters[ 0 ].toString(), letters[ 1 ].toString() );
+			byte[] resultValues = (result.isKingsOnly() ? null : generate( result ));
+			
+			int[] slots = new int[ result.getPieceCount() ];
+			boolean[] isUsed = new boolean[ this.pieceCount ];
+			for( int resultSlot = 0; resultSlot < slots.length; resultSlot++ ){
+				Team team = result.getTeam( resultSlot );
+				if( isFlipped ){
+					team = (team == Team.WHITE ? Team.BLACK : Team.WHITE);
+				}
+				for( int slot = 0; slot < this.pieceCount; slot++ ){
+					if( ! isUsed[ slot ] && slot != captured && this.material.getTeam( slot ) == team
+							&& getType( slot, promoted, promotionType ) == result.getType( resultSlot ) ){
+						isUsed[ slot ] = true;
+						slots[ resultSlot ] = slot;
+						break;
+					}
+				}
+			}
+			return new Conversion( resultValues, slots, isFlipped );
+		}
+		
+		private Type getType( int slot, int promoted, Type promotionType ){
+			return slot == promoted ? promotionType : this.material.getType( slot );
+		}
+		
+		byte[] run() throws InterruptedException {
+			long startTime = System.nanoTime();
+			long resolved = parallel( new RangeTask() {
+				@Override
+				public long run( int from, int to, int[] squares ){
+					return initialize( from, to, squares );
+				}
+			} );
+			int level = 0;
+			long levelResolved = resolved;
+			while( levelResolved > 0 || level < this.lastPendingLevel.get() ){
+				level++;
+				if( level > Tablebase.MAX_PLIES ){
+					throw new IllegalStateException( this.material + ": mate in more than " + Tablebase.MAX_PLIES + " plies" );
+				}
+				final int currentLevel = level;
+				parallel( new RangeTask() {
+					@Override
+					public long run( int from, int to, int[] squares ){
+						touchPredecessors( from, to, currentLevel - 1, squares );
+						return 0;
+					}
+				} );
+				levelResolved = parallel( new RangeTask() {
+					@Override
+					public long run( int from, int to, int[] squares ){
+						return resolve( from, to, currentLevel, squares );
+					}
+				} );
+				resolved += levelResolved;
+			}
+			if( listener != null ){
+				listener.tableGenerated( this.material, resolved, level, (System.nanoTime() - startTime) / 1000000 );
+			}
+			return this.values;
+		}
+		
+		/**
+		 * Runs a task over the whole index range on all worker threads.
+		 * @return the sum of the task results.
+		 */
+		private long parallel( final RangeTask task ) throws InterruptedException {
+			final AtomicInteger nextChunk = new AtomicInteger();
+			final AtomicLong result = new AtomicLong();
+			Thread[] workers = new Thread[ threads ];
+			for( int i = 0; i < threads; i++ ){
+				workers[ i ] = new Thread( new Runnable() {
+					@Override
+					public void run() {
+						int[] squares = new int[ pieceCount ];
+						long sum = 0;
+						int start;
+						while( (start = nextChunk.getAndAdd( CHUNK_SIZE )) < positionCount ){
+							sum += task.run( start, Math.min( positionCount, start + CHUNK_SIZE ), squares );
+						}
+						result.addAndGet( sum );
+					}
+				}, "tablebase-generator-" + i );
+				workers[ i ].setDaemon( true );
+				workers[ i ].start();
+			}
+			for( Thread worker : workers ){
+				worker.join();
+			}
+			return result.get();
+		}
+		
+		/**
+		 * Marks illegal positions, resolves checkmates and stalemates and
+		 * notes the level of captures and promotions into resolved positions.
+		 */
+		private long initialize( int from, int to, int[] squares ){
+			long resolved = 0;
+			for( int index = from; index < to; index++ ){
+				if( ! isLegal( index, squares ) ){
+					this.values[ index ] = (byte) Tablebase.ILLEGAL;
+					continue;
+				}
+				int value = evaluate( index, 0, squares );
+				if( value != Tablebase.DRAW ){
+					this.values[ index ] = (byte) value;
+					resolved++;
+				}
+			}
+			return resolved;
+		}
+		
+		/**
+		 * Marks the unresolved positions with a move into a position resolved
+		 * at the given level.
+		 */
+		private void touchPredecessors( int from, int to, int level, int[] squares ){
+			byte resolvedValue = (byte) (level + 1);
+			for( int index = from; index < to; index++ ){
+				if( this.values[ index ] != resolvedValue ){
+					continue;
+				}
+				int moved = 1 - decode( index, squares );
+				long occupied = occupied( squares );
+				for( int slot = firstSlot( moved ); slot < endSlot( moved ); slot++ ){
+					int square = squares[ slot ];
+					long origins = origins( this.material.getTeam( slot ), this.material.getType( slot ), square, occupied );
+					while( origins != 0 ){
+						squares[ slot ] = Long.numberOfTrailingZeros( origins );
+						origins &= origins - 1;
+						int predecessor = this.material.index( moved, squares );
+						if( this.values[ predecessor ] == Tablebase.DRAW ){
+							this.touched[ predecessor ] = 1;
+						}
+					}
+					squares[ slot ] = square;
+				}
+			}
+		}
+		
+		/**
+		 * Evaluates the touched positions and the positions waiting for the
+		 * given level again.
+		 */
+		private long resolve( int from, int to, int level, int[] squares ){
+			long resolved = 0;
+			for( int index = from; index < to; index++ ){
+				if( this.values[ index ] != Tablebase.DRAW
+						|| this.touched[ index ] == 0 && (this.pending[ index ] & 0xFF) != level ){
+					continue;
+				}
+				this.touched[ index ] = 0;
+				int value = evaluate( index, level, squares );
+				if( value != Tablebase.DRAW ){
+					this.values[ index ] = (byte) value;
+					resolved++;
+				}
+			}
+			return resolved;
+		}
+		
+		/**
+		 * Evaluates a legal position from the values of its successors.
+		 * @return the value of the position if it is resolved at the given
+		 * 		   level or before, otherwise DRAW.
+		 */
+		private int evaluate( int index, int level, int[] squares ){
+			int sideToMove = decode( index, squares );
+			int opponent = 1 - sideToMove;
+			long occupied = occupied( squares );
+			long own = 0;
+			for( int slot = firstSlot( sideToMove ); slot < endSlot( sideToMove ); slot++ ){
+				own |= 1L << squares[ slot ];
+			}
+			
+			boolean hasMoves = false;
+			boolean isAllWins = true;
+			int shortestLoss = NO_PLIES;
+			int longestWin = -1;
+			for( int slot = firstSlot( sideToMove ); slot < endSlot( sideToMove ); slot++ ){
+				int source = squares[ slot ];
+				Team team = this.material.getTeam( slot );
+				Type type = this.material.getType( slot );
+				long targets = targets( team, type, source, occupied ) & ~own;
+				while( targets != 0 ){
+					int target = Long.numberOfTrailingZeros( targets );
+					targets &= targets - 1;
+					int captured = -1;
+					for( int other = firstSlot( opponent ); other < endSlot( opponent ); other++ ){
+						if( squares[ other ] == target ){
+							captured = other;
+						}
+					}
+					squares[ slot ] = target;
+					if( isKingSafe( sideToMove, captured, occupied & ~(1L << source) | 1L << target, squares ) ){
+						hasMoves = true;
+						boolean isPromotion = (type == Type.PAWN && (Bitboard.row( target ) == 0 || Bitboard.row( target ) == 7));
+						for( int promotion = 0; promotion < PROMOTION_TYPES.length; promotion++ ){
+							int value;
+							if( isPromotion || captured >= 0 ){
+								value = this.conversions[ conversionIndex( captured, isPromotion ? slot : -1, promotion ) ]
+									.getValue( opponent, squares );
+							} else {
+								value = this.values[ this.material.index( opponent, squares ) ] & 0xFF;
+							}
+							if( value == Tablebase.DRAW || value == Tablebase.ILLEGAL ){
+								isAllWins = false;
+							} else if( ((value - 1) & 1) == 0 ){
+								isAllWins = false;
+								shortestLoss = Math.min( shortestLoss, value - 1 );
+							} else {
+								longestWin = Math.max( longestWin, value - 1 );
+							}
+							if( ! isPromotion ){
+								break;
+							}
+						}
+					}
+					squares[ slot ] = source;
+				}
+			}
+			
+			if( ! hasMoves ){
+				// Checkmate or stalemate.
+				return isKingSafe( sideToMove, -1, occupied, squares ) ? Tablebase.DRAW : 1;
+			}
+			if( shortestLoss != NO_PLIES ){
+				if( shortestLoss < level ){
+					return shortestLoss + 2;
+				}
+				setPending( index, shortestLoss + 1 );
+			} else if( isAllWins ){
+				if( longestWin < level ){
+					return longestWin + 2;
+				}
+				setPending( index, longestWin + 1 );
+			}
+			return Tablebase.DRAW;
+		}
+		
+		private void setPending( int index, int level ){
+			this.pending[ index ] = (byte) level;
+			int lastLevel;
+			while( level > (lastLevel = this.lastPendingLevel.get()) ){
+				this.lastPendingLevel.compareAndSet( lastLevel, level );
+			}
+		}
+		
+		/**
+		 * @return True, if no piece overlaps another, no pawn is on the first
+		 * 		   or last rank and the side not to move is not in check.
+		 */
+		private boolean isLegal( int index, int[] squares ){
+			int sideToMove = decode( index, squares );
+			long occupied = 0;
+			for( int slot = 0; slot < this.pieceCount; slot++ ){
+				long bit = 1L << squares[ slot ];
+				if( (occupied & bit) != 0 ){
+					return false;
+				}
+				occupied |= bit;
+				int row = Bitboard.row( squares[ slot ] );
+				if( this.material.getType( slot ) == Type.PAWN && (row == 0 || row == 7) ){
+					return false;
+				}
+			}
+			return isKingSafe( 1 - sideToMove, -1, occupied, squares );
+		}
+		
+		/**
+		 * @param side The side whose king is checked.
+		 * @param captured slot of a captured piece or -1.
+		 * @return True, if no piece of the other side attacks the king.
+		 */
+		private boolean isKingSafe( int side, int captured, long occupied, int[] squares ){
+			long king = 1L << squares[ firstSlot( side ) ];
+			int attacker = 1 - side;
+			for( int slot = firstSlot( attacker ); slot < endSlot( attacker ); slot++ ){
+				if( slot != captured
+						&& (attacks( this.material.getTeam( slot ), this.material.getType( slot ), squares[ slot ], occupied ) & king) != 0 ){
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * @return Team.ordinal() of the side to move; the squares are written
+		 * 		   to the array.
+		 */
+		private int decode( int index, int[] squares ){
+			for( int slot = this.pieceCount - 1; slot >= 0; slot-- ){
+				squares[ slot ] = index & 63;
+				index >>>= 6;
+			}
+			return index;
+		}
+		
+		private long occupied( int[] squares ){
+			long occupied = 0;
+			for( int square : squares ){
+				occupied |= 1L << square;
+			}
+			return occupied;
+		}
+		
+		private int firstSlot( int side ){
+			return side == 0 ? 0 : this.material.getWhitePieceCount();
+		}
+		
+		private int endSlot( int side ){
+			return side == 0 ? this.material.getWhitePieceCount() : this.pieceCount;
+		}
+		
+	}
+	
+	/**
+	 * @return the squares a piece attacks.
+	 */
+	private static long attacks( Team team, Type type, int square, long occupied ){
+		switch( type ){
+		case ROOK:
+			return Attacks.rookAttacks( square, occupied );
+		case KNIGHT:
+			return Attacks.knightAttacks( square );
+		case BISHOP:
+			return Attacks.bishopAttacks( square, occupied );
+		case QUEEN:
+			return Attacks.queenAttacks( square, occupied );
+		case KING:
+			return Attacks.kingAttacks( square );
+		default:
+			return Attacks.pawnAttacks( team, square );
+		}
+	}
+	
+	/**
+	 * @return the squares a piece can move to, including squares of its own
+	 * 		   team, which the caller removes.
+	 */
+	private static long targets( Team team, Type type, int square, long occupied ){
+		if( type != Type.PAWN ){
+			return attacks( team, type, square, occupied );
+		}
+		long targets = Attacks.pawnAttacks( team, square ) & occupied;
+		int forward = (team == Team.WHITE ? 8 : -8);
+		int push = square + forward;
+		if( (occupied & 1L << push) == 0 ){
+			targets |= 1L << push;
+			int startRow = (team == Team.WHITE ? 1 : 6);
+			if( Bitboard.row( square ) == startRow && (occupied & 1L << (push + forward)) == 0 ){
+				targets |= 1L << (push + forward);
+			}
+		}
+		return targets;
+	}
+	
+	/**
+	 * @return the empty squares a piece can have come from to its square
+	 * 		   without capturing.
+	 */
+	private static long origins( Team team, Type type, int square, long occupied ){
+		if( type != Type.PAWN ){
+			return attacks( team, type, square, occupied ) & ~occupied;
+		}
+		int backward = (team == Team.WHITE ? -8 : 8);
+		int row = Bitboard.row( square );
+		int firstPushRow = (team == Team.WHITE ? 2 : 5);
+		if( row == (team == Team.WHITE ? 1 : 6) || (occupied & 1L << (square + backward)) != 0 ){
+			return 0;
+		}
+		long origins = 1L << (square + backward);
+		if( row == firstPushRow + (team == Team.WHITE ? 1 : -1) && (occupied & 1L << (square + 2 * backward)) == 0 ){
+			origins |= 1L << (square + 2 * backward);
+		}
+		return origins;
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public File getDirectory() {
+		return directory;
+	}
+	public int getThreads() {
+		return threads;
+	}
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	/**
+	 * @param listener Told about every generated table, or null.
+	 */
+	public void setListener(GenerationListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Generates tables and prints the longest mate of each.
+	 * Usage: TablebaseGenerator [-threads n] directory ending...
+	 */
+	public static void main( String[] args ) throws IOException, InterruptedException {
+		int argIndex = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		if( args.length > 1 && args[ 0 ].equals( "-threads" ) ){
+			threads = Integer.parseInt( args[ 1 ] );
+			argIndex = 2;
+		}
+		if( args.length < argIndex + 2 ){
+			System.out.println( "usage: TablebaseGenerator [-threads n] directory ending..." );
+			System.out.println( "e.g. TablebaseGenerator tables KQK KRK KPK KBNK" );
+			return;
+		}
+		File directory = new File( args[ argIndex ] );
+		if( ! directory.isDirectory() && ! directory.mkdirs() ){
+			throw new IOException( "Cannot create directory " + directory );
+		}
+		TablebaseGenerator generator = new TablebaseGenerator( directory );
+		generator.setThreads( threads );
+		generator.setListener( new GenerationListener() {
+			@Override
+			public void tableGenerated( Material material, long resolvedPositions, int levels, long millis ){
+				System.out.println( material + ": " + resolvedPositions + " positions resolved, "
+					+ levels + " levels, " + millis + " ms" );
+			}
+		} );
+		for( int i = argIndex + 1; i < args.length; i++ ){
+			Material material = Material.parse( args[ i ] );
+			byte[] values = generator.generate( material );
+			long wins = 0;
+			long draws = 0;
+			long losses = 0;
+			int longestMate = 0;
+			for( byte value : values ){
+				int plies = (value & 0xFF) - 1;
+				if( (value & 0xFF) == Tablebase.DRAW ){
+					draws++;
+				} else if( (value & 0xFF) != Tablebase.ILLEGAL ){
+					if( (plies & 1) == 0 ){
+						losses++;
+					} else {
+						wins++;
+					}
+					longestMate = Math.max( longestMate, plies );
+				}
+			}
+			System.out.println( material + ": wins " + wins + ", draws " + draws + ", losses " + losses
+				+ ", longest mate " + (longestMate + 1) / 2 + " moves" );
+		}
+	}
+	
+}
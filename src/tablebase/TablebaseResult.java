@@ -0,0 +1,48 @@
+package tablebase;
+
+/**
+ * Result of a Tablebase probe, from the point of view of the side to move.
+ */
+public class TablebaseResult {
+	
+	public enum Outcome { WIN, DRAW, LOSS }
+	
+	private final Outcome outcome;
+	private final int plies;
+	
+	TablebaseResult( Outcome outcome, int plies ){
+		this.outcome = outcome;
+		this.plies = plies;
+	}
+	
+	@Override
+	public String toString() {
+		if( this.outcome == Outcome.DRAW ){
+			return "draw";
+		}
+		if( this.plies == 0 ){
+			return "checkmated";
+		}
+		return (this.outcome == Outcome.WIN ? "win" : "loss") + ", mate in " + getMovesToMate();
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public Outcome getOutcome() {
+		return outcome;
+	}
+	/**
+	 * @return number of plies until mate with best play of both sides; 0 if
+	 * 		   the side to move is checkmated or the position is drawn.
+	 */
+	public int getPlies() {
+		return plies;
+	}
+	/**
+	 * @return number of moves of the winning side until mate.
+	 */
+	public int getMovesToMate() {
+		return (plies + 1) / 2;
+	}
+	
+}
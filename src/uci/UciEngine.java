@@ -0,0 +1,304 @@
+package uci;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import engine.ParallelSearch;
+import engine.SearchLimits;
+import engine.SearchListener;
+import engine.SearchResult;
+import engine.TranspositionTable;
+import logic.Attacks;
+import logic.ChessGame;
+import logic.ChessGame.GameState;
+import logic.Move;
+import logic.MoveValidator.Rejection;
+
+/**
+ * Text front end speaking the Universal Chess Interface protocol over
+ * stdin and stdout, so that tournament managers and match scripts can play
+ * games without a board display. Searches run on their own thread, so "stop"
+ * and "isready" are answered while searching.
+ *
+ * Supported commands: uci, isready, ucinewgame, setoption (Hash, Threads),
+ * position startpos|fen ... [moves ...], go [depth n] [nodes n] [movetime ms]
+ * [wtime ms] [btime ms] [winc ms] [binc ms] [movestogo n] [infinite], stop,
+ * ponderhit and quit. Unknown commands are ignored, as the protocol asks.
+ * An infinite search sends its best move only after "stop", even if it
+ * ends earlier; a malformed "go" starts no search.
+ */
+public class UciEngine {
+	
+	private static final String NAME = "JavaChess";
+	private static final int DEFAULT_HASH_MEGABYTES = 64;
+	private static final int MAX_HASH_MEGABYTES = 4096;
+	private static final int MAX_THREADS = 256;
+	// Moves left in the game assumed when the clock gives no "movestogo".
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	// Kept in reserve for the latency of the interface.
+	private static final long MOVE_OVERHEAD_MILLIS = 30;
+	
+	private final PrintStream output;
+	private ChessGame chessGame = new ChessGame();
+	private int hashMegabytes = DEFAULT_HASH_MEGABYTES;
+	private TranspositionTable transpositionTable;
+	private int threads = 1;
+	
+	private ParallelSearch search;
+	private Thread searchThread;
+	// Released by stopSearch(); an infinite search waits for it before it
+	// prints its best move.
+	private CountDownLatch stopSignal;
+	
+	/**
+	 * @param output Where the replies are written.
+	 */
+	public UciEngine( PrintStream output ){
+		this.output = output;
+	}
+	
+	/**
+	 * Reads and executes commands until "quit" or the end of the input.
+	 * @throws IOException if reading fails.
+	 */
+	public void run( BufferedReader input ) throws IOException {
+		String line;
+		while( (line = input.readLine()) != null ){
+			if( ! execute( line.trim() ) ){
+				break;
+			}
+		}
+		stopSearch();
+	}
+	
+	/**
+	 * @param line One command.
+	 * @return False, if the command was "quit".
+	 */
+	boolean execute( String line ){
+		String[] words = line.split( "\\s+" );
+		String command = words[ 0 ];
+		if( command.equals( "uci" ) ){
+			send( "id name " + NAME );
+			send( "id author the JavaChess authors" );
+			send( "option name Hash type spin default " + DEFAULT_HASH_MEGABYTES + " min 1 max " + MAX_HASH_MEGABYTES );
+			send( "option name Threads type spin default 1 min 1 max " + MAX_THREADS );
+			send( "info string " + Attacks.getTableInfo() );
+			send( "uciok" );
+		} else if( command.equals( "isready" ) ){
+			getTranspositionTable();
+			send( "readyok" );
+		} else if( command.equals( "ucinewgame" ) ){
+			stopSearch();
+			this.chessGame = new ChessGame();
+			getTranspositionTable().clear();
+		} else if( command.equals( "setoption" ) ){
+			setOption( words );
+		} else if( command.equals( "position" ) ){
+			stopSearch();
+			setPosition( words );
+		} else if( command.equals( "go" ) ){
+			stopSearch();
+			go( words );
+		} else if( command.equals( "stop" ) ){
+			stopSearch();
+		} else if( command.equals( "quit" ) ){
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * setoption name &lt;name&gt; value &lt;value&gt;
+	 */
+	private void setOption( String[] words ){
+		if( words.length < 5 || ! words[ 1 ].equals( "name" ) || ! words[ 3 ].equals( "value" ) ){
+			return;
+		}
+		try {
+			int value = Integer.parseInt( words[ 4 ] );
+			if( words[ 2 ].equalsIgnoreCase( "Hash" ) ){
+				stopSearch();
+				this.hashMegabytes = Math.max( 1, Math.min( MAX_HASH_MEGABYTES, value ) );
+				this.transpositionTable = null;
+			} else if( words[ 2 ].equalsIgnoreCase( "Threads" ) ){
+				this.threads = Math.max( 1, Math.min( MAX_THREADS, value ) );
+			}
+		} catch( NumberFormatException e ){
+			send( "info string invalid value: " + words[ 4 ] );
+		}
+	}
+	
+	/**
+	 * position startpos|fen &lt;fen&gt; [moves &lt;move&gt; ...]
+	 */
+	private void setPosition( String[] words ){
+		int index = 1;
+		ChessGame position;
+		try {
+			if( words.length > 1 && words[ 1 ].equals( "startpos" ) ){
+				position = new ChessGame();
+				index = 2;
+			} else if( words.length > 1 && words[ 1 ].equals( "fen" ) ){
+				StringBuilder fen = new StringBuilder();
+				for( index = 2; index < words.length && ! words[ index ].equals( "moves" ); index++ ){
+					fen.append( words[ index ] ).append( ' ' );
+				}
+				position = ChessGame.fromFen( fen.toString().trim() );
+			} else {
+				send( "info string invalid position command" );
+				return;
+			}
+			if( index < words.length && words[ index ].equals( "moves" ) ){
+				for( index++; index < words.length; index++ ){
+					Move move = Move.parse( words[ index ] );
+					Rejection rejection = position.getMoveValidator().validateMove( move );
+					if( rejection != Rejection.NONE ){
+						send( "info string invalid move " + words[ index ] + ": " + rejection.getDescription() );
+						return;
+					}
+					position.makeMove( move );
+				}
+			}
+		} catch( IllegalArgumentException e ){
+			send( "info string " + e.getMessage() );
+			return;
+		}
+		this.chessGame = position;
+	}
+	
+	/**
+	 * Starts a search on its own thread; it prints "bestmove" when done, or
+	 * for "go infinite" once stopSearch() is called.
+	 */
+	private void go( String[] words ){
+		SearchLimits limits = new SearchLimits();
+		long whiteTime = 0;
+		long blackTime = 0;
+		long whiteIncrement = 0;
+		long blackIncrement = 0;
+		int movesToGo = DEFAULT_MOVES_TO_GO;
+		boolean isInfinite = false;
+		try {
+			for( int i = 1; i < words.length; i++ ){
+				String word = words[ i ];
+				if( word.equals( "infinite" ) ){
+					isInfinite = true;
+				} else if( i + 1 < words.length ){
+					if( word.equals( "depth" ) ){
+						limits.setDepth( Integer.parseInt( words[ ++i ] ) );
+					} else if( word.equals( "nodes" ) ){
+						limits.setNodes( Long.parseLong( words[ ++i ] ) );
+					} else if( word.equals( "movetime" ) ){
+						limits.setTimeMillis( Math.max( 1, Long.parseLong( words[ ++i ] ) - MOVE_OVERHEAD_MILLIS ) );
+					} else if( word.equals( "wtime" ) ){
+						whiteTime = Long.parseLong( words[ ++i ] );
+					} else if( word.equals( "btime" ) ){
+						blackTime = Long.parseLong( words[ ++i ] );
+					} else if( word.equals( "winc" ) ){
+						whiteIncrement = Long.parseLong( words[ ++i ] );
+					} else if( word.equals( "binc" ) ){
+						blackIncrement = Long.parseLong( words[ ++i ] );
+					} else if( word.equals( "movestogo" ) ){
+						movesToGo = Math.max( 1, Integer.parseInt( words[ ++i ] ) );
+					}
+				}
+			}
+		} catch( NumberFormatException e ){
+			send( "info string invalid go command" );
+			return;
+		}
+		
+		// Without a fixed limit, a share of the remaining clock time is used.
+		boolean isWhite = (this.chessGame.getGameState() == GameState.WHITE);
+		long time = (isWhite ? whiteTime : blackTime);
+		if( ! isInfinite && time > 0 && limits.getTimeMillis() == 0 ){
+			long increment = (isWhite ? whiteIncrement : blackIncrement);
+			long budget = time / movesToGo + increment * 3 / 4;
+			limits.setTimeMillis( Math.max( 1, Math.min( budget, time - MOVE_OVERHEAD_MILLIS ) ) );
+		}
+		
+		final ParallelSearch parallelSearch = new ParallelSearch( this.chessGame, getTranspositionTable(), this.threads );
+		parallelSearch.setListener( new SearchListener() {
+			@Override
+			public void iterationFinished( SearchResult result ){
+				send( "info " + result );
+			}
+		} );
+		final SearchLimits searchLimits = limits;
+		// In infinite mode, the best move may only be sent after "stop".
+		final CountDownLatch stopSignal = (isInfinite ? new CountDownLatch( 1 ) : null);
+		this.search = parallelSearch;
+		this.stopSignal = stopSignal;
+		this.searchThread = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				SearchResult result = parallelSearch.search( searchLimits );
+				if( stopSignal != null ){
+					try {
+						stopSignal.await();
+					} catch( InterruptedException e ){
+						Thread.currentThread().interrupt();
+					}
+				}
+				Move bestMove = result.getBestMove();
+				send( "bestmove " + (bestMove == null ? "0000" : bestMove.toString()) );
+			}
+		}, "uci-search" );
+		this.searchThread.start();
+	}
+	
+	/**
+	 * Stops a running search and waits until it has printed its best move.
+	 */
+	private void stopSearch() {
+		if( this.searchThread == null ){
+			return;
+		}
+		this.search.stop();
+		if( this.stopSignal != null ){
+			this.stopSignal.countDown();
+		}
+		try {
+			this.searchThread.join();
+		} catch( InterruptedException e ){
+			Thread.currentThread().interrupt();
+		}
+		this.search = null;
+		this.searchThread = null;
+		this.stopSignal = null;
+	}
+	
+	private TranspositionTable getTranspositionTable() {
+		if( this.transpositionTable == null ){
+			this.transpositionTable = new TranspositionTable( this.hashMegabytes );
+		}
+		return this.transpositionTable;
+	}
+	
+	/**
+	 * Writes a reply line. Called by the input and the search thread.
+	 */
+	private void send( String line ){
+		synchronized( this.output ){
+			this.output.println( line );
+			this.output.flush();
+		}
+	}
+	
+	// ::: GETTERS & SETTERS :::
+	
+	public ChessGame getChessGame() {
+		return chessGame;
+	}
+	
+	public static void main( String[] args ) throws IOException {
+		UciEngine engine = new UciEngine( new PrintStream( System.out, false, "UTF-8" ) );
+		engine.run( new BufferedReader( new InputStreamReader( System.in, StandardCharsets.UTF_8 ) ) );
+	}
+	
+}